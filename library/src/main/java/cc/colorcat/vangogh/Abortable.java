@@ -0,0 +1,35 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+/**
+ * A {@link Downloader} whose load in progress can be aborted from another thread when its
+ * {@link Call} has been canceled. Others are stopped between the interceptors and the buffers
+ * of the copies only, see {@link RealInterceptorChain#isCanceled()}.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+interface Abortable {
+
+    /**
+     * Fails the blocking I/O of the load or of the body at once, and any load after it.
+     * It must be safe to call on any thread at any time, also more than once.
+     */
+    void abort();
+}
@@ -29,6 +29,8 @@ import android.support.annotation.Nullable;
  */
 class Action {
     private final Context context;
+    private final BitmapPool pool;
+    private final ActiveResources activeResources;
     private final Target target;
     private final Drawable placeholder;
     private final Drawable error;
@@ -38,11 +40,14 @@ class Action {
     final String key;
     final Task task;
     final Object tag;
+    final Priority priority;
 
     private boolean canceled;
 
     Action(Creator creator) {
         context = creator.vanGogh.context;
+        pool = creator.vanGogh.bitmapPool;
+        activeResources = creator.vanGogh.activeResources;
         target = creator.target;
         placeholder = creator.placeholder;
         error = creator.error;
@@ -52,6 +57,7 @@ class Action {
         key = creator.key;
         task = new Task(creator);
         tag = creator.tag;
+        priority = creator.priority;
         canceled = false;
     }
 
@@ -73,8 +79,12 @@ class Action {
     }
 
     void onSuccess(@NonNull Bitmap result, @NonNull From from) {
-        Drawable drawable = new VanGoghDrawable(context, result, from, fade, indicatorEnabled);
+        activeResources.activate(key, result);
+        Drawable drawable = new VanGoghDrawable(context, pool, result, from, fade, indicatorEnabled);
         target.onLoaded(drawable, from);
+        if (callback != EmptyCallback.INSTANCE) {
+            pool.pin(result);
+        }
         callback.onSuccess(result);
     }
 
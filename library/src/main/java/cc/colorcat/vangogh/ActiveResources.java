@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.graphics.Bitmap;
+import android.support.annotation.Nullable;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Weakly tracks the bitmaps which have been delivered to targets, keyed by {@link Task#key()},
+ * so a bitmap which is still on the screen can be found after it has been evicted from
+ * the memory cache.
+ * <p>
+ * An entry does not hold its bitmap in the {@link BitmapPool}, so it records the generation of
+ * the bitmap and misses once the bitmap has entered the pool, even if it has been reused since.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+final class ActiveResources {
+    private final Map<String, BitmapReference> map = new HashMap<>();
+    private final ReferenceQueue<Bitmap> queue = new ReferenceQueue<>();
+    private final BitmapPool pool;
+
+    private int hitCount;
+    private int missCount;
+
+    ActiveResources(BitmapPool pool) {
+        this.pool = pool;
+    }
+
+    synchronized void activate(String key, Bitmap bitmap) {
+        if (key == null || bitmap == null) {
+            throw new NullPointerException("key == null || bitmap == null");
+        }
+        cleanUp();
+        map.put(key, new BitmapReference(key, bitmap, pool.generationOf(bitmap), queue));
+    }
+
+    /**
+     * Returns the bitmap for {@code key} if it is still alive else null.
+     * NOTE: The returned bitmap has been acquired from the {@link BitmapPool},
+     * the caller must release it.
+     */
+    @Nullable
+    synchronized Bitmap get(String key) {
+        if (key == null) {
+            throw new NullPointerException("key == null");
+        }
+        cleanUp();
+        BitmapReference reference = map.get(key);
+        if (reference != null) {
+            Bitmap bitmap = reference.get();
+            if (bitmap != null && !bitmap.isRecycled() && pool.acquireIfInUse(bitmap, reference.generation)) {
+                ++hitCount;
+                return bitmap;
+            }
+            // it has been collected or entered the pool, it may hold another image now.
+            map.remove(key);
+        }
+        ++missCount;
+        return null;
+    }
+
+    synchronized void clear() {
+        map.clear();
+    }
+
+    synchronized int size() {
+        cleanUp();
+        return map.size();
+    }
+
+    synchronized int hitCount() {
+        return hitCount;
+    }
+
+    synchronized int missCount() {
+        return missCount;
+    }
+
+    private void cleanUp() {
+        for (BitmapReference ref = (BitmapReference) queue.poll(); ref != null; ref = (BitmapReference) queue.poll()) {
+            if (map.get(ref.key) == ref) {
+                map.remove(ref.key);
+            }
+        }
+    }
+
+
+    private static final class BitmapReference extends WeakReference<Bitmap> {
+        private final String key;
+        private final int generation;
+
+        private BitmapReference(String key, Bitmap referent, int generation, ReferenceQueue<? super Bitmap> q) {
+            super(referent, q);
+            this.key = key;
+            this.generation = generation;
+        }
+    }
+}
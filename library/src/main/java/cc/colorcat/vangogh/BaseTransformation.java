@@ -23,12 +23,17 @@ import android.graphics.Bitmap;
  * Date: 2018-06-11
  * GitHub: https://github.com/ccolorcat
  */
-public class BaseTransformation implements Transformation {
+public class BaseTransformation implements Transformation.PoolAware {
     @Override
     public Bitmap transform(Bitmap source) {
         return source;
     }
 
+    @Override
+    public Bitmap transform(Bitmap source, BitmapPool pool) {
+        return transform(source);
+    }
+
     @Override
     public String getKey() {
         Class clazz = getClass();
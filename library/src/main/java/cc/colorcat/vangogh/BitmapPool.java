@@ -0,0 +1,366 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+/**
+ * A pool of mutable bitmaps keyed by allocation size and {@link Bitmap.Config}, which are
+ * reused by decoding (as {@link android.graphics.BitmapFactory.Options#inBitmap}) and by
+ * {@link Transformation.PoolAware}.
+ * <p>
+ * Bitmaps enter the pool only when nothing holds them any more: neither the memory cache,
+ * a running {@link Call} nor a displayed {@link VanGoghDrawable}. Bitmaps handed out to a
+ * {@link Callback} or by {@link Creator#peek()} never enter the pool.
+ * <p>
+ * NOTE: Reusing requires {@link Bitmap#reconfigure(int, int, Bitmap.Config)}, the pool
+ * is always empty before {@link Build.VERSION_CODES#KITKAT}.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public final class BitmapPool implements Trimmable {
+    static final BitmapPool EMPTY = new BitmapPool(0L);
+
+    private static final int MAX_SIZE_MULTIPLE = 4;
+    private static final int PINNED = -1;
+
+    private final LinkedHashMap<Key, LinkedList<Bitmap>> groups;
+    private final Map<Bitmap.Config, NavigableMap<Integer, Integer>> sortedSizes;
+    private final Map<Bitmap, Integer> references;
+    /**
+     * The number of times each bitmap has entered the pool, so a holder which does not acquire
+     * it can tell whether it has been reused for another image since.
+     */
+    private final Map<Bitmap, Integer> generations;
+    private final long maxSize;
+    private final boolean reusable;
+
+    private long effectiveMaxSize;
+    private long size;
+    private int putCount;
+    private int evictionCount;
+    private int hitCount;
+    private int missCount;
+
+    BitmapPool(long maxSize) {
+        this(maxSize, Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT);
+    }
+
+    /**
+     * @param reusable true if bitmaps can be reconfigured, false keeps the pool empty.
+     */
+    BitmapPool(long maxSize, boolean reusable) {
+        if (maxSize < 0L) {
+            throw new IllegalArgumentException("maxSize < 0");
+        }
+        this.maxSize = maxSize;
+        this.reusable = reusable;
+        this.effectiveMaxSize = maxSize;
+        this.groups = new LinkedHashMap<>(0, 0.75F, true);
+        this.sortedSizes = new HashMap<>();
+        this.references = new WeakHashMap<>();
+        this.generations = new WeakHashMap<>();
+    }
+
+    /**
+     * Returns a bitmap which is erased to transparent, from the pool if possible,
+     * otherwise a new one.
+     */
+    @NonNull
+    public Bitmap get(int width, int height, @NonNull Bitmap.Config config) {
+        Bitmap result = getDirty(width, height, config);
+        if (result != null) {
+            result.eraseColor(Color.TRANSPARENT);
+        } else {
+            result = Bitmap.createBitmap(width, height, config);
+        }
+        return result;
+    }
+
+    /**
+     * Offers the bitmap to the pool, it is ignored if it is still in use by VanGogh.
+     * NOTE: The bitmap must not be used by the caller any more if it has been accepted.
+     *
+     * @return true if the bitmap has been accepted by the pool.
+     */
+    public synchronized boolean put(@NonNull Bitmap bitmap) {
+        if (bitmap == null) {
+            throw new NullPointerException("bitmap == null");
+        }
+        return !references.containsKey(bitmap) && offer(bitmap);
+    }
+
+    /**
+     * Returns a bitmap which has been reconfigured to the specified width, height and config
+     * with undefined content or null if none, it is used as inBitmap of decoding.
+     */
+    @Nullable
+    synchronized Bitmap getDirty(int width, int height, @NonNull Bitmap.Config config) {
+        if (!isEnabled()) {
+            return null;
+        }
+        int required = width * height * bytesPerPixel(config);
+        NavigableMap<Integer, Integer> sizes = sortedSizes.get(config);
+        Integer candidate = sizes != null ? sizes.ceilingKey(required) : null;
+        if (candidate == null || candidate > required * MAX_SIZE_MULTIPLE) {
+            ++missCount;
+            return null;
+        }
+        Key key = new Key(candidate, config);
+        Bitmap result = removeLast(key);
+        ++hitCount;
+        result.reconfigure(width, height, config);
+        return result;
+    }
+
+    /**
+     * Marks the bitmap as in use by one more holder.
+     */
+    synchronized void acquire(@Nullable Bitmap bitmap) {
+        if (bitmap == null || !isEnabled()) {
+            return;
+        }
+        Integer count = references.get(bitmap);
+        if (count == null) {
+            references.put(bitmap, 1);
+        } else if (count != PINNED) {
+            references.put(bitmap, count + 1);
+        }
+    }
+
+    /**
+     * @return the generation of the bitmap to be checked by {@link #acquireIfInUse(Bitmap, int)}.
+     */
+    synchronized int generationOf(@NonNull Bitmap bitmap) {
+        Integer generation = generations.get(bitmap);
+        return generation != null ? generation : 0;
+    }
+
+    /**
+     * Same as {@link #acquire(Bitmap)}, but only if the bitmap is still in use and has not
+     * entered the pool since {@link #generationOf(Bitmap)} returned the generation,
+     * that is, it still holds the same image and can be displayed safely.
+     *
+     * @return true if the bitmap has been acquired.
+     */
+    synchronized boolean acquireIfInUse(Bitmap bitmap, int generation) {
+        if (!isEnabled()) {
+            return true;
+        }
+        Integer count = references.get(bitmap);
+        if (count == null || generationOf(bitmap) != generation) {
+            return false;
+        }
+        if (count != PINNED) {
+            references.put(bitmap, count + 1);
+        }
+        return true;
+    }
+
+    /**
+     * Marks the bitmap as in use by one less holder, it will be put into the pool if
+     * nothing holds it any more.
+     */
+    synchronized void release(@Nullable Bitmap bitmap) {
+        if (bitmap == null || !isEnabled()) {
+            return;
+        }
+        Integer count = references.get(bitmap);
+        if (count == null || count == PINNED) {
+            return;
+        }
+        if (count > 1) {
+            references.put(bitmap, count - 1);
+        } else {
+            references.remove(bitmap);
+            offer(bitmap);
+        }
+    }
+
+    /**
+     * Marks the bitmap as being used outside VanGogh, so it never enters the pool.
+     */
+    synchronized void pin(@Nullable Bitmap bitmap) {
+        if (bitmap != null && isEnabled()) {
+            references.put(bitmap, PINNED);
+        }
+    }
+
+    public void clear() {
+        trimToSize(-1);
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized long maxSize() {
+        return effectiveMaxSize;
+    }
+
+    public synchronized int hitCount() {
+        return hitCount;
+    }
+
+    public synchronized int missCount() {
+        return missCount;
+    }
+
+    public synchronized int putCount() {
+        return putCount;
+    }
+
+    public synchronized int evictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized void setSizeMultiplier(float multiplier) {
+        effectiveMaxSize = Math.round(maxSize * multiplier);
+        trimToSize(effectiveMaxSize);
+    }
+
+    @Override
+    public synchronized void trimToSize(long maxSize) {
+        while (size > maxSize && !groups.isEmpty()) {
+            Key key = groups.keySet().iterator().next();
+            Bitmap evicted = removeFirst(key);
+            ++evictionCount;
+            evicted.recycle();
+        }
+    }
+
+    private boolean isEnabled() {
+        return maxSize > 0L && reusable;
+    }
+
+    private boolean offer(Bitmap bitmap) {
+        if (!isEnabled() || bitmap.isRecycled() || !bitmap.isMutable() || bitmap.getConfig() == null) {
+            return false;
+        }
+        int byteSize = bitmap.getAllocationByteCount();
+        if (byteSize > effectiveMaxSize) {
+            return false;
+        }
+        Key key = new Key(byteSize, bitmap.getConfig());
+        LinkedList<Bitmap> group = groups.get(key);
+        if (group == null) {
+            group = new LinkedList<>();
+            groups.put(key, group);
+        }
+        group.addLast(bitmap);
+        NavigableMap<Integer, Integer> sizes = sortedSizes.get(key.config);
+        if (sizes == null) {
+            sizes = new TreeMap<>();
+            sortedSizes.put(key.config, sizes);
+        }
+        Integer count = sizes.get(byteSize);
+        sizes.put(byteSize, count == null ? 1 : count + 1);
+        size += byteSize;
+        ++putCount;
+        generations.put(bitmap, generationOf(bitmap) + 1);
+        trimToSize(effectiveMaxSize);
+        return true;
+    }
+
+    private Bitmap removeFirst(Key key) {
+        LinkedList<Bitmap> group = groups.get(key);
+        Bitmap result = group.removeFirst();
+        onRemoved(key, group);
+        return result;
+    }
+
+    private Bitmap removeLast(Key key) {
+        LinkedList<Bitmap> group = groups.get(key);
+        Bitmap result = group.removeLast();
+        onRemoved(key, group);
+        return result;
+    }
+
+    private void onRemoved(Key key, LinkedList<Bitmap> group) {
+        if (group.isEmpty()) {
+            groups.remove(key);
+        }
+        NavigableMap<Integer, Integer> sizes = sortedSizes.get(key.config);
+        int count = sizes.get(key.size);
+        if (count > 1) {
+            sizes.put(key.size, count - 1);
+        } else {
+            sizes.remove(key.size);
+        }
+        size -= key.size;
+    }
+
+    static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        }
+        if (config == Bitmap.Config.ARGB_8888) {
+            return 4;
+        }
+        return 8;
+    }
+
+
+    private static final class Key {
+        private final int size;
+        private final Bitmap.Config config;
+
+        private Key(int size, Bitmap.Config config) {
+            this.size = size;
+            this.config = config;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return size == key.size && config == key.config;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * size + config.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "Key{" +
+                    "size=" + size +
+                    ", config=" + config +
+                    '}';
+        }
+    }
+}
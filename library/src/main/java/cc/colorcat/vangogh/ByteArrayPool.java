@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A bounded pool of byte arrays for the buffers of copying and decoding, shared by all threads.
+ * An array is lent by {@link #get(int)} and must be given back by {@link #put(byte[])} once it
+ * is no longer used, the least recently returned ones are dropped when the pool is full.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+final class ByteArrayPool {
+    /**
+     * The length of the buffers of copying.
+     */
+    static final int BUFFER_SIZE = 8192;
+
+    private static final ByteArrayPool SHARED = new ByteArrayPool(512 * 1024);
+
+    private final List<byte[]> byLength = new ArrayList<>();
+    private final LinkedList<byte[]> byLastUse = new LinkedList<>();
+    private final int maxSize;
+    private int currentSize = 0;
+
+    static ByteArrayPool shared() {
+        return SHARED;
+    }
+
+    ByteArrayPool(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the shortest array in the pool which is at least the length, or a new one of it.
+     */
+    synchronized byte[] get(int length) {
+        int index = indexOf(length);
+        if (index < byLength.size()) {
+            byte[] buffer = byLength.remove(index);
+            byLastUse.remove(buffer);
+            currentSize -= buffer.length;
+            return buffer;
+        }
+        return new byte[length];
+    }
+
+    synchronized void put(byte[] buffer) {
+        if (buffer == null || buffer.length > maxSize) {
+            return;
+        }
+        byLength.add(indexOf(buffer.length), buffer);
+        byLastUse.addLast(buffer);
+        currentSize += buffer.length;
+        while (currentSize > maxSize) {
+            byte[] eldest = byLastUse.removeFirst();
+            byLength.remove(eldest);
+            currentSize -= eldest.length;
+        }
+    }
+
+    /**
+     * @return the index of the first array which is at least the length.
+     */
+    private int indexOf(int length) {
+        int low = 0, high = byLength.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (byLength.get(middle).length < length) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    synchronized int size() {
+        return currentSize;
+    }
+}
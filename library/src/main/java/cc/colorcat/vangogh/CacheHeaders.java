@@ -0,0 +1,199 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.support.annotation.Nullable;
+
+import java.net.HttpURLConnection;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * The validators and the freshness lifetime of a response, which are stored along with the
+ * entry of {@link DiskCache} to revalidate it by a conditional request once it is stale.
+ * <p>
+ * The expiration is computed from Cache-Control (no-cache, no-store and max-age), then Expires,
+ * then 10% of the time since Last-Modified as suggested by RFC 7234. A response without any
+ * of them never expires, which is the same as before they were stored. A response of no-store
+ * must not be stored at all, see {@link #noStore}.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+final class CacheHeaders {
+    static final long NEVER_EXPIRES = Long.MAX_VALUE;
+
+    @Nullable
+    final String etag;
+    @Nullable
+    final String lastModified;
+    /**
+     * The time in milliseconds since epoch at which the response becomes stale.
+     */
+    final long expiresAt;
+    /**
+     * Whether the response has Cache-Control: no-store, it is decoded without being written
+     * to the disk cache then.
+     */
+    final boolean noStore;
+
+    CacheHeaders(@Nullable String etag, @Nullable String lastModified, long expiresAt) {
+        this(etag, lastModified, expiresAt, false);
+    }
+
+    private CacheHeaders(@Nullable String etag, @Nullable String lastModified, long expiresAt, boolean noStore) {
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.expiresAt = expiresAt;
+        this.noStore = noStore;
+    }
+
+    static CacheHeaders parse(HttpURLConnection conn, long now) {
+        return parse(
+                conn.getHeaderField("ETag"),
+                conn.getHeaderField("Last-Modified"),
+                conn.getHeaderField("Cache-Control"),
+                conn.getHeaderField("Age"),
+                conn.getHeaderField("Date"),
+                conn.getHeaderField("Expires"),
+                now
+        );
+    }
+
+    /**
+     * @param headers the response headers, the keys must be case-insensitive.
+     */
+    static CacheHeaders parse(Map<String, String> headers, long now) {
+        return parse(
+                headers.get("ETag"),
+                headers.get("Last-Modified"),
+                headers.get("Cache-Control"),
+                headers.get("Age"),
+                headers.get("Date"),
+                headers.get("Expires"),
+                now
+        );
+    }
+
+    private static CacheHeaders parse(String etag, String lastModified, String cacheControl,
+                                      String age, String date, String expires, long now) {
+        if (cacheControl != null) {
+            long maxAge = -1L;
+            boolean noCache = false;
+            for (String directive : cacheControl.split(",")) {
+                String d = directive.trim().toLowerCase(Locale.US);
+                if (d.equals("no-store")) {
+                    return new CacheHeaders(etag, lastModified, now, true);
+                }
+                if (d.equals("no-cache")) {
+                    noCache = true;
+                } else if (d.startsWith("max-age=")) {
+                    maxAge = parseLong(d.substring("max-age=".length()), -1L);
+                }
+            }
+            if (noCache) {
+                return new CacheHeaders(etag, lastModified, now);
+            }
+            if (maxAge >= 0L) {
+                long ageSeconds = Math.max(0L, parseLong(age, 0L));
+                long expiresAt = now + Math.max(0L, maxAge - ageSeconds) * 1000L;
+                return new CacheHeaders(etag, lastModified, expiresAt);
+            }
+        }
+        long serverDate = parseDate(date);
+        long serverNow = serverDate > 0L ? serverDate : now;
+        if (expires != null) {
+            long expiresDate = parseDate(expires);
+            if (expiresDate < 0L) {
+                // An invalid date, such as "0" or "-1", means already expired (RFC 7234 5.3).
+                return new CacheHeaders(etag, lastModified, now);
+            }
+            return new CacheHeaders(etag, lastModified, now + Math.max(0L, expiresDate - serverNow));
+        }
+        long modified = parseDate(lastModified);
+        if (modified > 0L && modified < serverNow) {
+            return new CacheHeaders(etag, lastModified, now + (serverNow - modified) / 10);
+        }
+        return new CacheHeaders(etag, lastModified, NEVER_EXPIRES);
+    }
+
+    private static long parseLong(@Nullable String value, long defaultValue) {
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * @return the time in milliseconds of the HTTP-date or -1 if it can not be parsed.
+     */
+    private static long parseDate(@Nullable String value) {
+        if (value != null) {
+            DateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT"));
+            try {
+                return format.parse(value.trim()).getTime();
+            } catch (ParseException ignore) {
+            }
+        }
+        return -1L;
+    }
+
+    boolean isFresh(long now) {
+        return now < expiresAt;
+    }
+
+    /**
+     * @return the strong ETag or else the Last-Modified, null if neither.
+     */
+    @Nullable
+    String validator() {
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return lastModified;
+    }
+
+    /**
+     * @return the headers updated by a 304 response, whose validators may be omitted.
+     */
+    CacheHeaders refresh(CacheHeaders notModified) {
+        return new CacheHeaders(
+                notModified.etag != null ? notModified.etag : etag,
+                notModified.lastModified != null ? notModified.lastModified : lastModified,
+                notModified.expiresAt
+        );
+    }
+
+    @Override
+    public String toString() {
+        return "CacheHeaders{" +
+                "etag='" + etag + '\'' +
+                ", lastModified='" + lastModified + '\'' +
+                ", expiresAt=" + expiresAt +
+                ", noStore=" + noStore +
+                '}';
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+/**
+ * A snapshot of the memory cache statistics.
+ * The hits of the active resources (bitmaps still displayed) are counted separately,
+ * the memory cache is not consulted for them.
+ * The counters are -1 if the memory cache does not report them.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+@SuppressWarnings("unused")
+public final class CacheStats {
+    private final int activeHitCount;
+    private final int hitCount;
+    private final int missCount;
+    private final int putCount;
+    private final int evictionCount;
+    private final long size;
+    private final long maxSize;
+
+    CacheStats(ActiveResources activeResources, Cache<?> cache) {
+        this.activeHitCount = activeResources.hitCount();
+        if (cache instanceof CacheCounter) {
+            CacheCounter counter = (CacheCounter) cache;
+            this.hitCount = counter.hitCount();
+            this.missCount = counter.missCount();
+            this.putCount = counter.putCount();
+            this.evictionCount = counter.evictionCount();
+        } else {
+            this.hitCount = -1;
+            this.missCount = -1;
+            this.putCount = -1;
+            this.evictionCount = -1;
+        }
+        this.size = cache.size();
+        this.maxSize = cache.maxSize();
+    }
+
+    public int activeHitCount() {
+        return activeHitCount;
+    }
+
+    public int hitCount() {
+        return hitCount;
+    }
+
+    public int missCount() {
+        return missCount;
+    }
+
+    public int putCount() {
+        return putCount;
+    }
+
+    public int evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the ratio of hits to lookups, including the hits of the active resources,
+     * or NaN if nothing has been looked up or the memory cache does not report its counters.
+     */
+    public double hitRate() {
+        int lookups = activeHitCount + hitCount + missCount;
+        if (hitCount < 0 || lookups == 0) {
+            return Double.NaN;
+        }
+        return (activeHitCount + hitCount) / (double) lookups;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long maxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{" +
+                "activeHitCount=" + activeHitCount +
+                ", hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", putCount=" + putCount +
+                ", evictionCount=" + evictionCount +
+                ", size=" + size +
+                ", maxSize=" + maxSize +
+                ", hitRate=" + hitRate() +
+                '}';
+    }
+}
@@ -36,6 +36,33 @@ class Call implements Runnable {
     final Task task;
 
     Future<?> future;
+    /**
+     * The downloader of the current attempt, which is kept while the call is deferred.
+     */
+    private volatile Downloader downloader;
+    private volatile boolean deferred = false;
+    /**
+     * Whether the next run resumes the attempt which has been deferred, see {@link Stage#isResumed()}.
+     */
+    private volatile boolean resumed = false;
+    /**
+     * The deferral of the current run, accessed by the running thread only.
+     */
+    private Deferred deferral;
+    private volatile boolean canceled = false;
+    private volatile Priority priority;
+    /**
+     * The stage of the next run, null if the executor is not staged.
+     */
+    volatile Stage stage;
+    /**
+     * See {@link Stage#handedOver()}, only for the next run.
+     */
+    private From handedOver;
+    /**
+     * When the last run ended, in {@link System#nanoTime()}, see {@link DeliveryStats}.
+     */
+    volatile long finishedAt;
     From from;
     Bitmap bitmap;
     Throwable cause;
@@ -45,10 +72,19 @@ class Call implements Runnable {
         this.count = vanGogh.maxTry;
         this.actions.add(action);
         this.task = action.task;
+        this.priority = action.priority;
     }
 
-    void attach(Action action) {
+    /**
+     * @return true if the priority of the call has been raised to the one of the action.
+     */
+    boolean attach(Action action) {
         actions.add(action);
+        if (action.priority.compareTo(priority) > 0) {
+            priority = action.priority;
+            return true;
+        }
+        return false;
     }
 
     void detach(Action action) {
@@ -59,22 +95,75 @@ class Call implements Runnable {
         return task.key();
     }
 
+    Priority priority() {
+        return priority;
+    }
+
+    /**
+     * Cancels the call if no action is attached. A running attempt is stopped by aborting its
+     * downloader if it is {@link Abortable}, and by the checks of {@link Utils#isCanceled(Interceptor.Chain)}.
+     * The part of the body written into the disk cache is kept for resuming if it has a
+     * validator, the rest of it is not downloaded.
+     */
     boolean tryCancel() {
-        return actions.isEmpty()
-                && future != null
-                && future.cancel(false);
+        if (actions.isEmpty() && future != null && (future.cancel(false) || deferred)) {
+            canceled = true;
+            if (deferred) {
+                // The worker has been given back, nothing else would end the attempt.
+                abandon();
+            } else {
+                Downloader d = downloader;
+                if (d instanceof Abortable) {
+                    ((Abortable) d).abort();
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Ends the deferred attempt of a canceled call, which aborts the fetch of its downloader
+     * and frees its network slot.
+     */
+    void abandon() {
+        Downloader d = downloader;
+        downloader = null;
+        if (d != null) {
+            d.shutDown();
+        }
+        vanGogh.networkLimiter.release(key());
     }
 
     boolean isCanceled() {
-        return future != null && future.isCancelled();
+        return canceled || (future != null && future.isCancelled());
     }
 
     @Override
     public void run() {
+        deferred = false;
+        // The call may run again on another thread before this run ends, once deferred.
+        boolean deferring = false;
+        Stage.enter(stage, handedOver, resumed);
+        handedOver = null;
         try {
             Result result = getResultWithInterceptor();
             bitmap = result.bitmap();
             from = result.from();
+        } catch (Deferred e) {
+            deferring = true;
+            deferred = true;
+            resumed = true;
+            if (e.stage() != null) {
+                stage = e.stage();
+                handedOver = e.handedOver();
+            }
+            e.whenReady(new Runnable() {
+                @Override
+                public void run() {
+                    vanGogh.dispatcher.dispatchResume(Call.this);
+                }
+            });
         } catch (IOException e) {
             cause = e;
         } catch (IndexOutOfBoundsException e) {
@@ -84,22 +173,86 @@ class Call implements Runnable {
         } catch (Exception e) {
             cause = e;
         } finally {
-            if (bitmap != null) {
-                vanGogh.dispatcher.dispatchSuccess(this);
-            } else if (cause instanceof IOException && count > 0) {
-                vanGogh.dispatcher.dispatchRetry(this);
-            } else {
-                vanGogh.dispatcher.dispatchFailed(this);
-            }
-            if (cause != null) {
-                LogUtils.e(cause);
+            Stage.exit();
+            if (!deferring) {
+                resumed = false;
+                finishedAt = System.nanoTime();
+                boolean canceled = isCanceled();
+                if (bitmap != null) {
+                    vanGogh.dispatcher.dispatchSuccess(this);
+                } else if (cause instanceof IOException && count > 0 && !canceled) {
+                    vanGogh.dispatcher.dispatchRetry(this);
+                } else {
+                    vanGogh.dispatcher.dispatchFailed(this);
+                }
+                if (cause != null && !canceled) {
+                    LogUtils.e(cause);
+                }
             }
         }
     }
 
     private Result getResultWithInterceptor() throws IOException {
-        --count;
-        Interceptor.Chain chain = new RealInterceptorChain(vanGogh.interceptors, 0, task, vanGogh.downloader.clone());
-        return chain.proceed(task);
+        if (downloader == null) {
+            --count;
+            downloader = vanGogh.downloader.clone();
+        }
+        Downloader d = downloader;
+        Interceptor.Chain chain = new RealInterceptorChain(vanGogh.interceptors, 0, task, d, this);
+        boolean deferring = false;
+        try {
+            return proceed(chain);
+        } catch (Deferred e) {
+            // The interceptors run again with the same downloader once it is ready.
+            deferring = true;
+            if (e.stage() == Stage.DECODE) {
+                // The download has ended, the slot is free for others while decoding.
+                vanGogh.networkLimiter.release(key());
+            }
+            throw e;
+        } finally {
+            if (!deferring) {
+                // The body has been consumed by now, unless something failed.
+                d.shutDown();
+                downloader = null;
+                vanGogh.networkLimiter.release(key());
+            }
+        }
+    }
+
+    /**
+     * A deferral caught by an interceptor is thrown again, whatever that interceptor did with
+     * it, since the call is waiting for something.
+     */
+    Result proceed(Interceptor.Chain chain) throws IOException {
+        deferral = null;
+        Result result;
+        try {
+            result = chain.proceed(task);
+        } catch (Deferred e) {
+            deferral = null;
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            throwIfSwallowed();
+            throw e;
+        }
+        throwIfSwallowed();
+        return result;
+    }
+
+    private void throwIfSwallowed() {
+        Deferred swallowed = deferral;
+        if (swallowed != null) {
+            deferral = null;
+            LogUtils.e("an interceptor caught the deferral, task = " + task);
+            throw swallowed;
+        }
+    }
+
+    /**
+     * Records the deferral which is passing through the interceptors.
+     */
+    void onDeferred(Deferred deferral) {
+        this.deferral = deferral;
     }
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The default executor of {@link Call} for a {@link Stage}, whose queue is ordered by
+ * {@link Priority}, then by the order of submission, either first-in-first-out or
+ * last-in-first-out. The latter runs the rows which have just scrolled into view before
+ * the ones which have left.
+ * <p>
+ * It measures the time the calls wait in the queue and run on the threads, see {@link StageStats}.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+final class CallExecutor extends ThreadPoolExecutor {
+    private final AtomicLong sequence = new AtomicLong();
+    private final String name;
+    private final boolean lifo;
+
+    private long runCount;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private long totalRunNanos;
+    private long maxRunNanos;
+
+    /**
+     * @param name the name of the stage, which is a part of the names of the threads.
+     */
+    CallExecutor(String name, int threadCount, boolean lifo) {
+        super(threadCount, threadCount, 10L, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new NamedThreadFactory(name));
+        this.name = name;
+        this.lifo = lifo;
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        // Everything in the queue must be comparable.
+        super.execute(command instanceof CallTask ? command : newTaskFor(command, null));
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        Priority priority = runnable instanceof Call ? ((Call) runnable).priority() : Priority.NORMAL;
+        return new CallTask<>(runnable, value, priority, sequence.getAndIncrement(), lifo);
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        super.beforeExecute(t, r);
+        if (r instanceof CallTask) {
+            ((CallTask<?>) r).startedAt = System.nanoTime();
+        }
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        super.afterExecute(r, t);
+        if (r instanceof CallTask) {
+            CallTask<?> task = (CallTask<?>) r;
+            long waitNanos = task.startedAt - task.queuedAt;
+            long runNanos = System.nanoTime() - task.startedAt;
+            synchronized (this) {
+                ++runCount;
+                totalWaitNanos += waitNanos;
+                maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+                totalRunNanos += runNanos;
+                maxRunNanos = Math.max(maxRunNanos, runNanos);
+            }
+        }
+    }
+
+    StageStats stats() {
+        int queuedCount = getQueue().size();
+        int activeCount = getActiveCount();
+        synchronized (this) {
+            return new StageStats(
+                    name,
+                    getMaximumPoolSize(),
+                    activeCount,
+                    queuedCount,
+                    runCount,
+                    TimeUnit.NANOSECONDS.toMillis(totalWaitNanos),
+                    TimeUnit.NANOSECONDS.toMillis(maxWaitNanos),
+                    TimeUnit.NANOSECONDS.toMillis(totalRunNanos),
+                    TimeUnit.NANOSECONDS.toMillis(maxRunNanos)
+            );
+        }
+    }
+
+    /**
+     * Moves the call to its new priority if it is still waiting in the queue.
+     */
+    void reprioritize(Future<?> future, Priority priority) {
+        if (future instanceof CallTask && remove((Runnable) future)) {
+            ((CallTask<?>) future).priority = priority;
+            execute((Runnable) future);
+        }
+    }
+
+
+    private static final class CallTask<T> extends FutureTask<T> implements Comparable<CallTask<?>> {
+        private final long sequence;
+        private final boolean lifo;
+        private final long queuedAt = System.nanoTime();
+        private long startedAt;
+        private Priority priority;
+
+        private CallTask(Runnable runnable, T result, Priority priority, long sequence, boolean lifo) {
+            super(runnable, result);
+            this.priority = priority;
+            this.sequence = sequence;
+            this.lifo = lifo;
+        }
+
+        @Override
+        public int compareTo(@NonNull CallTask<?> other) {
+            int result = other.priority.compareTo(priority);
+            if (result == 0) {
+                result = lifo ? compare(other.sequence, sequence) : compare(sequence, other.sequence);
+            }
+            return result;
+        }
+
+        private static int compare(long x, long y) {
+            return x < y ? -1 : (x == y ? 0 : 1);
+        }
+    }
+
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+        private final String name;
+
+        private NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+            return new Thread(r, "VanGogh-" + name + '-' + count.incrementAndGet());
+        }
+    }
+}
@@ -48,13 +48,18 @@ public class CircleTransformation extends BaseTransformation {
 
     @Override
     public Bitmap transform(Bitmap source) {
+        return transform(source, BitmapPool.EMPTY);
+    }
+
+    @Override
+    public Bitmap transform(Bitmap source, BitmapPool pool) {
         int width = source.getWidth(), height = source.getHeight();
         int side = Math.min(width, height);
         Bitmap.Config config = source.getConfig();
         if (config == null || config == Bitmap.Config.RGB_565) {
             config = Bitmap.Config.ARGB_8888;
         }
-        Bitmap out = Bitmap.createBitmap(side, side, config);
+        Bitmap out = pool.get(side, side, config);
         Canvas canvas = new Canvas(out);
         Paint paint = new Paint();
         paint.setAntiAlias(true);
@@ -67,11 +67,30 @@ public final class CompoundViewTarget<V extends TextView> extends ViewTarget<V>
     @Override
     protected void setDrawable(V view, Drawable drawable) {
         Drawable[] drawables = view.getCompoundDrawables();
+        Drawable[] olds = drawables.clone();
         for (int i = 0; i < 4; ++i) {
             if (((compound >> i) & 1) != 0) {
                 drawables[i] = drawable;
             }
         }
         view.setCompoundDrawablesWithIntrinsicBounds(drawables[0], drawables[1], drawables[2], drawables[3]);
+        if (!contains(olds, drawable)) {
+            // Once for the view, whatever the number of its compounds.
+            VanGoghDrawable.retain(drawable);
+        }
+        for (Drawable old : olds) {
+            if (!contains(drawables, old)) {
+                VanGoghDrawable.release(old);
+            }
+        }
+    }
+
+    private static boolean contains(Drawable[] drawables, Drawable drawable) {
+        for (Drawable d : drawables) {
+            if (d == drawable) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * A pool of keep-alive HTTP/1.1 connections shared by all the downloads of a {@link VanGogh},
+ * see {@link VanGogh.Builder#connectionPool(ConnectionPool)}.
+ * <p>
+ * At most {@link #maxConnectionsPerHost()} connections are open to a host at the same time,
+ * whether they are in use or idle, further requests wait for one of them to be released.
+ * A connection is put back only if its response body has been fully consumed, and is closed
+ * once it has been idle longer than the keep-alive duration.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+@SuppressWarnings("unused")
+public final class ConnectionPool {
+    private final Map<String, Route> routes = new HashMap<>();
+    private final int maxConnectionsPerHost;
+    private final long keepAliveNanos;
+
+    private int activeCount;
+    private int idleCount;
+    private int connectCount;
+    private int reuseCount;
+    private int evictionCount;
+
+    /**
+     * Create a pool with at most 5 connections per host which are kept alive for 5 minutes.
+     */
+    public ConnectionPool() {
+        this(5, 5L, TimeUnit.MINUTES);
+    }
+
+    public ConnectionPool(int maxConnectionsPerHost, long keepAliveDuration, TimeUnit unit) {
+        if (maxConnectionsPerHost <= 0) {
+            throw new IllegalArgumentException("maxConnectionsPerHost <= 0");
+        }
+        if (keepAliveDuration < 0L) {
+            throw new IllegalArgumentException("keepAliveDuration < 0");
+        }
+        if (unit == null) {
+            throw new NullPointerException("unit == null");
+        }
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.keepAliveNanos = unit.toNanos(keepAliveDuration);
+    }
+
+    /**
+     * Returns an idle connection to the address if any, otherwise opens a new one.
+     * Waits if the connections to the address have reached the limit.
+     * NOTE: The connection must be {@link #release(Connection, boolean)} after use.
+     *
+     * @param connectTimeout the timeout in milliseconds of waiting and connecting, 0 means infinite.
+     */
+    Connection acquire(String scheme, String host, int port, int connectTimeout) throws IOException {
+        String address = scheme + "://" + host + ':' + port;
+        Route route;
+        List<Connection> toClose = new ArrayList<>();
+        try {
+            synchronized (this) {
+                evictExpired(System.nanoTime(), toClose);
+                route = routes.get(address);
+                if (route == null) {
+                    route = new Route();
+                    routes.put(address, route);
+                }
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(connectTimeout);
+                while (true) {
+                    Connection idle = route.idle.pollLast();
+                    if (idle != null) {
+                        --idleCount;
+                        if (idle.isHealthy(System.nanoTime())) {
+                            ++route.active;
+                            ++activeCount;
+                            ++reuseCount;
+                            ++idle.useCount;
+                            return idle;
+                        }
+                        ++evictionCount;
+                        toClose.add(idle);
+                        continue;
+                    }
+                    if (route.active < maxConnectionsPerHost) {
+                        ++route.active;
+                        ++activeCount;
+                        break;
+                    }
+                    awaitRelease(connectTimeout == 0 ? 0L : deadline - System.nanoTime(), address);
+                }
+            }
+        } finally {
+            closeAll(toClose);
+        }
+        try {
+            Connection connection = Connection.open(address, scheme, host, port, connectTimeout);
+            synchronized (this) {
+                ++connectCount;
+            }
+            return connection;
+        } catch (IOException e) {
+            synchronized (this) {
+                --route.active;
+                --activeCount;
+                notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @param reusable true if the response has been fully consumed and the connection can be
+     *                 kept alive, otherwise it is closed.
+     */
+    void release(Connection connection, boolean reusable) {
+        List<Connection> toClose = new ArrayList<>(1);
+        synchronized (this) {
+            Route route = routes.get(connection.address);
+            --route.active;
+            --activeCount;
+            if (reusable && keepAliveNanos > 0L && !connection.socket.isClosed()) {
+                connection.idleAt = System.nanoTime();
+                route.idle.addLast(connection);
+                ++idleCount;
+            } else {
+                toClose.add(connection);
+            }
+            notifyAll();
+        }
+        closeAll(toClose);
+    }
+
+    /**
+     * Closes all the idle connections, the ones in use are closed once they are released.
+     */
+    public void evictAll() {
+        List<Connection> toClose = new ArrayList<>();
+        synchronized (this) {
+            evictExpired(Long.MAX_VALUE, toClose);
+        }
+        closeAll(toClose);
+    }
+
+    public int maxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /**
+     * @return the number of connections which are in use or being opened.
+     */
+    public synchronized int activeCount() {
+        return activeCount;
+    }
+
+    public synchronized int idleCount() {
+        return idleCount;
+    }
+
+    /**
+     * @return the number of connections which have been opened.
+     */
+    public synchronized int connectCount() {
+        return connectCount;
+    }
+
+    /**
+     * @return the number of times an idle connection has been reused instead of opening a new one.
+     */
+    public synchronized int reuseCount() {
+        return reuseCount;
+    }
+
+    /**
+     * @return the number of idle connections which have been closed because they expired
+     * or were closed by the server.
+     */
+    public synchronized int evictionCount() {
+        return evictionCount;
+    }
+
+    private void awaitRelease(long timeoutNanos, String address) throws IOException {
+        if (timeoutNanos < 0L) {
+            throw new SocketTimeoutException("timeout waiting for a connection to " + address);
+        }
+        try {
+            if (timeoutNanos == 0L) {
+                wait();
+            } else {
+                TimeUnit.NANOSECONDS.timedWait(this, timeoutNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted waiting for a connection to " + address);
+        }
+    }
+
+    /**
+     * Moves the idle connections which have expired at {@code now} to {@code toClose}.
+     */
+    private void evictExpired(long now, List<Connection> toClose) {
+        Iterator<Route> routeIterator = routes.values().iterator();
+        while (routeIterator.hasNext()) {
+            Route route = routeIterator.next();
+            Iterator<Connection> iterator = route.idle.iterator();
+            while (iterator.hasNext()) {
+                Connection connection = iterator.next();
+                if (now == Long.MAX_VALUE || now - connection.idleAt >= keepAliveNanos) {
+                    iterator.remove();
+                    --idleCount;
+                    ++evictionCount;
+                    toClose.add(connection);
+                }
+            }
+            if (route.active == 0 && route.idle.isEmpty()) {
+                routeIterator.remove();
+            }
+        }
+    }
+
+    private static void closeAll(List<Connection> connections) {
+        for (int i = 0, size = connections.size(); i < size; ++i) {
+            Utils.close(connections.get(i).socket);
+        }
+    }
+
+
+    private static final class Route {
+        /**
+         * The idle connections, the last one is the most recently used.
+         */
+        private final LinkedList<Connection> idle = new LinkedList<>();
+        private int active;
+    }
+
+
+    static final class Connection {
+        private static final long PROBE_AFTER_IDLE_NANOS = TimeUnit.SECONDS.toNanos(10L);
+
+        private final String address;
+        private final Socket socket;
+        final InputStream in;
+        final OutputStream out;
+        private long idleAt;
+        private int useCount;
+
+        private Connection(String address, Socket socket) throws IOException {
+            this.address = address;
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream(), 8192);
+            this.out = new BufferedOutputStream(socket.getOutputStream(), 1024);
+        }
+
+        private static Connection open(String address, String scheme, String host, int port, int connectTimeout) throws IOException {
+            Socket socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.connect(new InetSocketAddress(host, port), connectTimeout);
+                if ("https".equalsIgnoreCase(scheme)) {
+                    SSLSocketFactory factory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+                    SSLSocket sslSocket = (SSLSocket) factory.createSocket(socket, host, port, true);
+                    socket = sslSocket;
+                    sslSocket.startHandshake();
+                    if (!HttpsURLConnection.getDefaultHostnameVerifier().verify(host, sslSocket.getSession())) {
+                        throw new SSLPeerUnverifiedException("hostname " + host + " not verified");
+                    }
+                }
+                return new Connection(address, socket);
+            } catch (IOException e) {
+                Utils.close(socket);
+                throw e;
+            }
+        }
+
+        /**
+         * @return true if this has been used by a previous request.
+         */
+        boolean isReused() {
+            return useCount > 0;
+        }
+
+        void setReadTimeout(int timeout) throws IOException {
+            socket.setSoTimeout(timeout);
+        }
+
+        /**
+         * Closes the socket from another thread, the blocking I/O on it fails at once.
+         */
+        void abort() {
+            Utils.close(socket);
+        }
+
+        /**
+         * An idle connection is unhealthy if the server has closed it or sent unexpected data.
+         * Only the ones idle for a while are probed by a blocking read, a recently used one
+         * which turns out to be closed is retried by {@link PooledHttpDownloader}.
+         */
+        private boolean isHealthy(long now) {
+            if (socket.isClosed() || socket.isInputShutdown() || socket.isOutputShutdown()) {
+                return false;
+            }
+            try {
+                if (in.available() > 0) {
+                    return false;
+                }
+                if (now - idleAt < PROBE_AFTER_IDLE_NANOS) {
+                    return true;
+                }
+                int readTimeout = socket.getSoTimeout();
+                try {
+                    socket.setSoTimeout(1);
+                    in.mark(1);
+                    if (in.read() == -1) {
+                        return false;
+                    }
+                    in.reset();
+                    return false;
+                } finally {
+                    socket.setSoTimeout(readTimeout);
+                }
+            } catch (SocketTimeoutException e) {
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+}
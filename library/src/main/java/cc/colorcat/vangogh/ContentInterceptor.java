@@ -20,6 +20,7 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.net.Uri;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 
 /**
@@ -44,8 +45,16 @@ class ContentInterceptor implements Interceptor {
                 throw new IOException("empty uri");
             }
             String scheme = uri.getScheme();
-            if (ContentResolver.SCHEME_FILE.equals(scheme)
-                    || ContentResolver.SCHEME_CONTENT.equals(scheme)
+            if (ContentResolver.SCHEME_FILE.equals(scheme)) {
+                String path = uri.getPath();
+                if (path == null) {
+                    throw new IOException("no path, uri = " + uri);
+                }
+                // A file is opened directly so that it is decoded from its descriptor, the streams
+                // of the content resolver may be pipes which can only be read in order.
+                return Result.create(new FileInputStream(path), From.DISK);
+            }
+            if (ContentResolver.SCHEME_CONTENT.equals(scheme)
                     || ContentResolver.SCHEME_ANDROID_RESOURCE.equals(scheme)) {
                 return Result.create(context.getContentResolver().openInputStream(uri), From.DISK);
             }
@@ -77,12 +77,17 @@ public class CornerTransformation extends BaseTransformation {
 
     @Override
     public Bitmap transform(Bitmap source) {
+        return transform(source, BitmapPool.EMPTY);
+    }
+
+    @Override
+    public Bitmap transform(Bitmap source, BitmapPool pool) {
         final int width = source.getWidth(), height = source.getHeight();
         Bitmap.Config config = source.getConfig();
         if (config == null || config == Bitmap.Config.RGB_565) {
             config = Bitmap.Config.ARGB_8888;
         }
-        final Bitmap out = Bitmap.createBitmap(width, height, config);
+        final Bitmap out = pool.get(width, height, config);
         final Canvas canvas = new Canvas(out);
         final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
         paint.setColor(borderColor);
@@ -39,6 +39,7 @@ public final class Creator {
     final Uri uri;
     final String stableKey;
     int fromPolicy;
+    boolean storeResult;
     int connectTimeOut;
     int readTimeOut;
     boolean fade;
@@ -49,6 +50,7 @@ public final class Creator {
     Task.Options options;
     Object tag;
     Callback callback;
+    Priority priority;
 
     Target target;
     String key;
@@ -58,6 +60,7 @@ public final class Creator {
         this.uri = uri;
         this.stableKey = stableKey;
         this.fromPolicy = vanGogh.fromPolicy;
+        this.storeResult = vanGogh.storeResult;
         this.connectTimeOut = vanGogh.connectTimeOut;
         this.readTimeOut = vanGogh.readTimeOut;
         this.fade = vanGogh.fade;
@@ -66,6 +69,7 @@ public final class Creator {
         this.placeholder = vanGogh.placeholder;
         this.error = vanGogh.error;
         this.options = vanGogh.options.clone();
+        this.priority = Priority.NORMAL;
         this.tag = stableKey;
         this.callback = EmptyCallback.INSTANCE;
     }
@@ -76,6 +80,16 @@ public final class Creator {
         return this;
     }
 
+    /**
+     * @param storeResult Whether the resized and transformed bitmap is stored in the disk cache,
+     *                    so that the next load with the same options and transformations
+     *                    needs neither the full-size decoding nor the transformations.
+     */
+    public Creator storeResult(boolean storeResult) {
+        this.storeResult = storeResult;
+        return this;
+    }
+
     public Creator connectTimeOut(int timeOut) {
         if (timeOut < 0) {
             throw new IllegalArgumentException("timeOut < 0");
@@ -228,6 +242,18 @@ public final class Creator {
         return this;
     }
 
+    /**
+     * @param priority The priority in the queue of the default executor, default is
+     *                 {@link Priority#NORMAL}.
+     */
+    public Creator priority(Priority priority) {
+        if (priority == null) {
+            throw new NullPointerException("priority == null");
+        }
+        this.priority = priority;
+        return this;
+    }
+
     public Creator callback(Callback callback) {
         this.callback = (callback != null ? callback : EmptyCallback.INSTANCE);
         return this;
@@ -237,7 +263,9 @@ public final class Creator {
     public Bitmap peek() {
         Utils.checkMain();
         this.key = Utils.createKey(this);
-        return vanGogh.obtainFromMemoryCache(this.key);
+        Bitmap bitmap = vanGogh.obtainFromMemoryCache(this.key);
+        vanGogh.bitmapPool.pin(bitmap);
+        return bitmap;
     }
 
     public void into(ImageView view) {
@@ -278,8 +306,13 @@ public final class Creator {
             Bitmap bitmap = vanGogh.obtainFromMemoryCache(this.key);
             if (bitmap != null) {
                 vanGogh.cancelExistingAction(this.target.unique());
-                Drawable drawable = new VanGoghDrawable(vanGogh.context, bitmap, From.MEMORY, false, indicatorEnabled);
+                vanGogh.activeResources.activate(this.key, bitmap);
+                Drawable drawable = new VanGoghDrawable(vanGogh.context, vanGogh.bitmapPool, bitmap, From.MEMORY, false, indicatorEnabled);
                 this.target.onLoaded(drawable, From.MEMORY);
+                if (this.callback != EmptyCallback.INSTANCE) {
+                    vanGogh.bitmapPool.pin(bitmap);
+                }
+                vanGogh.bitmapPool.release(bitmap);
                 this.callback.onSuccess(bitmap);
                 return;
             }
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.graphics.BitmapFactory;
+import android.graphics.Rect;
+import android.support.annotation.Nullable;
+
+/**
+ * How an image is decoded for the options of a task. For a resize whose result is the scaled
+ * image itself, that is center inside, or center crop and fit xy of the same aspect ratio as
+ * the target, a power-of-two sample size which keeps the image at least as large as needed is
+ * combined with the density scaling of the decoder, so the image is decoded at the exact size
+ * without a pass of matrix after it.
+ * Otherwise the sample size is the one by the ratio of the sizes, and the matrix does the rest,
+ * since a scaled image to be cropped or stretched would only add a bitmap to the peak.
+ * <p>
+ * NOTE: The sampled size differs by the format, such as rounded up by JPEG and down by the
+ * others, so the decoded size may differ from {@link #decodedWidth} and {@link #decodedHeight}
+ * by a pixel, it is checked after decoding.
+ * <p>
+ * A center crop which discards at least {@link #MIN_DISCARDED_SHARE} of the image decodes only
+ * its {@link #visibleRegion(int, int, Task.Options)} if the source allows, see
+ * {@link android.graphics.BitmapRegionDecoder}.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+final class DecodePlan {
+    /**
+     * Such as a photo of 4:3 into a square.
+     */
+    static final float MIN_DISCARDED_SHARE = 0.25F;
+
+    final int sampleSize;
+    /**
+     * The density and target density of the decoder, both 0 if not scaled.
+     */
+    final int density;
+    final int targetDensity;
+    /**
+     * The expected size of the decoded bitmap.
+     */
+    final int decodedWidth;
+    final int decodedHeight;
+
+    private DecodePlan(int sampleSize, int density, int targetDensity, int decodedWidth, int decodedHeight) {
+        this.sampleSize = sampleSize;
+        this.density = density;
+        this.targetDensity = targetDensity;
+        this.decodedWidth = decodedWidth;
+        this.decodedHeight = decodedHeight;
+    }
+
+    /**
+     * @param width   the width of the image, may be invalid if the bounds are unknown.
+     * @param roundUp true if the decoder rounds the sampled size up, such as JPEG.
+     */
+    static DecodePlan create(int width, int height, boolean roundUp, Task.Options to, boolean scaleDown) {
+        if (width <= 0 || height <= 0) {
+            return new DecodePlan(1, 0, 0, width, height);
+        }
+        int targetWidth = to.targetWidth(), targetHeight = to.targetHeight();
+        int scaleType = to.scaleType();
+        if (!to.hasResize() || scaleType == Task.Options.SCALE_TYPE_NO) {
+            return bySampleSize(width, height, targetWidth, targetHeight, scaleDown);
+        }
+        float widthRatio = targetWidth / (float) width;
+        float heightRatio = targetHeight / (float) height;
+        boolean byWidth = scaleType == Task.Options.SCALE_TYPE_CENTER_INSIDE
+                ? widthRatio <= heightRatio : widthRatio >= heightRatio;
+        float scale = byWidth ? widthRatio : heightRatio;
+        // Scaled up by density only, so the sample size is the largest which keeps both sides.
+        float neededWidth = width * scale, neededHeight = height * scale;
+        int sampleSize = 1;
+        while ((sampleSize << 1) <= Math.max(width, height)
+                && sampled(width, sampleSize << 1, roundUp) >= neededWidth
+                && sampled(height, sampleSize << 1, roundUp) >= neededHeight) {
+            sampleSize <<= 1;
+        }
+        int sampledWidth = sampled(width, sampleSize, roundUp);
+        int sampledHeight = sampled(height, sampleSize, roundUp);
+        int density = byWidth ? sampledWidth : sampledHeight;
+        int targetDensity = byWidth ? targetWidth : targetHeight;
+        int decodedWidth = sampledWidth, decodedHeight = sampledHeight;
+        if (density != targetDensity) {
+            decodedWidth = scaled(sampledWidth, density, targetDensity);
+            decodedHeight = scaled(sampledHeight, density, targetDensity);
+        }
+        if (scaleType != Task.Options.SCALE_TYPE_CENTER_INSIDE
+                && (decodedWidth != targetWidth || decodedHeight != targetHeight)) {
+            return bySampleSize(width, height, targetWidth, targetHeight, scaleDown);
+        }
+        if (density == targetDensity) {
+            return new DecodePlan(sampleSize, 0, 0, decodedWidth, decodedHeight);
+        }
+        return new DecodePlan(sampleSize, density, targetDensity, decodedWidth, decodedHeight);
+    }
+
+    private static DecodePlan bySampleSize(int width, int height, int targetWidth, int targetHeight, boolean scaleDown) {
+        int sampleSize = calculateInSampleSize(width, height, targetWidth, targetHeight, scaleDown);
+        // the decoder uses the highest power of two at most.
+        int sample = Integer.highestOneBit(Math.max(1, sampleSize));
+        return new DecodePlan(sampleSize, 0, 0, sampled(width, sample, true), sampled(height, sample, true));
+    }
+
+    /**
+     * @return the part of the image which is shown by center crop, the same as by the matrix of
+     * {@link Utils#applyOptions(android.graphics.Bitmap, Task.Options, boolean)}, null if it is
+     * not a center crop without rotation or it discards too little to be worth a region decoder.
+     */
+    @Nullable
+    static Rect visibleRegion(int width, int height, Task.Options to) {
+        if (!to.hasResize() || to.hasRotation() || to.scaleType() != Task.Options.SCALE_TYPE_CENTER_CROP
+                || width <= 0 || height <= 0) {
+            return null;
+        }
+        float widthRatio = to.targetWidth() / (float) width;
+        float heightRatio = to.targetHeight() / (float) height;
+        if (widthRatio > heightRatio) {
+            int visibleHeight = Math.min(height, (int) Math.ceil(height * (heightRatio / widthRatio)));
+            if (1F - visibleHeight / (float) height < MIN_DISCARDED_SHARE) {
+                return null;
+            }
+            int top = (height - visibleHeight) / 2;
+            return new Rect(0, top, width, top + visibleHeight);
+        }
+        int visibleWidth = Math.min(width, (int) Math.ceil(width * (widthRatio / heightRatio)));
+        if (1F - visibleWidth / (float) width < MIN_DISCARDED_SHARE) {
+            return null;
+        }
+        int left = (width - visibleWidth) / 2;
+        return new Rect(left, 0, left + visibleWidth, height);
+    }
+
+    /**
+     * @return the largest power of two which keeps the region at least the target size.
+     */
+    static int regionSampleSize(int regionWidth, int regionHeight, Task.Options to) {
+        int sampleSize = 1;
+        while (regionWidth / (sampleSize << 1) >= to.targetWidth()
+                && regionHeight / (sampleSize << 1) >= to.targetHeight()) {
+            sampleSize <<= 1;
+        }
+        return sampleSize;
+    }
+
+    void apply(BitmapFactory.Options options) {
+        options.inSampleSize = sampleSize;
+        if (density != 0) {
+            options.inScaled = true;
+            options.inDensity = density;
+            options.inTargetDensity = targetDensity;
+        }
+    }
+
+    private static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight, boolean scaleDown) {
+        int inSampleSize = 1;
+        if (width > reqWidth || height > reqHeight) {
+            int widthRatio = (int) Math.floor((float) width / (float) reqWidth);
+            int heightRatio = (int) Math.floor((float) height / (float) reqHeight);
+            inSampleSize = scaleDown ? Math.max(widthRatio, heightRatio) : Math.min(widthRatio, heightRatio);
+        }
+        return inSampleSize;
+    }
+
+    private static int sampled(int size, int sampleSize, boolean roundUp) {
+        int result = roundUp ? (int) Math.ceil(size / (double) sampleSize) : size / sampleSize;
+        return Math.max(1, result);
+    }
+
+    /**
+     * The same rounding as the decoder.
+     */
+    private static int scaled(int size, int density, int targetDensity) {
+        return (int) (size * (targetDensity / (float) density) + 0.5F);
+    }
+
+    @Override
+    public String toString() {
+        return "DecodePlan{" +
+                "sampleSize=" + sampleSize +
+                ", density=" + density +
+                ", targetDensity=" + targetDensity +
+                ", decodedWidth=" + decodedWidth +
+                ", decodedHeight=" + decodedHeight +
+                '}';
+    }
+}
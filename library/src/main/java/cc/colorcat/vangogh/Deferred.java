@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Thrown through the interceptors to give the worker thread back while a {@link Call} waits for
+ * something, such as a response fetched by {@link NioDownloader} or a free slot of
+ * {@link NetworkLimiter}. The call runs again once the {@link Signal} is ready, or at once
+ * on the threads of another {@link Stage}.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+final class Deferred extends RuntimeException {
+    private final Signal signal;
+    @Nullable
+    private final Stage stage;
+    @Nullable
+    private final From handedOver;
+
+    /**
+     * The call runs again in the same stage once the signal is ready.
+     */
+    Deferred(Signal signal) {
+        super("deferred until ready");
+        this.signal = signal;
+        this.stage = null;
+        this.handedOver = null;
+    }
+
+    /**
+     * The call runs again in the stage, see {@link Stage#handedOver()}.
+     */
+    Deferred(Stage stage, @Nullable From handedOver) {
+        super("deferred to " + stage);
+        this.signal = new Signal();
+        this.signal.signal();
+        this.stage = stage;
+        this.handedOver = handedOver;
+    }
+
+    /**
+     * @return the stage in which the call runs again, null if the same.
+     */
+    @Nullable
+    Stage stage() {
+        return stage;
+    }
+
+    @Nullable
+    From handedOver() {
+        return handedOver;
+    }
+
+    /**
+     * Runs the action once ready, on the thread which makes it ready.
+     */
+    void whenReady(Runnable action) {
+        signal.whenReady(action);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+
+    /**
+     * Something which becomes ready only once.
+     */
+    static class Signal {
+        private boolean ready = false;
+        private Runnable action;
+
+        final synchronized boolean isReady() {
+            return ready;
+        }
+
+        /**
+         * Runs the action once ready, or at once if it is ready.
+         */
+        final void whenReady(Runnable action) {
+            synchronized (this) {
+                if (!ready) {
+                    this.action = action;
+                    return;
+                }
+            }
+            action.run();
+        }
+
+        final void signal() {
+            Runnable action;
+            synchronized (this) {
+                ready = true;
+                action = this.action;
+                this.action = null;
+            }
+            if (action != null) {
+                action.run();
+            }
+        }
+    }
+}
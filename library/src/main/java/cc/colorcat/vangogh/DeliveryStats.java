@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+/**
+ * A snapshot of the deliveries of results to the main thread, see {@link VanGogh#deliveryStats()}.
+ * The latency is the time from the end of a call on its worker to its delivery.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+@SuppressWarnings("unused")
+public final class DeliveryStats {
+    private final long deliveredCount;
+    private final long frameCount;
+    private final int maxPerFrame;
+    private final long totalLatencyMillis;
+    private final long maxLatencyMillis;
+
+    DeliveryStats(long deliveredCount, long frameCount, int maxPerFrame,
+                  long totalLatencyMillis, long maxLatencyMillis) {
+        this.deliveredCount = deliveredCount;
+        this.frameCount = frameCount;
+        this.maxPerFrame = maxPerFrame;
+        this.totalLatencyMillis = totalLatencyMillis;
+        this.maxLatencyMillis = maxLatencyMillis;
+    }
+
+    /**
+     * @return the number of completed calls which have been delivered, canceled ones excluded.
+     */
+    public long deliveredCount() {
+        return deliveredCount;
+    }
+
+    /**
+     * @return the number of frames in which something has been delivered.
+     */
+    public long frameCount() {
+        return frameCount;
+    }
+
+    /**
+     * @return the most calls delivered in a frame.
+     */
+    public int maxPerFrame() {
+        return maxPerFrame;
+    }
+
+    public long totalLatencyMillis() {
+        return totalLatencyMillis;
+    }
+
+    public long maxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+
+    /**
+     * @return the average latency of the delivered calls, 0 if none.
+     */
+    public double averageLatencyMillis() {
+        return deliveredCount == 0L ? 0.0 : totalLatencyMillis / (double) deliveredCount;
+    }
+
+    @Override
+    public String toString() {
+        return "DeliveryStats{" +
+                "deliveredCount=" + deliveredCount +
+                ", frameCount=" + frameCount +
+                ", maxPerFrame=" + maxPerFrame +
+                ", totalLatencyMillis=" + totalLatencyMillis +
+                ", maxLatencyMillis=" + maxLatencyMillis +
+                ", averageLatencyMillis=" + averageLatencyMillis() +
+                '}';
+    }
+}
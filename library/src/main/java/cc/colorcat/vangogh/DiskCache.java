@@ -17,32 +17,75 @@
 package cc.colorcat.vangogh;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FilterInputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
+ * The index of entries is kept in an append-only journal, so opening replays the journal
+ * instead of scanning and sorting the directory. The journal looks like this:
+ * <pre>
+ *     cc.colorcat.vangogh.DiskCache
+ *     2
+ *
+ *     DIRTY 335c4c6028171cfddfbaae1a9c313c52
+ *     CLEAN 335c4c6028171cfddfbaae1a9c313c52 3934
+ *     META 335c4c6028171cfddfbaae1a9c313c52 1792310400000 %22686b1d5e%22 ~
+ *     READ 335c4c6028171cfddfbaae1a9c313c52
+ *     PARTIAL 335c4c6028171cfddfbaae1a9c313c52 %22686b1d5e%22
+ *     REMOVE 335c4c6028171cfddfbaae1a9c313c52
+ * </pre>
+ * DIRTY is written when an entry starts being written and must be followed by CLEAN, PARTIAL
+ * or REMOVE, otherwise the temporary file is deleted at next opening. CLEAN records the length
+ * of the committed file, META the time at which it expires and its url-encoded ETag and
+ * Last-Modified ({@value #NONE} if none), READ moves the entry to the most recently used.
+ * PARTIAL records the
+ * url-encoded validator (ETag or Last-Modified) of an interrupted download whose temporary
+ * file is kept, so it can be resumed by a range request. The length of a kept file is counted
+ * in the size of the cache, so it is evicted like the committed ones. The journal is compacted
+ * once the redundant lines exceed the live entries, and the directory is scanned only if the
+ * journal is missing or corrupt.
+ * <p>
+ * Files are sharded into subdirectories named by the first {@value #SHARD_LENGTH} chars of
+ * their keys, which are md5 hex strings, so that no directory grows too large. Caches of the
+ * flat layout (journal version {@value #VERSION_FLAT}) are migrated once at opening.
+ * <p>
+ * There is no global lock: the index is a {@link ConcurrentHashMap}, the state of each entry
+ * is guarded by its {@link Snapshot} and the journal by its own lock, so reads of different
+ * entries never wait for each other, for writes or for evictions. The order of eviction is
+ * kept by a logical clock stamped on each access. Locks are always taken in the order of
+ * snapshot, journal.
+ * <p>
  * Author: cxx
  * Date: 2017-07-07
  * GitHub: https://github.com/ccolorcat
@@ -52,28 +95,57 @@ final class DiskCache {
     private static final String DIRTY_SUFFIX = ".tmp";
     private static final Pattern LEGAL_KEY_PATTERN = Pattern.compile("[a-z0-9_-]{1,64}");
 
-    private final LinkedHashMap<String, Snapshot> map;
+    static final String JOURNAL_FILE = "journal.vg";
+    static final String JOURNAL_FILE_TEMP = JOURNAL_FILE + DIRTY_SUFFIX;
+    static final String MAGIC = "cc.colorcat.vangogh.DiskCache";
+    static final String VERSION = "2";
+    static final String VERSION_FLAT = "1";
+    private static final int SHARD_LENGTH = 2;
+    private static final String CLEAN = "CLEAN";
+    private static final String DIRTY = "DIRTY";
+    private static final String REMOVE = "REMOVE";
+    private static final String READ = "READ";
+    private static final String PARTIAL = "PARTIAL";
+    private static final String META = "META";
+    private static final String NONE = "~";
+    private static final int REDUNDANT_OP_COMPACT_THRESHOLD = 2000;
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    private final ConcurrentHashMap<String, Snapshot> map;
     private File directory;
+    private final File journalFile;
+    private final File journalFileTmp;
+    private final Object journalLock = new Object();
+    // guarded by journalLock
+    private Writer journalWriter;
+    private int redundantOpCount;
+    private boolean journalErrors;
 
     private long maxSize;
-    private long size;
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong clock = new AtomicLong();
     private final ThreadPoolExecutor executor =
             new ThreadPoolExecutor(0, 1, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
 
     private final Callable<Void> cleanupCallable = new Callable<Void>() {
         @Override
         public Void call() throws Exception {
-            synchronized (DiskCache.this) {
-                trimToSize(maxSize);
-                return null;
+            trimToSize(maxSize);
+            synchronized (journalLock) {
+                if (journalRebuildRequired()) {
+                    rebuildJournal();
+                }
             }
+            return null;
         }
     };
 
     private DiskCache(File directory, long maxSize) {
         this.directory = directory;
         this.maxSize = maxSize;
-        this.map = new LinkedHashMap<>(0, 0.75F, true);
+        this.map = new ConcurrentHashMap<>();
+        this.journalFile = new File(directory, JOURNAL_FILE);
+        this.journalFileTmp = new File(directory, JOURNAL_FILE_TEMP);
     }
 
     static DiskCache open(File directory, long maxSize) throws IOException {
@@ -87,9 +159,26 @@ final class DiskCache {
             File dir = new File(directory, "diskCache");
             if (dir.exists() || dir.mkdirs()) {
                 DiskCache cache = new DiskCache(dir, maxSize);
+                if (cache.journalFile.exists()) {
+                    try {
+                        if (cache.readJournal()) {
+                            cache.migrateFlatFiles();
+                            cache.rebuildJournal();
+                        } else {
+                            cache.journalWriter = newJournalWriter(cache.journalFile, true);
+                        }
+                        cache.asyncCleanup();
+                        return cache;
+                    } catch (IOException e) {
+                        LogUtils.e(e);
+                        cache.map.clear();
+                        cache.size.set(0L);
+                    }
+                }
                 cache.cleanDirtyFile();
                 cache.readSnapshots();
-                cache.asyncTrimToSize();
+                cache.rebuildJournal();
+                cache.asyncCleanup();
                 return cache;
             }
             throw new IOException("failed to create directory: " + dir);
@@ -97,45 +186,334 @@ final class DiskCache {
     }
 
     private void cleanDirtyFile() throws IOException {
-        File[] dirty = directory.listFiles(new FileFilter() {
+        FileFilter filter = new FileFilter() {
             @Override
             public boolean accept(File file) {
                 return file.isFile() && file.getName().endsWith(DIRTY_SUFFIX);
             }
-        });
-        Utils.deleteIfExists(dirty);
+        };
+        Utils.deleteIfExists(directory.listFiles(filter));
+        for (File shard : listShards()) {
+            Utils.deleteIfExists(shard.listFiles(filter));
+        }
     }
 
+    /**
+     * Scans the shards and the files left by the flat layout, the later are moved into
+     * their shards.
+     */
     private void readSnapshots() throws IOException {
-        File[] files = directory.listFiles(new FileFilter() {
+        FileFilter filter = new FileFilter() {
             @Override
             public boolean accept(File file) {
-                return file.isFile();
+                return file.isFile() && LEGAL_KEY_PATTERN.matcher(file.getName()).matches();
             }
-        });
-        assert files != null;
-        List<File> list = Arrays.asList(files);
+        };
+        List<File> list = new ArrayList<>();
+        File[] flat = directory.listFiles(filter);
+        assert flat != null;
+        for (File file : flat) {
+            File sharded = new File(shardOf(file.getName()), file.getName());
+            moveToShard(file, sharded);
+            list.add(sharded);
+        }
+        for (File shard : listShards()) {
+            File[] files = shard.listFiles(filter);
+            if (files != null) {
+                list.addAll(Arrays.asList(files));
+            }
+        }
         Collections.sort(list, new FileComparator());
         for (int i = 0, size = list.size(); i < size; ++i) {
             File file = list.get(i);
-            this.size += Utils.sizeOf(file);
             String name = file.getName();
-            map.put(name, new Snapshot(name));
+            Snapshot snapshot = new Snapshot(name);
+            snapshot.length = Utils.sizeOf(file);
+            snapshot.readable = true;
+            snapshot.touch();
+            this.size.addAndGet(snapshot.length);
+            map.put(name, snapshot);
+        }
+    }
+
+    /**
+     * @return true if the journal is of the flat layout and the files need migrating.
+     */
+    private boolean readJournal() throws IOException {
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(journalFile), US_ASCII));
+            String magic = reader.readLine();
+            String version = reader.readLine();
+            String blank = reader.readLine();
+            boolean flat = VERSION_FLAT.equals(version);
+            if (!MAGIC.equals(magic) || !(flat || VERSION.equals(version)) || !"".equals(blank)) {
+                throw new IOException("unexpected journal header: [" + magic + ", " + version + ", " + blank + "]");
+            }
+            Set<String> dirty = new HashSet<>();
+            int lineCount = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                readJournalLine(line, dirty);
+                ++lineCount;
+            }
+            redundantOpCount = lineCount - map.size();
+            for (String key : dirty) {
+                Snapshot snapshot = map.get(key);
+                // The appended bytes of an unfinished resuming are still a prefix of the
+                // resource, the validator decides whether they can be used.
+                if (snapshot != null && snapshot.partialValidator != null) {
+                    continue;
+                }
+                File parent = flat ? directory : shardOf(key);
+                Utils.deleteIfExists(new File(parent, key + DIRTY_SUFFIX));
+                if (snapshot != null && !snapshot.readable) {
+                    map.remove(key);
+                }
+            }
+            for (Snapshot snapshot : map.values()) {
+                String validator = snapshot.partialValidator;
+                if (validator != null) {
+                    snapshot.partialValidator = null;
+                    long partialLength = flat ? 0L : Utils.sizeOf(snapshot.getDirtyFile());
+                    if (partialLength > 0L) {
+                        snapshot.keepPartial(validator, partialLength);
+                    } else if (!snapshot.readable) {
+                        map.remove(snapshot.key);
+                    }
+                }
+            }
+            return flat;
+        } finally {
+            Utils.close(reader);
+        }
+    }
+
+    private void readJournalLine(String line, Set<String> dirty) throws IOException {
+        String[] parts = line.split(" ");
+        if (parts.length < 2 || !LEGAL_KEY_PATTERN.matcher(parts[1]).matches()) {
+            throw new IOException("unexpected journal line: " + line);
+        }
+        String op = parts[0];
+        String key = parts[1];
+        if (CLEAN.equals(op) && parts.length == 3) {
+            long length;
+            try {
+                length = Long.parseLong(parts[2]);
+            } catch (NumberFormatException e) {
+                throw new IOException("unexpected journal line: " + line);
+            }
+            Snapshot snapshot = map.get(key);
+            if (snapshot == null) {
+                snapshot = new Snapshot(key);
+                map.put(key, snapshot);
+            }
+            size.addAndGet(length - snapshot.length);
+            snapshot.length = length;
+            snapshot.readable = true;
+            snapshot.partialValidator = null;
+            snapshot.headers = null;
+            snapshot.touch();
+            dirty.remove(key);
+        } else if (META.equals(op) && parts.length == 5) {
+            Snapshot snapshot = map.get(key);
+            if (snapshot != null && snapshot.readable) {
+                try {
+                    snapshot.headers = new CacheHeaders(decode(parts[3]), decode(parts[4]), Long.parseLong(parts[2]));
+                } catch (NumberFormatException e) {
+                    throw new IOException("unexpected journal line: " + line);
+                }
+            }
+        } else if (PARTIAL.equals(op) && parts.length == 3) {
+            Snapshot snapshot = map.get(key);
+            if (snapshot == null) {
+                snapshot = new Snapshot(key);
+                map.put(key, snapshot);
+            }
+            snapshot.partialValidator = URLDecoder.decode(parts[2], "UTF-8");
+            snapshot.touch();
+            dirty.remove(key);
+        } else if (DIRTY.equals(op) && parts.length == 2) {
+            if (!map.containsKey(key)) {
+                Snapshot snapshot = new Snapshot(key);
+                snapshot.touch();
+                map.put(key, snapshot);
+            }
+            dirty.add(key);
+        } else if (REMOVE.equals(op) && parts.length == 2) {
+            Snapshot removed = map.remove(key);
+            if (removed != null) {
+                size.addAndGet(-removed.length);
+            }
+            dirty.remove(key);
+        } else if (READ.equals(op) && parts.length == 2) {
+            Snapshot snapshot = map.get(key);
+            if (snapshot != null) {
+                snapshot.touch();
+            }
+        } else {
+            throw new IOException("unexpected journal line: " + line);
+        }
+    }
+
+    /**
+     * Moves the files of the flat layout recorded in the journal into their shards.
+     */
+    private void migrateFlatFiles() throws IOException {
+        for (Snapshot snapshot : map.values()) {
+            File flat = new File(directory, snapshot.key);
+            if (flat.exists()) {
+                moveToShard(flat, snapshot.getCleanFile());
+            }
         }
     }
 
-    synchronized Snapshot getSnapshot(String key) {
+    private File shardOf(String key) {
+        return new File(directory, key.substring(0, Math.min(SHARD_LENGTH, key.length())));
+    }
+
+    private File[] listShards() {
+        File[] shards = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isDirectory();
+            }
+        });
+        return shards != null ? shards : new File[0];
+    }
+
+    private static void moveToShard(File from, File to) throws IOException {
+        File shard = to.getParentFile();
+        if (!shard.exists() && !shard.mkdirs()) {
+            throw new IOException("failed to create directory: " + shard);
+        }
+        Utils.renameTo(from, to, true);
+    }
+
+    /**
+     * Writes a new journal which contains only the live entries in order of access and
+     * replaces the current one. The states are read without the locks of snapshots, a state
+     * changed meanwhile is appended to the new journal once this returns.
+     * NOTE: Must be called with the journal lock held, or before the cache is published.
+     */
+    private void rebuildJournal() throws IOException {
+        Utils.close(journalWriter);
+        Writer writer = newJournalWriter(journalFileTmp, false);
+        try {
+            writer.write(MAGIC);
+            writer.write('\n');
+            writer.write(VERSION);
+            writer.write('\n');
+            writer.write('\n');
+            for (Snapshot snapshot : snapshotsInAccessOrder()) {
+                if (snapshot.writing) {
+                    writer.write(DIRTY + ' ' + snapshot.key + '\n');
+                }
+                if (snapshot.readable) {
+                    writer.write(CLEAN + ' ' + snapshot.key + ' ' + snapshot.length + '\n');
+                    CacheHeaders headers = snapshot.headers;
+                    if (headers != null) {
+                        writer.write(META + ' ' + snapshot.key + ' ' + encode(headers) + '\n');
+                    }
+                }
+                String validator = snapshot.partialValidator;
+                if (validator != null) {
+                    writer.write(PARTIAL + ' ' + snapshot.key + ' ' + URLEncoder.encode(validator, "UTF-8") + '\n');
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        Utils.renameTo(journalFileTmp, journalFile, true);
+        journalWriter = newJournalWriter(journalFile, true);
+        redundantOpCount = 0;
+        journalErrors = false;
+    }
+
+    private static Writer newJournalWriter(File file, boolean append) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, append), US_ASCII));
+    }
+
+    /**
+     * Appends a line to the journal, the lines of DIRTY, CLEAN and REMOVE are flushed at once,
+     * READ only affects the order of eviction and is flushed along with them.
+     */
+    private void journal(String op, String key, @Nullable String arg, boolean flush) {
+        synchronized (journalLock) {
+            writeJournal(op, key, arg, flush);
+        }
+    }
+
+    private void writeJournal(String op, String key, @Nullable String arg, boolean flush) {
+        if (journalWriter == null) {
+            return;
+        }
+        try {
+            journalWriter.write(op);
+            journalWriter.write(' ');
+            journalWriter.write(key);
+            if (arg != null) {
+                journalWriter.write(' ');
+                journalWriter.write(arg);
+            }
+            journalWriter.write('\n');
+            if (flush) {
+                journalWriter.flush();
+            }
+        } catch (IOException e) {
+            LogUtils.e(e);
+            journalErrors = true;
+        }
+        ++redundantOpCount;
+    }
+
+    private static String encode(CacheHeaders headers) throws IOException {
+        return headers.expiresAt + " " + encode(headers.etag) + ' ' + encode(headers.lastModified);
+    }
+
+    private static String encode(@Nullable String value) throws IOException {
+        return value != null ? URLEncoder.encode(value, "UTF-8") : NONE;
+    }
+
+    @Nullable
+    private static String decode(String value) throws IOException {
+        return NONE.equals(value) ? null : URLDecoder.decode(value, "UTF-8");
+    }
+
+    private boolean journalRebuildRequired() {
+        return journalErrors
+                || (redundantOpCount >= REDUNDANT_OP_COMPACT_THRESHOLD && redundantOpCount >= map.size());
+    }
+
+    Snapshot getSnapshot(String key) {
         checkKey(key);
         Snapshot snapshot = map.get(key);
         if (snapshot == null) {
-            snapshot = new Snapshot(key);
-            map.put(key, snapshot);
+            Snapshot created = new Snapshot(key);
+            snapshot = map.putIfAbsent(key, created);
+            if (snapshot == null) {
+                snapshot = created;
+            }
         }
         return snapshot;
     }
 
+    /**
+     * @return the snapshot only if it has been committed, otherwise null.
+     */
+    Snapshot getIfReadable(String key) {
+        checkKey(key);
+        Snapshot snapshot = map.get(key);
+        return snapshot != null && snapshot.readable ? snapshot : null;
+    }
+
+    /**
+     * Deletes all entries, the ones in use are deleted once they are released.
+     */
     void clear() throws IOException {
-        Utils.deleteContents(directory);
+        for (Snapshot snapshot : map.values()) {
+            snapshot.requireDelete();
+        }
+        flushJournal();
     }
 
     long maxSize() {
@@ -143,7 +521,7 @@ final class DiskCache {
     }
 
     long size() {
-        return size;
+        return size.get();
     }
 
     private void checkKey(String key) {
@@ -153,60 +531,41 @@ final class DiskCache {
         }
     }
 
-    private void completeWriteSnapshot(Snapshot snapshot, boolean success) throws IOException {
-        try {
-            File dirty = snapshot.getDirtyFile();
-            File clean = snapshot.getCleanFile();
-            if (success) {
-                if (dirty.exists()) {
-                    long oldLength = clean.length();
-                    long newLength = dirty.length();
-                    Utils.renameTo(dirty, clean, true);
-                    size = size - oldLength + newLength;
-//                    asyncTrimToSize();
-                }
-            } else {
-                Utils.deleteIfExists(dirty);
-            }
-        } finally {
-            snapshot.writing = false;
-            snapshot.committed = false;
-            snapshot.hasErrors = false;
-            if (snapshot.requiredDelete) {
-                deleteSnapshot(snapshot);
-            }
-            asyncTrimToSize();
+    private void asyncCleanup() {
+        boolean rebuild;
+        synchronized (journalLock) {
+            rebuild = journalRebuildRequired();
+        }
+        if (size.get() > maxSize || rebuild) {
+            executor.submit(cleanupCallable);
         }
     }
 
-    private void deleteSnapshot(Snapshot snapshot) throws IOException {
-        File clean = snapshot.getCleanFile();
-        if (clean.exists()) {
-            long length = clean.length();
-            Utils.deleteIfExists(clean);
-            if (map.remove(snapshot.key) != null) {
-                size -= length;
-            }
+    /**
+     * Evicts the least recently used entries which are not in use, the files are deleted
+     * with only the locks of their own snapshots held.
+     */
+    private void trimToSize(long maxSize) throws IOException {
+        if (size.get() <= maxSize) {
+            return;
         }
+        List<Snapshot> snapshots = snapshotsInAccessOrder();
+        for (int i = 0, count = snapshots.size(); i < count && size.get() > maxSize; ++i) {
+            snapshots.get(i).evict();
+        }
+        flushJournal();
     }
 
-    private void asyncTrimToSize() {
-        if (size > maxSize) {
-            executor.submit(cleanupCallable);
-        }
+    private List<Snapshot> snapshotsInAccessOrder() {
+        List<Snapshot> snapshots = new ArrayList<>(map.values());
+        Collections.sort(snapshots, new AccessComparator());
+        return snapshots;
     }
 
-    private void trimToSize(long maxSize) throws IOException {
-        Iterator<Map.Entry<String, Snapshot>> iterator = map.entrySet().iterator();
-        while (size > maxSize && iterator.hasNext()) {
-            Map.Entry<String, Snapshot> toEvict = iterator.next();
-            Snapshot value = toEvict.getValue();
-            if (value.readCount == 0 && !value.writing) {
-                File clean = value.getCleanFile();
-                long cleanLength = clean.length();
-                Utils.deleteIfExists(value.getCleanFile());
-                size -= cleanLength;
-                iterator.remove();
+    private void flushJournal() throws IOException {
+        synchronized (journalLock) {
+            if (journalWriter != null) {
+                journalWriter.flush();
             }
         }
     }
@@ -222,16 +581,60 @@ final class DiskCache {
         private boolean hasErrors = false;
 
         private boolean requiredDelete = false;
+        /**
+         * Whether it has been deleted or evicted and removed from the index,
+         * it can not be written any more.
+         */
+        private boolean removed = false;
+
+        /**
+         * Whether the clean file has been committed, its length and the time of last access.
+         * They are changed with the lock of this held, but may be read without it.
+         */
+        private volatile boolean readable = false;
+        private volatile long length = 0L;
+        private volatile long accessTime = 0L;
+        /**
+         * The validator of the kept temporary file of an interrupted download, null if none.
+         */
+        private volatile String partialValidator = null;
+        /**
+         * The length of the kept temporary file, which is counted in the size of the cache.
+         */
+        private long partialSize = 0L;
+        /**
+         * The validators and freshness of the committed file, null if unknown.
+         */
+        private volatile CacheHeaders headers = null;
+        /**
+         * The headers given by {@link #getOutputStream(long, CacheHeaders)}, used once the
+         * writing is committed.
+         */
+        private CacheHeaders pendingHeaders = null;
+        /**
+         * The validator given by {@link #abortWrite(String)}, used once the writing completes.
+         */
+        private String suspendedValidator = null;
 
         private Snapshot(String key) {
             this.key = key;
         }
 
-        InputStream getInputStream() {
-            synchronized (DiskCache.this) {
+        /**
+         * @return the stream of the committed file, whose descriptor can be decoded directly,
+         * null if it is not readable.
+         */
+        FileInputStream getInputStream() {
+            synchronized (this) {
+                if (!readable) {
+                    return null;
+                }
                 try {
                     ++readCount;
-                    return new SnapshotInputStream(new FileInputStream(getCleanFile()));
+                    FileInputStream is = new SnapshotInputStream(getCleanFile());
+                    touch();
+                    journal(READ, key, null, false);
+                    return is;
                 } catch (FileNotFoundException e) {
                     --readCount;
                     return null;
@@ -244,11 +647,40 @@ final class DiskCache {
         }
 
         OutputStream getOutputStream() {
-            synchronized (DiskCache.this) {
-                if (!writing) {
+            return getOutputStream(0L, null);
+        }
+
+        /**
+         * @param offset  0 to write a new file, otherwise append to the kept temporary file,
+         *                which must be of the length.
+         * @param headers the validators and freshness of the file being written, null if unknown.
+         * @return null if it is being written, has been removed, or the temporary file
+         * does not match the offset, which is discarded then.
+         */
+        OutputStream getOutputStream(long offset, @Nullable CacheHeaders headers) {
+            synchronized (this) {
+                if (!writing && !removed) {
                     try {
-                        FileOutputStream fos = new FileOutputStream(getDirtyFile());
+                        File dirty = getDirtyFile();
+                        boolean append = offset > 0L;
+                        if (append && (partialValidator == null || dirty.length() != offset)) {
+                            keepPartial(null, 0L);
+                            if (dirty.exists() && !dirty.delete()) {
+                                LogUtils.e("failed to delete file: " + dirty);
+                            }
+                            return null;
+                        }
+                        if (!append) {
+                            keepPartial(null, 0L);
+                        }
+                        File shard = dirty.getParentFile();
+                        if (!shard.exists() && !shard.mkdirs()) {
+                            throw new FileNotFoundException("failed to create directory: " + shard);
+                        }
+                        FileOutputStream fos = new FileOutputStream(dirty, append);
                         writing = true;
+                        pendingHeaders = headers;
+                        journal(DIRTY, key, null, true);
                         return new SnapshotOutputStream(fos);
                     } catch (FileNotFoundException e) {
                         writing = false;
@@ -259,19 +691,182 @@ final class DiskCache {
             }
         }
 
+        boolean isReadable() {
+            return readable;
+        }
+
+        /**
+         * @return the validators and freshness of the committed file, null if unknown.
+         */
+        @Nullable
+        CacheHeaders headers() {
+            return headers;
+        }
+
+        /**
+         * Replaces the headers of the committed file, such as after a revalidation.
+         */
+        void updateHeaders(CacheHeaders headers) {
+            synchronized (this) {
+                if (readable && !removed) {
+                    this.headers = headers;
+                    try {
+                        journal(META, key, encode(headers), true);
+                    } catch (IOException e) {
+                        LogUtils.e(e);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return the validator of the temporary file kept for resuming, or null if none.
+         */
+        @Nullable
+        String partialValidator() {
+            synchronized (this) {
+                return !writing ? partialValidator : null;
+            }
+        }
+
+        /**
+         * @return the length of the temporary file kept for resuming, or 0 if none.
+         */
+        long partialLength() {
+            synchronized (this) {
+                return !writing && partialValidator != null ? getDirtyFile().length() : 0L;
+            }
+        }
+
+        /**
+         * Discards the writing in progress, it is not committed once the output stream is closed.
+         *
+         * @param validator the validator of the resource being downloaded, the written bytes
+         *                  are kept for resuming if it is not null, otherwise deleted.
+         */
+        void abortWrite(@Nullable String validator) {
+            synchronized (this) {
+                if (writing) {
+                    hasErrors = true;
+                    suspendedValidator = validator;
+                }
+            }
+        }
+
         void requireDelete() throws IOException {
-            synchronized (DiskCache.this) {
+            synchronized (this) {
                 if (!requiredDelete) {
                     requiredDelete = true;
                     if (readCount == 0 && !writing) {
-                        deleteSnapshot(this);
+                        delete(true);
+                    }
+                }
+            }
+        }
+
+        private void touch() {
+            accessTime = clock.incrementAndGet();
+        }
+
+        /**
+         * Keeps the temporary file of the length for resuming, or forgets it if the validator
+         * is null, and updates the size of the cache by the change of the kept length.
+         * NOTE: Must be called with the lock of this held, or before the cache is published.
+         */
+        private void keepPartial(@Nullable String validator, long partialLength) {
+            if (validator == null) {
+                partialLength = 0L;
+            }
+            size.addAndGet(partialLength - partialSize);
+            partialSize = partialLength;
+            partialValidator = validator;
+        }
+
+        /**
+         * Deletes this if it is not in use.
+         */
+        private void evict() throws IOException {
+            synchronized (this) {
+                if (readCount == 0 && !writing) {
+                    delete(false);
+                }
+            }
+        }
+
+        /**
+         * The files are deleted before this leaves the index, otherwise a new snapshot of
+         * the same key could write them meanwhile.
+         * NOTE: Must be called with the lock of this held.
+         */
+        private void delete(boolean flush) throws IOException {
+            removed = true;
+            try {
+                if (partialValidator != null) {
+                    keepPartial(null, 0L);
+                    Utils.deleteIfExists(getDirtyFile());
+                }
+                headers = null;
+                if (readable) {
+                    readable = false;
+                    size.addAndGet(-length);
+                    length = 0L;
+                    Utils.deleteIfExists(getCleanFile());
+                    journal(REMOVE, key, null, flush);
+                }
+            } finally {
+                map.remove(key, this);
+            }
+        }
+
+        /**
+         * NOTE: Must be called with the lock of this held.
+         */
+        private void completeWrite(boolean success) throws IOException {
+            try {
+                File dirty = getDirtyFile();
+                if (success && dirty.exists()) {
+                    long newLength = dirty.length();
+                    Utils.renameTo(dirty, getCleanFile(), true);
+                    size.addAndGet(newLength - length);
+                    length = newLength;
+                    readable = true;
+                    keepPartial(null, 0L);
+                    headers = pendingHeaders;
+                    touch();
+                    journal(CLEAN, key, Long.toString(newLength), headers == null);
+                    if (headers != null) {
+                        journal(META, key, encode(headers), true);
+                    }
+                } else if (suspendedValidator != null && dirty.length() > 0L) {
+                    keepPartial(suspendedValidator, dirty.length());
+                    journal(PARTIAL, key, URLEncoder.encode(suspendedValidator, "UTF-8"), true);
+                } else {
+                    keepPartial(null, 0L);
+                    Utils.deleteIfExists(dirty);
+                    if (readable) {
+                        journal(CLEAN, key, Long.toString(length), headers == null);
+                        if (headers != null) {
+                            journal(META, key, encode(headers), true);
+                        }
+                    } else {
+                        journal(REMOVE, key, null, true);
                     }
                 }
+            } finally {
+                writing = false;
+                committed = false;
+                hasErrors = false;
+                suspendedValidator = null;
+                pendingHeaders = null;
+                if (requiredDelete) {
+                    delete(true);
+                }
+                asyncCleanup();
             }
         }
 
         private void completeRead() throws IOException {
-            synchronized (DiskCache.this) {
+            synchronized (this) {
                 --readCount;
                 if (readCount < 0) {
                     throw new IllegalStateException("readCount < 0");
@@ -279,11 +874,11 @@ final class DiskCache {
                 if (readCount == 0) {
                     if (writing) {
                         if (committed) {
-                            completeWriteSnapshot(this, !hasErrors);
+                            completeWrite(!hasErrors);
                         }
                     } else {
                         if (requiredDelete) {
-                            deleteSnapshot(this);
+                            delete(true);
                         }
                     }
                 }
@@ -291,11 +886,11 @@ final class DiskCache {
         }
 
         private void commitWrite() throws IOException {
-            synchronized (DiskCache.this) {
+            synchronized (this) {
                 if (writing && !committed) {
                     committed = true;
                     if (readCount == 0) {
-                        completeWriteSnapshot(this, !hasErrors);
+                        completeWrite(!hasErrors);
                     }
                 } else {
                     throw new IllegalStateException("writing = " + writing + ", committed = " + committed);
@@ -304,11 +899,11 @@ final class DiskCache {
         }
 
         private File getCleanFile() {
-            return new File(directory, key);
+            return new File(shardOf(key), key);
         }
 
         private File getDirtyFile() {
-            return new File(directory, key + DIRTY_SUFFIX);
+            return new File(shardOf(key), key + DIRTY_SUFFIX);
         }
 
         @Override
@@ -320,14 +915,17 @@ final class DiskCache {
                     ", committed=" + committed +
                     ", hasErrors=" + hasErrors +
                     ", requiredDelete=" + requiredDelete +
+                    ", removed=" + removed +
+                    ", readable=" + readable +
+                    ", length=" + length +
                     '}';
         }
 
-        private class SnapshotInputStream extends FilterInputStream {
+        private class SnapshotInputStream extends FileInputStream {
             private boolean closed = false;
 
-            private SnapshotInputStream(InputStream in) {
-                super(in);
+            private SnapshotInputStream(File file) throws FileNotFoundException {
+                super(file);
             }
 
             @Override
@@ -335,7 +933,7 @@ final class DiskCache {
                 if (!closed) {
                     closed = true;
                     try {
-                        in.close();
+                        super.close();
                     } finally {
                         completeRead();
                     }
@@ -409,4 +1007,11 @@ final class DiskCache {
             return Long.compare(f1.lastModified(), f2.lastModified());
         }
     }
+
+    private static class AccessComparator implements Comparator<Snapshot> {
+        @Override
+        public int compare(Snapshot s1, Snapshot s2) {
+            return Long.compare(s1.accessTime, s2.accessTime);
+        }
+    }
 }
@@ -18,9 +18,12 @@ package cc.colorcat.vangogh;
 
 import android.graphics.Bitmap;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.net.SocketTimeoutException;
 
 /**
  * Author: cxx
@@ -28,50 +31,202 @@ import java.io.OutputStream;
  * GitHub: https://github.com/ccolorcat
  */
 class DiskCacheInterceptor implements Interceptor {
-    private DiskCache diskCache;
+    private LazyDiskCache lazyDiskCache;
+    private BitmapPool pool;
+    private boolean streaming;
 
-    DiskCacheInterceptor(DiskCache cache) {
-        this.diskCache = cache;
+    /**
+     * @param streaming true to decode the network stream while writing it into the cache,
+     *                  false to write it completely and then decode the cached file.
+     *                  NOTE: With the staged executors the former decodes on the thread of
+     *                  {@link Stage#NETWORK}, the latter hands the cached file over to
+     *                  {@link Stage#DECODE}.
+     */
+    DiskCacheInterceptor(LazyDiskCache cache, BitmapPool pool, boolean streaming) {
+        this.lazyDiskCache = cache;
+        this.pool = pool;
+        this.streaming = streaming;
     }
 
     @Override
     public Result intercept(Chain chain) throws IOException {
+        // Never blocks the main thread for the opening of disk cache.
+        DiskCache diskCache = Utils.isMain() ? lazyDiskCache.getIfReady() : lazyDiskCache.get();
+        if (diskCache == null) {
+            return chain.proceed(chain.task());
+        }
         Task task = chain.task();
         Task.Options options = task.options();
-        int fromPolicy = task.fromPolicy() & From.DISK.policy;
-        if (fromPolicy != 0) {
-            DiskCache.Snapshot snapshot = diskCache.getSnapshot(task.stableKey());
-            Bitmap bitmap = decodeOrDelete(snapshot, options, false);
-            if (bitmap != null) {
-                return Result.create(bitmap, From.DISK);
+        DiskCache.Snapshot snapshot = diskCache.getSnapshot(task.stableKey());
+        From handedOver = Stage.handedOver();
+        if (handedOver != null) {
+            // Written by the network stage, which has decided to use it whatever its freshness.
+            return decodeOrThrow(snapshot, options, pool, handedOver);
+        }
+        Task networkTask = task;
+        CacheHeaders stale = null;
+        if ((task.fromPolicy() & From.DISK.policy) != 0) {
+            CacheHeaders headers = snapshot.headers();
+            boolean networkAllowed = (task.fromPolicy() & From.NETWORK.policy) != 0;
+            if (headers == null || headers.isFresh(System.currentTimeMillis()) || !networkAllowed) {
+                // The lookup of a resumed call has missed already, only the request is the same.
+                Bitmap bitmap = Stage.isResumed() ? null : decodeOrDelete(snapshot, options, pool, false);
+                if (bitmap != null) {
+                    pool.acquire(bitmap);
+                    boolean fresh = headers == null || headers.isFresh(System.currentTimeMillis());
+                    return Result.create(bitmap, fresh ? From.DISK : From.DISK_STALE);
+                }
+            } else if (snapshot.isReadable()) {
+                stale = headers;
+                networkTask = task.revalidate(headers);
             }
         }
 
-        Result result = chain.proceed(task);
+        if (stale == null) {
+            String validator = snapshot.partialValidator();
+            long partialLength = snapshot.partialLength();
+            if (validator != null && partialLength > 0L) {
+                networkTask = task.resume(partialLength, validator);
+            }
+        }
+        Result result;
+        try {
+            result = chain.proceed(networkTask);
+        } catch (IOException e) {
+            if (isCanceled(chain, e)) {
+                throw e;
+            }
+            Bitmap bitmap = stale != null ? decodeOrDelete(snapshot, options, pool, false) : null;
+            if (bitmap == null) {
+                throw e;
+            }
+            // Better a stale image than none, such as offline.
+            LogUtils.e(e);
+            pool.acquire(bitmap);
+            return Result.create(bitmap, From.DISK_STALE);
+        }
+        if (result.isNotModified()) {
+            if (stale == null) {
+                throw new IOException("unexpected 304 without conditional request, task = " + task);
+            }
+            snapshot.updateHeaders(stale.refresh(result.headers()));
+            Stage.handOverToDecode(From.DISK_REVALIDATED);
+            Bitmap bitmap = decodeOrDelete(snapshot, options, pool, true);
+            pool.acquire(bitmap);
+            return Result.create(bitmap, From.DISK_REVALIDATED);
+        }
         From resultFrom = result.from();
+        CacheHeaders headers = result.headers();
+        if (resultFrom == From.NETWORK && headers != null && headers.noStore) {
+            // Neither this response nor an older copy may be kept.
+            snapshot.requireDelete();
+            if (result.offset() > 0L) {
+                Utils.close(result.stream());
+                result = chain.proceed(task);
+            }
+            return result;
+        }
         if (resultFrom == From.NETWORK) {
-            DiskCache.Snapshot snapshot = diskCache.getSnapshot(task.stableKey());
-            OutputStream os = snapshot.getOutputStream();
-            if (os != null) {
-                InputStream is = result.stream();
-                try {
-                    Utils.dumpAndClose(is, os);
-                    Bitmap bitmap = decodeOrDelete(snapshot, options, true);
-                    result = Result.create(bitmap, resultFrom);
-                } catch (IOException e) {
-                    snapshot.requireDelete();
-                    throw e;
-                }
+            long offset = result.offset();
+            OutputStream os = snapshot.getOutputStream(offset, result.headers());
+            if (os == null && offset > 0L) {
+                // The rest is useless without the kept part, which has been discarded.
+                Utils.close(result.stream());
+                throw new IOException("failed to resume, snapshot = " + snapshot);
+            }
+            if (os != null && streaming && offset == 0L) {
+                Bitmap bitmap = teeAndDecode(snapshot, os, result, options, pool);
+                pool.acquire(bitmap);
+                result = Result.create(bitmap, resultFrom);
+            } else if (os != null) {
+                dump(snapshot, os, result, chain);
+                Stage.handOverToDecode(resultFrom);
+                result = decodeOrThrow(snapshot, options, pool, resultFrom);
             }
         }
         return result;
     }
 
-    private static Bitmap decodeOrDelete(DiskCache.Snapshot snapshot, Task.Options ops, boolean canThrow) throws IOException {
+    /**
+     * A canceled call fails with an {@link InterruptedIOException} by the abort of its I/O,
+     * it must not be taken for a network failure. A timeout is a failure.
+     */
+    private static boolean isCanceled(Chain chain, IOException e) {
+        return Utils.isCanceled(chain) || (e instanceof InterruptedIOException && !(e instanceof SocketTimeoutException));
+    }
+
+    /**
+     * Writes the stream into the snapshot, which is committed only if the whole stream has
+     * been written, otherwise the written part is kept for resuming if the result has
+     * a validator, such as when the call has been canceled.
+     */
+    private static void dump(DiskCache.Snapshot snapshot, OutputStream os, Result result, Chain chain) throws IOException {
+        InputStream is = result.stream();
+        try {
+            Utils.justDump(is, os, chain);
+        } catch (IOException e) {
+            snapshot.abortWrite(result.validator());
+            throw e;
+        } finally {
+            Utils.close(is);
+            os.close();
+        }
+    }
+
+    /**
+     * Decodes the stream while copying it into the snapshot, which is committed only if the
+     * whole stream has been copied, otherwise the copied part is kept for resuming if the
+     * result has a validator.
+     * If the stream can not be decoded, such as when it can not be reset for a pooled bitmap
+     * refused by the decoder, the committed file is decoded from the start instead.
+     */
+    private static Bitmap teeAndDecode(DiskCache.Snapshot snapshot, OutputStream os, Result network,
+                                       Task.Options ops, BitmapPool pool) throws IOException {
+        TeeInputStream tee = new TeeInputStream(network.stream(), os);
+        Bitmap result;
+        try {
+            result = Utils.transformStreamAndClose(tee, network.contentLength(), ops, pool);
+        } finally {
+            Utils.close(tee);
+            if (!tee.isComplete()) {
+                snapshot.abortWrite(network.validator());
+            }
+            os.close();
+        }
+        if (result == null) {
+            if (!tee.isComplete()) {
+                // The copied part is kept for resuming.
+                throw new IOException("stream ended early, snapshot = " + snapshot);
+            }
+            try {
+                return decodeOrDelete(snapshot, ops, pool, true);
+            } catch (IOException e) {
+                snapshot.requireDelete();
+                throw e;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decodes the committed file, which is deleted if it can not be decoded.
+     */
+    private static Result decodeOrThrow(DiskCache.Snapshot snapshot, Task.Options ops, BitmapPool pool, From from) throws IOException {
+        try {
+            Bitmap bitmap = decodeOrDelete(snapshot, ops, pool, true);
+            pool.acquire(bitmap);
+            return Result.create(bitmap, from);
+        } catch (IOException e) {
+            snapshot.requireDelete();
+            throw e;
+        }
+    }
+
+    private static Bitmap decodeOrDelete(DiskCache.Snapshot snapshot, Task.Options ops, BitmapPool pool, boolean canThrow) throws IOException {
         Bitmap result = null;
-        InputStream is = snapshot.getInputStream();
-        if (is != null) {
-            result = Utils.transformStreamAndClose(is, ops);
+        FileInputStream file = snapshot.getInputStream();
+        if (file != null) {
+            result = Utils.transformFileAndClose(file, ops, pool);
             if (result == null && !canThrow) {
                 snapshot.requireDelete();
             }
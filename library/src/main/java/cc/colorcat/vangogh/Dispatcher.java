@@ -21,8 +21,10 @@ import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
 import android.os.Process;
+import android.support.annotation.Nullable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -31,6 +33,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Author: cxx
@@ -46,9 +49,14 @@ class Dispatcher {
     static final int CALL_DELAY_NEXT_BATCH = 105;
     static final int TAG_PAUSE = 106;
     static final int TAG_RESUME = 107;
+    static final int CALL_RESUME = 108;
 
     private final VanGogh vanGogh;
     private final ExecutorService executor;
+    @Nullable
+    private final ExecutorService networkExecutor;
+    @Nullable
+    private final ExecutorService decodeExecutor;
     private final Handler mainHandler;
     private final DispatcherThread dispatcherThread;
     private final DispatcherHandler handler;
@@ -58,9 +66,21 @@ class Dispatcher {
     private final Map<Object, Action> pausedActions; // targetUnique to action
 
 
-    Dispatcher(VanGogh vanGogh, ExecutorService executor, Handler mainHandler) {
+    /**
+     * @param executor        the executor of {@link Stage#CACHE}, or of everything if the others
+     *                        are null.
+     * @param networkExecutor the executor of {@link Stage#NETWORK}.
+     * @param decodeExecutor  the executor of {@link Stage#DECODE}.
+     */
+    Dispatcher(VanGogh vanGogh, ExecutorService executor, @Nullable ExecutorService networkExecutor,
+               @Nullable ExecutorService decodeExecutor, Handler mainHandler) {
+        if ((networkExecutor == null) != (decodeExecutor == null)) {
+            throw new IllegalArgumentException("networkExecutor and decodeExecutor must be both null or not");
+        }
         this.vanGogh = vanGogh;
         this.executor = executor;
+        this.networkExecutor = networkExecutor;
+        this.decodeExecutor = decodeExecutor;
         this.mainHandler = mainHandler;
         this.dispatcherThread = new DispatcherThread();
         this.dispatcherThread.start();
@@ -93,6 +113,14 @@ class Dispatcher {
         handler.sendMessage(handler.obtainMessage(CALL_RETRY, call));
     }
 
+    /**
+     * Submits the call again which has been {@link Deferred} once it is ready,
+     * to the executor of {@link Call#stage}.
+     */
+    void dispatchResume(Call call) {
+        handler.sendMessage(handler.obtainMessage(CALL_RESUME, call));
+    }
+
     void dispatchPauseTag(Object tag) {
         handler.sendMessage(handler.obtainMessage(TAG_PAUSE, tag));
     }
@@ -108,11 +136,15 @@ class Dispatcher {
         }
         Call call = keyToCall.get(action.key);
         if (call != null) {
-            call.attach(action);
+            ExecutorService current = executorOf(call);
+            if (call.attach(action) && current instanceof CallExecutor) {
+                ((CallExecutor) current).reprioritize(call.future, call.priority());
+            }
         } else {
             call = new Call(vanGogh, action);
+            call.stage = isStaged() ? Stage.CACHE : null;
             keyToCall.put(action.key, call);
-            call.future = executor.submit(call);
+            submit(call);
         }
     }
 
@@ -131,20 +163,80 @@ class Dispatcher {
     }
 
     private void performComplete(Call call) {
-        keyToCall.remove(call.key());
+        removeCall(call);
         batch(call);
     }
 
     private void performError(Call call) {
-        keyToCall.remove(call.key());
+        removeCall(call);
         batch(call);
     }
 
+    /**
+     * A canceled call may end after a new one of the same key has been submitted.
+     */
+    private void removeCall(Call call) {
+        if (keyToCall.get(call.key()) == call) {
+            keyToCall.remove(call.key());
+        }
+    }
+
     private void performRetry(Call call) {
         if (call.isCanceled()) {
             return;
         }
-        call.future = executor.submit(call);
+        // A new attempt looks up the caches again.
+        call.stage = isStaged() ? Stage.CACHE : null;
+        submit(call);
+    }
+
+    private void performResume(Call call) {
+        if (call.isCanceled() || !submit(call)) {
+            call.abandon();
+        }
+    }
+
+    /**
+     * @return false if the executor rejected the call, which has been failed with the cause.
+     */
+    private boolean submit(Call call) {
+        try {
+            call.future = executorOf(call).submit(call);
+            return true;
+        } catch (RejectedExecutionException e) {
+            LogUtils.e(e);
+            call.cause = e;
+            performError(call);
+            return false;
+        }
+    }
+
+    private boolean isStaged() {
+        return networkExecutor != null;
+    }
+
+    private ExecutorService executorOf(Call call) {
+        if (call.stage == Stage.NETWORK && networkExecutor != null) {
+            return networkExecutor;
+        }
+        if (call.stage == Stage.DECODE && decodeExecutor != null) {
+            return decodeExecutor;
+        }
+        return executor;
+    }
+
+    /**
+     * @return the snapshots of the stages whose executors are the default ones.
+     */
+    List<StageStats> stageStats() {
+        List<StageStats> result = new ArrayList<>(3);
+        ExecutorService[] executors = {executor, networkExecutor, decodeExecutor};
+        for (ExecutorService e : executors) {
+            if (e instanceof CallExecutor) {
+                result.add(((CallExecutor) e).stats());
+            }
+        }
+        return Collections.unmodifiableList(result);
     }
 
     private void performPauseTag(Object tag) {
@@ -199,6 +291,7 @@ class Dispatcher {
 
     private void batch(Call call) {
         if (call.isCanceled()) {
+            vanGogh.bitmapPool.release(call.bitmap);
             return;
         }
         if (call.bitmap != null) {
@@ -206,7 +299,8 @@ class Dispatcher {
         }
         batch.add(call);
         if (!handler.hasMessages(CALL_DELAY_NEXT_BATCH)) {
-            handler.sendEmptyMessageDelayed(CALL_DELAY_NEXT_BATCH, 200);
+            // With no window, the results already in the queue still go in the same batch.
+            handler.sendEmptyMessageDelayed(CALL_DELAY_NEXT_BATCH, vanGogh.batchWindow);
         }
     }
 
@@ -258,6 +352,11 @@ class Dispatcher {
                     dispatcher.performBatchComplete();
                     break;
                 }
+                case CALL_RESUME: {
+                    Call call = (Call) msg.obj;
+                    dispatcher.performResume(call);
+                    break;
+                }
                 case TAG_PAUSE: {
                     dispatcher.performPauseTag(msg.obj);
                     break;
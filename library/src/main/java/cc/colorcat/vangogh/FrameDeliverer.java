@@ -0,0 +1,161 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.view.Choreographer;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers the completed calls on the main thread at the start of the next frames, before the
+ * views are drawn, so a result shows on the next frame. The deliveries of a frame stop once
+ * they have taken {@link #FRAME_BUDGET_NANOS}, the rest go on at the next frame, so a large
+ * batch spreads over frames instead of dropping them.
+ * <p>
+ * NOTE: Before Jelly Bean there is no {@link Choreographer}, the deliveries are posted to the
+ * main handler instead.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+final class FrameDeliverer implements Runnable {
+    /**
+     * A quarter of a frame at 60 fps, which leaves the rest for measuring and drawing.
+     */
+    static final long FRAME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(4L);
+
+    private final VanGogh vanGogh;
+    private final Handler mainHandler;
+    private final FrameCallbackWrapper frameCallback;
+    /**
+     * Touched only on the main thread.
+     */
+    private final LinkedList<Call> pending = new LinkedList<>();
+    private boolean scheduled = false;
+
+    private long deliveredCount;
+    private long frameCount;
+    private long totalLatencyNanos;
+    private long maxLatencyNanos;
+    private int maxPerFrame;
+
+    FrameDeliverer(VanGogh vanGogh, Handler mainHandler) {
+        this(vanGogh, mainHandler, Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN);
+    }
+
+    /**
+     * @param choreographer false to post the deliveries to the main handler.
+     */
+    FrameDeliverer(VanGogh vanGogh, Handler mainHandler, boolean choreographer) {
+        this.vanGogh = vanGogh;
+        this.mainHandler = mainHandler;
+        this.frameCallback = choreographer ? new FrameCallbackWrapper(this) : null;
+    }
+
+    /**
+     * Must be called on the main thread.
+     */
+    void enqueue(List<Call> calls) {
+        pending.addAll(calls);
+        if (!scheduled && !pending.isEmpty()) {
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        scheduled = true;
+        if (frameCallback != null) {
+            frameCallback.post();
+        } else {
+            mainHandler.post(this);
+        }
+    }
+
+    @Override
+    public void run() {
+        scheduled = false;
+        long start = System.nanoTime();
+        int count = 0;
+        long totalLatency = 0L, maxLatency = 0L;
+        try {
+            do {
+                Call call = pending.removeFirst();
+                vanGogh.complete(call);
+                long now = System.nanoTime();
+                if (call.finishedAt != 0L) {
+                    long latency = now - call.finishedAt;
+                    totalLatency += latency;
+                    maxLatency = Math.max(maxLatency, latency);
+                }
+                ++count;
+                if (now - start >= FRAME_BUDGET_NANOS) {
+                    break;
+                }
+            } while (!pending.isEmpty());
+        } finally {
+            synchronized (this) {
+                deliveredCount += count;
+                ++frameCount;
+                totalLatencyNanos += totalLatency;
+                maxLatencyNanos = Math.max(maxLatencyNanos, maxLatency);
+                maxPerFrame = Math.max(maxPerFrame, count);
+            }
+            // Even if a delivery has thrown, the others must not wait for another batch.
+            if (!pending.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    synchronized DeliveryStats stats() {
+        return new DeliveryStats(
+                deliveredCount,
+                frameCount,
+                maxPerFrame,
+                TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos),
+                TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos)
+        );
+    }
+
+
+    /**
+     * Keeps {@link Choreographer} out of {@link FrameDeliverer}, which is loaded before Jelly Bean too.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class FrameCallbackWrapper implements Choreographer.FrameCallback {
+        private final Runnable delivery;
+
+        private FrameCallbackWrapper(Runnable delivery) {
+            this.delivery = delivery;
+        }
+
+        private void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            delivery.run();
+        }
+    }
+}
@@ -27,6 +27,15 @@ import android.support.annotation.ColorInt;
 public enum From {
     MEMORY(Color.GREEN, From.POLICY_MEMORY),
     DISK(Color.BLUE, From.POLICY_DISK),
+    /**
+     * From disk, the entry was stale and has been confirmed by the server with 304.
+     */
+    DISK_REVALIDATED(Color.CYAN, From.POLICY_DISK),
+    /**
+     * From disk, the entry is stale but could not be revalidated, such as offline
+     * or not allowed to load from network.
+     */
+    DISK_STALE(Color.YELLOW, From.POLICY_DISK),
     NETWORK(Color.RED, From.POLICY_NETWORK),
     ANY(Color.TRANSPARENT, From.POLICY_MEMORY | From.POLICY_DISK | From.POLICY_NETWORK);
 
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+/**
+ * A snapshot of the network admission of a host, see {@link VanGogh.Builder#maxRequestsPerHost(int)}.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+@SuppressWarnings("unused")
+public final class HostStats {
+    private final String host;
+    private final int runningCount;
+    private final int queuedCount;
+    private final int admittedCount;
+    private final int waitCount;
+    private final long totalWaitMillis;
+    private final long maxWaitMillis;
+
+    HostStats(String host, int runningCount, int queuedCount, int admittedCount,
+              int waitCount, long totalWaitMillis, long maxWaitMillis) {
+        this.host = host;
+        this.runningCount = runningCount;
+        this.queuedCount = queuedCount;
+        this.admittedCount = admittedCount;
+        this.waitCount = waitCount;
+        this.totalWaitMillis = totalWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public String host() {
+        return host;
+    }
+
+    /**
+     * @return the number of calls which are on the network now.
+     */
+    public int runningCount() {
+        return runningCount;
+    }
+
+    /**
+     * @return the number of calls which are waiting for a slot now.
+     */
+    public int queuedCount() {
+        return queuedCount;
+    }
+
+    /**
+     * @return the number of calls which have been admitted, whether they waited or not.
+     */
+    public int admittedCount() {
+        return admittedCount;
+    }
+
+    /**
+     * @return the number of admitted calls which had to wait for a slot.
+     */
+    public int waitCount() {
+        return waitCount;
+    }
+
+    public long totalWaitMillis() {
+        return totalWaitMillis;
+    }
+
+    public long maxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * @return the average wait of all the admitted calls, 0 if none.
+     */
+    public double averageWaitMillis() {
+        return admittedCount == 0 ? 0.0 : totalWaitMillis / (double) admittedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "HostStats{" +
+                "host='" + host + '\'' +
+                ", runningCount=" + runningCount +
+                ", queuedCount=" + queuedCount +
+                ", admittedCount=" + admittedCount +
+                ", waitCount=" + waitCount +
+                ", totalWaitMillis=" + totalWaitMillis +
+                ", maxWaitMillis=" + maxWaitMillis +
+                ", averageWaitMillis=" + averageWaitMillis() +
+                '}';
+    }
+}
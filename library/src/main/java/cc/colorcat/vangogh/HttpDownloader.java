@@ -20,43 +20,143 @@ import android.net.Uri;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
+ * Resumes the download with a range request if {@link Task#resumeOffset()} is greater than 0,
+ * the range is conditional on the validator by If-Range, so a changed resource is downloaded
+ * entirely. Falls back to the whole resource if the server does not honor the range.
+ * <p>
+ * Sends If-None-Match and If-Modified-Since if the task revalidates a cached resource,
+ * a 304 response gives a {@link Result} without body.
+ * <p>
  * Author: cxx
  * Date: 2017-07-11
  * GitHub: https://github.com/ccolorcat
  */
-class HttpDownloader implements Downloader {
-    private HttpURLConnection conn;
+class HttpDownloader implements Downloader, Abortable {
+    static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-\\d+/(\\d+|\\*)");
+
+    private volatile HttpURLConnection conn;
+    private volatile InputStream body;
+    private volatile boolean aborted = false;
 
     @Override
     public Result load(Task task) throws IOException {
+        long offset = task.resumeOffset();
+        String validator = task.resumeValidator();
         Uri uri = task.uri();
-        conn = (HttpURLConnection) new URL(uri.toString()).openConnection();
+        HttpURLConnection conn = (HttpURLConnection) new URL(uri.toString()).openConnection();
+        this.conn = conn;
+        if (aborted) {
+            // It may have missed the connection.
+            conn.disconnect();
+            throw new InterruptedIOException("aborted, uri = " + uri);
+        }
         conn.setRequestMethod("GET");
         conn.setConnectTimeout(task.connectTimeOut());
         conn.setReadTimeout(task.readTimeOut());
+        // The offsets of ranges are of the transferred bytes, they must not be decompressed.
+        conn.setRequestProperty("Accept-Encoding", "identity");
+        if (offset > 0L) {
+            conn.setRequestProperty("Range", "bytes=" + offset + '-');
+            conn.setRequestProperty("If-Range", validator);
+        }
+        if (task.ifNoneMatch() != null) {
+            conn.setRequestProperty("If-None-Match", task.ifNoneMatch());
+        }
+        if (task.ifModifiedSince() != null) {
+            conn.setRequestProperty("If-Modified-Since", task.ifModifiedSince());
+        }
         int code = conn.getResponseCode();
-        if (code == HttpURLConnection.HTTP_OK) {
+        long now = System.currentTimeMillis();
+        if (code == HttpURLConnection.HTTP_NOT_MODIFIED
+                && (task.ifNoneMatch() != null || task.ifModifiedSince() != null)) {
+            discardBody(conn);
+            return Result.notModified(CacheHeaders.parse(conn, now));
+        }
+        if (offset > 0L && (code == HTTP_RANGE_NOT_SATISFIABLE
+                || (code == HttpURLConnection.HTTP_PARTIAL && !startsAt(conn.getHeaderField("Content-Range"), offset)))) {
+            discardBody(conn);
+            return load(task.restart());
+        }
+        if (code == HttpURLConnection.HTTP_OK || (code == HttpURLConnection.HTTP_PARTIAL && offset > 0L)) {
             InputStream is = conn.getInputStream();
             if (is != null) {
+                body = is;
                 long contentLength = conn.getContentLength();
-                if (contentLength > 0) {
-                    return Result.create(is, contentLength, From.NETWORK);
-                } else {
-                    return Result.create(is, From.NETWORK);
-                }
+                return Result.create(
+                        is,
+                        contentLength > 0 ? contentLength : -1L,
+                        code == HttpURLConnection.HTTP_PARTIAL ? offset : 0L,
+                        CacheHeaders.parse(conn, now),
+                        From.NETWORK
+                );
+            }
+        }
+        String msg = conn.getResponseMessage();
+        discardBody(conn);
+        throw new IOException("network onFailed, code = " + code + ", msg = " + msg);
+    }
+
+    /**
+     * Closes the body of an unused response, which lets the platform reuse the connection
+     * instead of leaking it.
+     */
+    private static void discardBody(HttpURLConnection conn) {
+        InputStream is = conn.getErrorStream();
+        if (is == null) {
+            try {
+                is = conn.getInputStream();
+            } catch (IOException ignore) {
             }
         }
-        throw new IOException("network onFailed, code = " + code + ", msg = " + conn.getResponseMessage());
+        Utils.close(is);
+    }
+
+    /**
+     * @return true if the Content-Range starts at the offset.
+     */
+    static boolean startsAt(String range, long offset) {
+        if (range == null) {
+            return false;
+        }
+        Matcher matcher = CONTENT_RANGE.matcher(range.trim());
+        return matcher.matches() && Long.parseLong(matcher.group(1)) == offset;
     }
 
+    /**
+     * Closes the body of the last response, the connection is kept alive by the platform
+     * if the body has been consumed.
+     */
     @Override
     public void shutDown() {
-        if (conn != null) {
-            conn.disconnect();
+        InputStream is = body;
+        HttpURLConnection c = conn;
+        if (is != null) {
+            Utils.close(is);
+            body = null;
+        } else if (c != null) {
+            c.disconnect();
+        }
+        conn = null;
+    }
+
+    /**
+     * Disconnects the connection in progress, which fails the blocking read of the response
+     * or of the body.
+     */
+    @Override
+    public void abort() {
+        aborted = true;
+        HttpURLConnection c = conn;
+        if (c != null) {
+            c.disconnect();
         }
     }
 
@@ -0,0 +1,431 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.support.annotation.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The dimensions, format and EXIF orientation of an image, read from the first bytes of it:
+ * the SOF and APP1 segments of JPEG, the IHDR chunk of PNG, the logical screen of GIF,
+ * the VP8, VP8L or VP8X chunk of WebP and the DIB header of BMP.
+ * It never reads more than {@link #MAX_LENGTH} bytes, so the stream can be reset by a mark.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+final class ImageHeader {
+    /**
+     * Enough for the frame header of a JPEG after an EXIF segment with a thumbnail, which is up
+     * to 64 KB. The header of the other formats is in the first 30 bytes.
+     */
+    static final int MAX_LENGTH = 128 * 1024;
+    /**
+     * The orientation is usually in the first entries of IFD0, the rest of APP1 is skipped.
+     */
+    private static final int MAX_EXIF_LENGTH = 4096;
+
+    static final int ORIENTATION_UNDEFINED = 0;
+
+    enum Format {
+        JPEG, PNG, GIF, WEBP, BMP
+    }
+
+    final Format format;
+    final int width;
+    final int height;
+    /**
+     * The EXIF orientation from 1 to 8, {@link #ORIENTATION_UNDEFINED} if unknown.
+     */
+    final int orientation;
+
+    private ImageHeader(Format format, int width, int height, int orientation) {
+        this.format = format;
+        this.width = width;
+        this.height = height;
+        this.orientation = orientation;
+    }
+
+    /**
+     * @return the header, or null if the format is not known or the header is invalid.
+     */
+    @Nullable
+    static ImageHeader read(InputStream is) throws IOException {
+        Reader reader = new Reader(is);
+        try {
+            byte[] head = reader.readFully(2);
+            if ((head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xD8) {
+                return readJpeg(reader);
+            }
+            if (head[0] == 'B' && head[1] == 'M') {
+                return readBmp(reader);
+            }
+            byte[] more = reader.readFully(10);
+            byte[] signature = concat(head, more);
+            if (startsWith(signature, 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n')) {
+                return readPng(reader);
+            }
+            if (startsWith(signature, 'G', 'I', 'F', '8') && (signature[4] == '7' || signature[4] == '9') && signature[5] == 'a') {
+                int width = le16(signature, 6), height = le16(signature, 8);
+                return create(Format.GIF, width, height, ORIENTATION_UNDEFINED);
+            }
+            if (startsWith(signature, 'R', 'I', 'F', 'F') && signature[8] == 'W' && signature[9] == 'E'
+                    && signature[10] == 'B' && signature[11] == 'P') {
+                return readWebp(reader);
+            }
+            return null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the file by positional reads, which leave the position of the channel unchanged,
+     * the segments skipped by the header are never read.
+     *
+     * @param buffer the buffer of the reads, any length.
+     * @return the header, or null if the format is not known or the header is invalid.
+     */
+    @Nullable
+    static ImageHeader read(FileChannel channel, byte[] buffer) throws IOException {
+        return read(new ChannelInputStream(channel, buffer));
+    }
+
+    /**
+     * The signature and the length of IHDR have been read.
+     */
+    private static ImageHeader readPng(Reader reader) throws IOException {
+        // the type of IHDR, then its width and height.
+        byte[] ihdr = reader.readFully(12);
+        if (ihdr[0] != 'I' || ihdr[1] != 'H' || ihdr[2] != 'D' || ihdr[3] != 'R') {
+            return null;
+        }
+        return create(Format.PNG, be32(ihdr, 4), be32(ihdr, 8), ORIENTATION_UNDEFINED);
+    }
+
+    private static ImageHeader readBmp(Reader reader) throws IOException {
+        // the rest of the file header, then the size of the DIB header.
+        byte[] header = reader.readFully(16);
+        int dibSize = le32(header, 12);
+        if (dibSize == 12) {
+            byte[] core = reader.readFully(4);
+            return create(Format.BMP, le16(core, 0), le16(core, 2), ORIENTATION_UNDEFINED);
+        }
+        byte[] info = reader.readFully(8);
+        // a negative height means the rows are top-down.
+        return create(Format.BMP, le32(info, 0), Math.abs(le32(info, 4)), ORIENTATION_UNDEFINED);
+    }
+
+    private static ImageHeader readWebp(Reader reader) throws IOException {
+        byte[] chunk = reader.readFully(8);
+        if (chunk[0] != 'V' || chunk[1] != 'P' || chunk[2] != '8') {
+            return null;
+        }
+        if (chunk[3] == ' ') {
+            // the frame tag, the start code, then 14 bits of width and height.
+            byte[] frame = reader.readFully(10);
+            if ((frame[3] & 0xFF) != 0x9D || (frame[4] & 0xFF) != 0x01 || (frame[5] & 0xFF) != 0x2A) {
+                return null;
+            }
+            return create(Format.WEBP, le16(frame, 6) & 0x3FFF, le16(frame, 8) & 0x3FFF, ORIENTATION_UNDEFINED);
+        }
+        if (chunk[3] == 'L') {
+            // the signature, then 14 bits of width - 1 and of height - 1.
+            byte[] bits = reader.readFully(5);
+            if ((bits[0] & 0xFF) != 0x2F) {
+                return null;
+            }
+            int b1 = bits[1] & 0xFF, b2 = bits[2] & 0xFF, b3 = bits[3] & 0xFF, b4 = bits[4] & 0xFF;
+            int width = 1 + (b1 | (b2 & 0x3F) << 8);
+            int height = 1 + (b2 >> 6 | b3 << 2 | (b4 & 0x0F) << 10);
+            return create(Format.WEBP, width, height, ORIENTATION_UNDEFINED);
+        }
+        if (chunk[3] == 'X') {
+            // the flags and reserved bytes, then 24 bits of width - 1 and of height - 1.
+            byte[] canvas = reader.readFully(10);
+            return create(Format.WEBP, 1 + le24(canvas, 4), 1 + le24(canvas, 7), ORIENTATION_UNDEFINED);
+        }
+        return null;
+    }
+
+    private static ImageHeader readJpeg(Reader reader) throws IOException {
+        int orientation = ORIENTATION_UNDEFINED;
+        while (true) {
+            int marker = reader.read();
+            if (marker != 0xFF) {
+                return null;
+            }
+            do {
+                // any number of fill bytes.
+                marker = reader.read();
+            } while (marker == 0xFF);
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                // standalone markers without length.
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                // the end of image, or the start of scan which is always after the frame header.
+                return null;
+            }
+            byte[] lengthBytes = reader.readFully(2);
+            int length = be16(lengthBytes, 0) - 2;
+            if (length < 0) {
+                return null;
+            }
+            if (isStartOfFrame(marker)) {
+                // the precision, then the height and width.
+                byte[] frame = reader.readFully(5);
+                return create(Format.JPEG, be16(frame, 3), be16(frame, 1), orientation);
+            }
+            if (marker == 0xE1 && orientation == ORIENTATION_UNDEFINED) {
+                int count = Math.min(length, MAX_EXIF_LENGTH);
+                orientation = parseExifOrientation(reader.readFully(count));
+                reader.skip(length - count);
+            } else {
+                reader.skip(length);
+            }
+        }
+    }
+
+    /**
+     * SOF0 to SOF15, except DHT, JPG and DAC which share the range.
+     */
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    /**
+     * @param app1 the payload of APP1, which is "Exif\0\0" then a TIFF structure.
+     */
+    private static int parseExifOrientation(byte[] app1) {
+        if (!startsWith(app1, 'E', 'x', 'i', 'f', 0, 0) || app1.length < 14) {
+            return ORIENTATION_UNDEFINED;
+        }
+        final int tiff = 6;
+        boolean little;
+        if (app1[tiff] == 'I' && app1[tiff + 1] == 'I') {
+            little = true;
+        } else if (app1[tiff] == 'M' && app1[tiff + 1] == 'M') {
+            little = false;
+        } else {
+            return ORIENTATION_UNDEFINED;
+        }
+        int ifd = tiff + read32(app1, tiff + 4, little);
+        if (ifd < tiff || ifd + 2 > app1.length) {
+            return ORIENTATION_UNDEFINED;
+        }
+        int entryCount = read16(app1, ifd, little);
+        for (int i = 0, entry = ifd + 2; i < entryCount && entry + 12 <= app1.length; ++i, entry += 12) {
+            if (read16(app1, entry, little) == 0x0112) {
+                int orientation = read16(app1, entry + 8, little);
+                return orientation >= 1 && orientation <= 8 ? orientation : ORIENTATION_UNDEFINED;
+            }
+        }
+        return ORIENTATION_UNDEFINED;
+    }
+
+    private static ImageHeader create(Format format, int width, int height, int orientation) {
+        return width > 0 && height > 0 ? new ImageHeader(format, width, height, orientation) : null;
+    }
+
+    private static boolean startsWith(byte[] bytes, int... prefix) {
+        if (bytes.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; ++i) {
+            if ((bytes[i] & 0xFF) != (prefix[i] & 0xFF)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = new byte[a.length + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static int read16(byte[] b, int offset, boolean little) {
+        return little ? le16(b, offset) : be16(b, offset);
+    }
+
+    private static int read32(byte[] b, int offset, boolean little) {
+        return little ? le32(b, offset) : be32(b, offset);
+    }
+
+    private static int le16(byte[] b, int offset) {
+        return (b[offset] & 0xFF) | (b[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int le24(byte[] b, int offset) {
+        return le16(b, offset) | (b[offset + 2] & 0xFF) << 16;
+    }
+
+    private static int le32(byte[] b, int offset) {
+        return le24(b, offset) | (b[offset + 3] & 0xFF) << 24;
+    }
+
+    private static int be16(byte[] b, int offset) {
+        return (b[offset] & 0xFF) << 8 | (b[offset + 1] & 0xFF);
+    }
+
+    private static int be32(byte[] b, int offset) {
+        return be16(b, offset) << 16 | be16(b, offset + 2);
+    }
+
+    @Override
+    public String toString() {
+        return "ImageHeader{" +
+                "format=" + format +
+                ", width=" + width +
+                ", height=" + height +
+                ", orientation=" + orientation +
+                '}';
+    }
+
+
+    private static final class ChannelInputStream extends InputStream {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        /**
+         * The position in the file of the next read into the buffer.
+         */
+        private long position = 0L;
+
+        private ChannelInputStream(FileChannel channel, byte[] buffer) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.wrap(buffer);
+            this.buffer.limit(0);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(len, buffer.remaining());
+            buffer.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0L) {
+                return 0L;
+            }
+            int buffered = (int) Math.min(n, buffer.remaining());
+            buffer.position(buffer.position() + buffered);
+            long skipped = Math.min(n - buffered, Math.max(0L, channel.size() - position));
+            position += skipped;
+            return buffered + skipped;
+        }
+
+        /**
+         * @return false if the end of the file has been reached.
+         */
+        private boolean fill() throws IOException {
+            if (buffer.hasRemaining()) {
+                return true;
+            }
+            buffer.clear();
+            int count = channel.read(buffer, position);
+            buffer.flip();
+            if (count <= 0) {
+                return false;
+            }
+            position += count;
+            return true;
+        }
+    }
+
+
+    /**
+     * Reads the stream within {@link #MAX_LENGTH}.
+     */
+    private static final class Reader {
+        private final InputStream is;
+        private int position = 0;
+
+        private Reader(InputStream is) {
+            this.is = is;
+        }
+
+        private int read() throws IOException {
+            ensure(1);
+            int b = is.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            ++position;
+            return b;
+        }
+
+        private byte[] readFully(int count) throws IOException {
+            ensure(count);
+            byte[] result = new byte[count];
+            for (int offset = 0; offset < count; ) {
+                int read = is.read(result, offset, count - offset);
+                if (read == -1) {
+                    throw new EOFException();
+                }
+                offset += read;
+            }
+            position += count;
+            return result;
+        }
+
+        private void skip(int count) throws IOException {
+            ensure(count);
+            for (long left = count; left > 0L; ) {
+                long skipped = is.skip(left);
+                if (skipped <= 0L) {
+                    if (is.read() == -1) {
+                        throw new EOFException();
+                    }
+                    skipped = 1L;
+                }
+                left -= skipped;
+            }
+            position += count;
+        }
+
+        /**
+         * Gives up as if the stream ended, the mark of the caller would be invalid past the limit.
+         */
+        private void ensure(int count) throws EOFException {
+            if (position + count > MAX_LENGTH) {
+                throw new EOFException("beyond " + MAX_LENGTH);
+            }
+        }
+    }
+}
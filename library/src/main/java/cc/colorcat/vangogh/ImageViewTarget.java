@@ -31,6 +31,11 @@ class ImageViewTarget extends ViewTarget<ImageView> {
 
     @Override
     protected void setDrawable(ImageView view, Drawable drawable) {
+        Drawable old = view.getDrawable();
         view.setImageDrawable(drawable);
+        if (old != drawable) {
+            VanGoghDrawable.retain(drawable);
+            VanGoghDrawable.release(old);
+        }
     }
 }
@@ -31,6 +31,13 @@ public interface Interceptor {
 
         Task task();
 
+        /**
+         * NOTE: It may throw an unchecked exception to suspend the call, such as while it waits
+         * for a response or moves to the threads of the network, then all the interceptors run
+         * again once the call resumes. The exception must be passed through, an interceptor must
+         * not catch {@link RuntimeException} or {@link Exception} around this, and the work
+         * before this should be cheap to repeat.
+         */
         Result proceed(Task task) throws IOException;
     }
 }
@@ -26,9 +26,11 @@ import java.io.IOException;
  * GitHub: https://github.com/ccolorcat
  */
 class KeyMemoryCacheInterceptor implements Interceptor {
+    private ActiveResources activeResources;
     private Cache<Bitmap> memoryCache;
 
-    KeyMemoryCacheInterceptor(Cache<Bitmap> cache) {
+    KeyMemoryCacheInterceptor(ActiveResources activeResources, Cache<Bitmap> cache) {
+        this.activeResources = activeResources;
         this.memoryCache = cache;
     }
 
@@ -36,7 +38,11 @@ class KeyMemoryCacheInterceptor implements Interceptor {
     public Result intercept(Chain chain) throws IOException {
         Task task = chain.task();
         int fromPolicy = task.fromPolicy() & From.MEMORY.policy;
-        if (fromPolicy != 0) {
+        if (fromPolicy != 0 && !Stage.isResumed()) {
+            Bitmap active = activeResources.get(task.key());
+            if (active != null) {
+                return Result.create(active, From.MEMORY);
+            }
             Bitmap bitmap = memoryCache.get(task.key());
             if (bitmap != null) {
                 return Result.create(bitmap, From.MEMORY);
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.content.Context;
+import android.os.Process;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Opens the {@link DiskCache} on a background thread, so that nothing touches the
+ * filesystem while VanGogh is being built.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+final class LazyDiskCache {
+    private static final long MAX_DEFAULT_SIZE = 50 * 1024 * 1024;
+
+    private final FutureTask<DiskCache> future;
+
+    /**
+     * @param directory the directory of cache, null to use the default one.
+     * @param maxSize   the max size of cache in bytes, 0 to use the default one.
+     */
+    LazyDiskCache(final Context context, @Nullable final File directory, final long maxSize) {
+        this.future = new FutureTask<>(new Callable<DiskCache>() {
+            @Override
+            public DiskCache call() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                try {
+                    File dir = directory != null ? directory : Utils.getCacheDirectory(context);
+                    long size = maxSize > 0L ? maxSize : (long) Math.min(MAX_DEFAULT_SIZE, dir.getUsableSpace() * 0.1);
+                    return DiskCache.open(dir, size);
+                } catch (Exception e) {
+                    LogUtils.e(e);
+                    return null;
+                }
+            }
+        });
+    }
+
+    void openAsync() {
+        new Thread(future, "VanGogh-DiskCache").start();
+    }
+
+    /**
+     * Waits for the opening if necessary.
+     *
+     * @return the opened cache or null if failed.
+     */
+    @Nullable
+    DiskCache get() {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            LogUtils.e(e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the opened cache or null if it is not ready yet or failed.
+     */
+    @Nullable
+    DiskCache getIfReady() {
+        return future.isDone() ? get() : null;
+    }
+}
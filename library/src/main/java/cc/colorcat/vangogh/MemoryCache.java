@@ -23,25 +23,32 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
+ * NOTE: A bitmap returned by {@link #get(String)} has been acquired from the {@link BitmapPool}
+ * while it is still cached, the caller must release it.
+ * <p>
  * Author: cxx
  * Date: 2017-07-06
  * GitHub: https://github.com/ccolorcat
  */
-class MemoryCache implements Cache<Bitmap> {
+class MemoryCache implements Cache<Bitmap>, CacheCounter, Trimmable {
     private final LinkedHashMap<String, Bitmap> map;
     private final int maxSize;
+    private final BitmapPool pool;
 
+    private int effectiveMaxSize;
     private int size;
     private int putCount;
     private int evictionCount;
     private int hitCount;
     private int missCount;
 
-    MemoryCache(int maxSize) {
+    MemoryCache(int maxSize, BitmapPool pool) {
         if (maxSize <= 0) {
             throw new IllegalArgumentException("Max size must be positive.");
         }
         this.maxSize = maxSize;
+        this.effectiveMaxSize = maxSize;
+        this.pool = pool;
         this.map = new LinkedHashMap<>(0, 0.75F, true);
     }
 
@@ -58,6 +65,7 @@ class MemoryCache implements Cache<Bitmap> {
             value = map.get(key);
             if (value != null) {
                 ++hitCount;
+                pool.acquire(value);
                 return value;
             }
             ++missCount;
@@ -71,6 +79,7 @@ class MemoryCache implements Cache<Bitmap> {
             throw new NullPointerException("stableKey == null || bitmap == null");
         }
 
+        pool.acquire(bitmap);
         Bitmap previous;
         synchronized (this) {
             ++putCount;
@@ -80,8 +89,9 @@ class MemoryCache implements Cache<Bitmap> {
                 size -= Utils.sizeOf(previous);
             }
         }
+        pool.release(previous);
 
-        trimToSize(maxSize);
+        trimToSize(maxSize());
     }
 
     @Override
@@ -98,6 +108,7 @@ class MemoryCache implements Cache<Bitmap> {
                 ++evictionCount;
             }
         }
+        pool.release(previous);
     }
 
     @Override
@@ -112,26 +123,39 @@ class MemoryCache implements Cache<Bitmap> {
 
     @Override
     public final synchronized long maxSize() {
-        return maxSize;
+        return effectiveMaxSize;
     }
 
+    @Override
+    public void setSizeMultiplier(float multiplier) {
+        synchronized (this) {
+            effectiveMaxSize = Math.round(maxSize * multiplier);
+        }
+        trimToSize(maxSize());
+    }
+
+    @Override
     public final synchronized int hitCount() {
         return hitCount;
     }
 
+    @Override
     public final synchronized int missCount() {
         return missCount;
     }
 
+    @Override
     public final synchronized int putCount() {
         return putCount;
     }
 
+    @Override
     public final synchronized int evictionCount() {
         return evictionCount;
     }
 
-    private void trimToSize(int maxSize) {
+    @Override
+    public void trimToSize(long maxSize) {
         while (true) {
             String key;
             Bitmap value;
@@ -149,6 +173,7 @@ class MemoryCache implements Cache<Bitmap> {
                 size -= Utils.sizeOf(value);
                 ++evictionCount;
             }
+            pool.release(value);
         }
     }
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Shrinks the memory cache and the bitmap pool when the system is running low on memory.
+ * <ul>
+ * <li>{@link #TRIM_MEMORY_RUNNING_MODERATE}: the budgets are reduced to 1/2.</li>
+ * <li>{@link #TRIM_MEMORY_RUNNING_LOW}: the budgets are reduced to 1/4.</li>
+ * <li>{@link #TRIM_MEMORY_RUNNING_CRITICAL}: the entries which are not displayed are evicted,
+ * the displayed ones can still be found by the active resources.</li>
+ * <li>{@link #TRIM_MEMORY_UI_HIDDEN} and {@link #TRIM_MEMORY_BACKGROUND}: the budgets are
+ * restored and the entries are trimmed to 1/2 of them, so the app shows its images again
+ * without decoding all of them when it comes back.</li>
+ * <li>{@link #TRIM_MEMORY_MODERATE} and above, or {@link #onLowMemory()}: all are cleared.</li>
+ * </ul>
+ * A reduced budget is restored by a lower running level, by {@link #onConfigurationChanged(Configuration)}
+ * or after {@link #RESTORE_DELAY_MILLIS} without another reduction, since the system does not
+ * report that the pressure has gone.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+final class MemoryTrimmer implements ComponentCallbacks2 {
+    static final long RESTORE_DELAY_MILLIS = 60 * 1000L;
+
+    private final ActiveResources activeResources;
+    private final Cache<Bitmap> memoryCache;
+    private final BitmapPool bitmapPool;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable restore = new Runnable() {
+        @Override
+        public void run() {
+            setSizeMultiplier(1F);
+        }
+    };
+
+    MemoryTrimmer(ActiveResources activeResources, Cache<Bitmap> memoryCache, BitmapPool bitmapPool) {
+        this.activeResources = activeResources;
+        this.memoryCache = memoryCache;
+        this.bitmapPool = bitmapPool;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        LogUtils.i("onTrimMemory, level = " + level);
+        if (level >= TRIM_MEMORY_MODERATE) {
+            setSizeMultiplier(1F);
+            clearAll();
+        } else if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            setSizeMultiplier(1F);
+            trimToHalf();
+        } else if (level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+            evictUndisplayed();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            setSizeMultiplier(0.25F);
+        } else if (level >= TRIM_MEMORY_RUNNING_MODERATE) {
+            setSizeMultiplier(0.5F);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        clearAll();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        setSizeMultiplier(1F);
+    }
+
+    private void setSizeMultiplier(float multiplier) {
+        handler.removeCallbacks(restore);
+        if (memoryCache instanceof Trimmable) {
+            ((Trimmable) memoryCache).setSizeMultiplier(multiplier);
+        }
+        bitmapPool.setSizeMultiplier(multiplier);
+        if (multiplier < 1F) {
+            handler.postDelayed(restore, RESTORE_DELAY_MILLIS);
+        }
+    }
+
+    private void trimToHalf() {
+        if (memoryCache instanceof Trimmable) {
+            ((Trimmable) memoryCache).trimToSize(memoryCache.maxSize() / 2);
+        }
+        bitmapPool.trimToSize(bitmapPool.maxSize() / 2);
+    }
+
+    /**
+     * The bitmaps still displayed are held by their drawables, so they stay in the active
+     * resources while the others enter the pool and then are cleared with it.
+     */
+    private void evictUndisplayed() {
+        memoryCache.clear();
+        bitmapPool.clear();
+    }
+
+    private void clearAll() {
+        activeResources.clear();
+        evictUndisplayed();
+    }
+}
@@ -27,7 +27,10 @@ class NetworkInterceptor implements Interceptor {
     private static final String HTTP = "http";
     private static final String HTTPS = "https";
 
-    NetworkInterceptor() {
+    private final NetworkLimiter limiter;
+
+    NetworkInterceptor(NetworkLimiter limiter) {
+        this.limiter = limiter;
     }
 
     @Override
@@ -36,6 +39,13 @@ class NetworkInterceptor implements Interceptor {
         int fromPolicy = task.fromPolicy() & From.NETWORK.policy;
         String scheme = task.uri().getScheme();
         if (fromPolicy != 0 && (HTTP.equalsIgnoreCase(scheme) || HTTPS.equalsIgnoreCase(scheme))) {
+            // Only the calls which have missed the caches are limited.
+            Stage.require(Stage.NETWORK);
+            String host = task.uri().getHost();
+            Deferred.Signal admission = limiter.acquire(host != null ? host : "", task.key());
+            if (admission != null) {
+                throw new Deferred(admission);
+            }
             Downloader downloader = chain.loader();
             Result result = downloader.load(task);
             if (result != null) {
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admits the network calls with a limit of running calls per host and a global one.
+ * The calls over the limits wait in a queue per host, and the hosts take turns when slots
+ * free up, so a slow host can not take the slots of the others.
+ * <p>
+ * A slot is held by the key of a {@link Call} from admission until the attempt ends,
+ * including the time it is deferred by {@link NioDownloader}, or until the download is handed
+ * over to {@link Stage#DECODE}.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+final class NetworkLimiter {
+    private final int maxRequests;
+    private final int maxRequestsPerHost;
+    private final Map<String, Host> hosts = new LinkedHashMap<>();
+    private final Map<String, Host> admitted = new HashMap<>();
+    private final Map<String, Waiter> waiting = new HashMap<>();
+    /**
+     * The hosts which have waiters, in the order of their turns.
+     */
+    private final LinkedList<Host> turns = new LinkedList<>();
+    private int runningCount;
+
+    NetworkLimiter(int maxRequests, int maxRequestsPerHost) {
+        if (maxRequests <= 0) {
+            throw new IllegalArgumentException("maxRequests <= 0");
+        }
+        if (maxRequestsPerHost <= 0) {
+            throw new IllegalArgumentException("maxRequestsPerHost <= 0");
+        }
+        this.maxRequests = maxRequests;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    /**
+     * @param key the key of the call, see {@link Call#key()}.
+     * @return null if the call has been admitted, otherwise the signal of its admission.
+     */
+    @Nullable
+    Deferred.Signal acquire(String hostName, String key) {
+        synchronized (this) {
+            if (admitted.containsKey(key)) {
+                return null;
+            }
+            Waiter waiter = waiting.get(key);
+            if (waiter != null) {
+                return waiter;
+            }
+            Host host = hosts.get(hostName);
+            if (host == null) {
+                host = new Host(hostName);
+                hosts.put(hostName, host);
+            }
+            if (host.waiters.isEmpty() && runningCount < maxRequests && host.runningCount < maxRequestsPerHost) {
+                admit(host, key, 0L);
+                return null;
+            }
+            waiter = new Waiter(host, key, System.nanoTime());
+            waiting.put(key, waiter);
+            if (host.waiters.isEmpty()) {
+                turns.addLast(host);
+            }
+            host.waiters.addLast(waiter);
+            return waiter;
+        }
+    }
+
+    /**
+     * Frees the slot of the call, or removes it from the queue if it is waiting.
+     */
+    void release(String key) {
+        List<Waiter> ready;
+        synchronized (this) {
+            Host host = admitted.remove(key);
+            if (host != null) {
+                --runningCount;
+                --host.runningCount;
+            } else {
+                Waiter waiter = waiting.remove(key);
+                if (waiter == null) {
+                    return;
+                }
+                waiter.host.waiters.remove(waiter);
+                if (waiter.host.waiters.isEmpty()) {
+                    turns.remove(waiter.host);
+                }
+            }
+            ready = promote();
+        }
+        for (int i = 0, size = ready.size(); i < size; ++i) {
+            ready.get(i).signal();
+        }
+    }
+
+    synchronized List<HostStats> stats() {
+        List<HostStats> result = new ArrayList<>(hosts.size());
+        for (Host host : hosts.values()) {
+            result.add(new HostStats(
+                    host.name,
+                    host.runningCount,
+                    host.waiters.size(),
+                    host.admittedCount,
+                    host.waitCount,
+                    TimeUnit.NANOSECONDS.toMillis(host.totalWaitNanos),
+                    TimeUnit.NANOSECONDS.toMillis(host.maxWaitNanos)
+            ));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Admits the first waiter of the hosts in turn while there are free slots.
+     *
+     * @return the admitted waiters to be signaled.
+     */
+    private List<Waiter> promote() {
+        List<Waiter> ready = new ArrayList<>(1);
+        long now = System.nanoTime();
+        while (runningCount < maxRequests) {
+            Host next = null;
+            for (Iterator<Host> iterator = turns.iterator(); iterator.hasNext(); ) {
+                Host host = iterator.next();
+                if (host.runningCount < maxRequestsPerHost) {
+                    iterator.remove();
+                    next = host;
+                    break;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            Waiter waiter = next.waiters.removeFirst();
+            waiting.remove(waiter.key);
+            admit(next, waiter.key, now - waiter.since);
+            if (!next.waiters.isEmpty()) {
+                turns.addLast(next);
+            }
+            ready.add(waiter);
+        }
+        return ready;
+    }
+
+    private void admit(Host host, String key, long waitNanos) {
+        admitted.put(key, host);
+        ++runningCount;
+        ++host.runningCount;
+        ++host.admittedCount;
+        if (waitNanos > 0L) {
+            ++host.waitCount;
+            host.totalWaitNanos += waitNanos;
+            host.maxWaitNanos = Math.max(host.maxWaitNanos, waitNanos);
+        }
+    }
+
+
+    private static final class Host {
+        private final String name;
+        private final LinkedList<Waiter> waiters = new LinkedList<>();
+        private int runningCount;
+        private int admittedCount;
+        private int waitCount;
+        private long totalWaitNanos;
+        private long maxWaitNanos;
+
+        private Host(String name) {
+            this.name = name;
+        }
+    }
+
+
+    private static final class Waiter extends Deferred.Signal {
+        private final Host host;
+        private final String key;
+        private final long since;
+
+        private Waiter(Host host, String key, long since) {
+            this.host = host;
+            this.key = key;
+            this.since = since;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+
+/**
+ * A {@link Downloader} which fetches http images on the thread of a {@link SelectorLoop}
+ * shared by all the clones, so that no worker thread waits on the network.
+ * <p>
+ * The first {@link #load(Task)} of a {@link Call} starts the fetch and throws {@link Deferred},
+ * the call gives its worker back and is submitted again once the response has been buffered,
+ * then the same load returns it for decoding. Same as {@link HttpDownloader}, it resumes by
+ * range requests, revalidates by conditional requests and follows redirects of the same scheme.
+ * NOTE: Others such as https are loaded by {@link HttpDownloader} on the worker thread.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+class NioDownloader implements Downloader, Abortable {
+    private static final String HTTP = "http";
+    private static final int MAX_REDIRECTS = 5;
+
+    private final SelectorLoop loop;
+    private volatile Downloader fallback;
+    /**
+     * The task for which {@link #fetch} has been started, the fetch may be of a redirect
+     * or of {@link Task#restart()} of it.
+     */
+    private Task origin;
+    private volatile SelectorLoop.Fetch fetch;
+    private int redirects;
+    private volatile boolean aborted = false;
+
+    NioDownloader(SelectorLoop loop) {
+        if (loop == null) {
+            throw new NullPointerException("loop == null");
+        }
+        this.loop = loop;
+    }
+
+    @Override
+    public Result load(Task task) throws IOException {
+        if (!HTTP.equalsIgnoreCase(task.uri().getScheme())) {
+            if (fallback == null) {
+                fallback = new HttpDownloader();
+                if (aborted) {
+                    ((Abortable) fallback).abort();
+                }
+            }
+            return fallback.load(task);
+        }
+        if (fetch == null || !isSameRequest(origin, task)) {
+            origin = task;
+            redirects = 0;
+            start(task.uri().toString(), task);
+        }
+        SelectorLoop.Fetch f = fetch;
+        if (!f.isReady()) {
+            throw new Deferred(f);
+        }
+        return onCompleted(f);
+    }
+
+    private Result onCompleted(SelectorLoop.Fetch f) throws IOException {
+        fetch = null;
+        IOException error = f.error();
+        if (error != null) {
+            throw error;
+        }
+        Task task = f.task;
+        int code = f.code;
+        String location = f.headers.get("Location");
+        if (isRedirect(code) && location != null && redirects < MAX_REDIRECTS) {
+            URL next = new URL(new URL(f.url), location);
+            if (HTTP.equalsIgnoreCase(next.getProtocol())) {
+                ++redirects;
+                start(next.toString(), task);
+                throw new Deferred(fetch);
+            }
+        }
+        long offset = task.resumeOffset();
+        long now = System.currentTimeMillis();
+        if (code == HttpURLConnection.HTTP_NOT_MODIFIED
+                && (task.ifNoneMatch() != null || task.ifModifiedSince() != null)) {
+            return Result.notModified(CacheHeaders.parse(f.headers, now));
+        }
+        if (offset > 0L && (code == HttpDownloader.HTTP_RANGE_NOT_SATISFIABLE
+                || (code == HttpURLConnection.HTTP_PARTIAL
+                && !HttpDownloader.startsAt(f.headers.get("Content-Range"), offset)))) {
+            start(f.url, task.restart());
+            throw new Deferred(fetch);
+        }
+        if (code == HttpURLConnection.HTTP_OK || (code == HttpURLConnection.HTTP_PARTIAL && offset > 0L)) {
+            return Result.create(
+                    f.body(),
+                    f.bodyLength(),
+                    code == HttpURLConnection.HTTP_PARTIAL ? offset : 0L,
+                    CacheHeaders.parse(f.headers, now),
+                    From.NETWORK
+            );
+        }
+        throw new IOException("network onFailed, code = " + code + ", msg = " + f.message);
+    }
+
+    /**
+     * Resolves the host on the calling thread, then hands the request over to the loop.
+     */
+    private void start(String spec, Task task) throws IOException {
+        URL url = new URL(spec);
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getByName(url.getHost()), port);
+        SelectorLoop.Fetch f = new SelectorLoop.Fetch(task, spec, address, request(url, task));
+        fetch = f;
+        if (aborted) {
+            fetch = null;
+            throw new InterruptedIOException("aborted, url = " + spec);
+        }
+        loop.execute(f);
+    }
+
+    private static byte[] request(URL url, Task task) throws IOException {
+        String path = url.getFile();
+        StringBuilder request = new StringBuilder(256);
+        request.append("GET ").append(path.isEmpty() ? "/" : path).append(" HTTP/1.1\r\n");
+        request.append("Host: ").append(url.getHost());
+        if (url.getPort() != -1 && url.getPort() != url.getDefaultPort()) {
+            request.append(':').append(url.getPort());
+        }
+        request.append("\r\n");
+        String agent = System.getProperty("http.agent");
+        if (agent != null) {
+            appendHeader(request, "User-Agent", agent);
+        }
+        appendHeader(request, "Connection", "keep-alive");
+        // The offsets of ranges are of the transferred bytes, they must not be decompressed.
+        appendHeader(request, "Accept-Encoding", "identity");
+        long offset = task.resumeOffset();
+        if (offset > 0L) {
+            appendHeader(request, "Range", "bytes=" + offset + '-');
+            appendHeader(request, "If-Range", task.resumeValidator());
+        }
+        if (task.ifNoneMatch() != null) {
+            appendHeader(request, "If-None-Match", task.ifNoneMatch());
+        }
+        if (task.ifModifiedSince() != null) {
+            appendHeader(request, "If-Modified-Since", task.ifModifiedSince());
+        }
+        request.append("\r\n");
+        return request.toString().getBytes("ISO-8859-1");
+    }
+
+    private static void appendHeader(StringBuilder request, String name, String value) {
+        request.append(name).append(": ").append(value).append("\r\n");
+    }
+
+    private static boolean isSameRequest(Task a, Task b) {
+        return a.uri().equals(b.uri())
+                && a.resumeOffset() == b.resumeOffset()
+                && Utils.equal(a.resumeValidator(), b.resumeValidator())
+                && Utils.equal(a.ifNoneMatch(), b.ifNoneMatch())
+                && Utils.equal(a.ifModifiedSince(), b.ifModifiedSince());
+    }
+
+    private static boolean isRedirect(int code) {
+        return code == HttpURLConnection.HTTP_MOVED_PERM
+                || code == HttpURLConnection.HTTP_MOVED_TEMP
+                || code == HttpURLConnection.HTTP_SEE_OTHER
+                || code == 307
+                || code == 308;
+    }
+
+    /**
+     * Aborts the fetch in progress if any.
+     */
+    @Override
+    public void shutDown() {
+        SelectorLoop.Fetch f = fetch;
+        if (f != null) {
+            loop.cancel(f);
+            fetch = null;
+        }
+        if (fallback != null) {
+            fallback.shutDown();
+        }
+    }
+
+    /**
+     * Cancels the fetch in progress on the loop, or aborts the fallback.
+     */
+    @Override
+    public void abort() {
+        aborted = true;
+        SelectorLoop.Fetch f = fetch;
+        if (f != null) {
+            loop.cancel(f);
+        }
+        Downloader d = fallback;
+        if (d != null) {
+            ((Abortable) d).abort();
+        }
+    }
+
+    @SuppressWarnings("CloneDoesntCallSuperClone")
+    @Override
+    public Downloader clone() {
+        return new NioDownloader(loop);
+    }
+}
@@ -33,12 +33,17 @@ public class OvalTransformation extends BaseTransformation {
 
     @Override
     public Bitmap transform(Bitmap source) {
+        return transform(source, BitmapPool.EMPTY);
+    }
+
+    @Override
+    public Bitmap transform(Bitmap source, BitmapPool pool) {
         final int width = source.getWidth(), height = source.getHeight();
         Bitmap.Config config = source.getConfig();
         if (config == null || config == Bitmap.Config.RGB_565) {
             config = Bitmap.Config.ARGB_8888;
         }
-        Bitmap out = Bitmap.createBitmap(width, height, config);
+        Bitmap out = pool.get(width, height, config);
         Canvas canvas = new Canvas(out);
         Paint paint = new Paint();
         paint.setAntiAlias(true);
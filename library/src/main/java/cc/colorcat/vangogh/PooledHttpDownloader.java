@@ -0,0 +1,480 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.support.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A {@link Downloader} speaking HTTP/1.1 over the keep-alive connections of a
+ * {@link ConnectionPool}, all the clones share the same pool.
+ * <p>
+ * Every response body is either read to the end, which puts the connection back to the pool,
+ * or closed along with the connection. A small unread remainder is drained on close so the
+ * connection can still be reused. Same as {@link HttpDownloader}, it resumes by range requests,
+ * revalidates by conditional requests and follows redirects of the same scheme.
+ * NOTE: The system proxy is not used.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+class PooledHttpDownloader implements Downloader, Abortable {
+    private static final int MAX_REDIRECTS = 5;
+    private static final int MAX_LINE_LENGTH = 8192;
+    private static final long MAX_DRAIN_LENGTH = 64 * 1024;
+
+    private final ConnectionPool pool;
+    private Body body;
+    /**
+     * The connection taken from the pool which has not been given back, guarded by this.
+     */
+    private ConnectionPool.Connection inUse;
+    private volatile boolean aborted = false;
+
+    PooledHttpDownloader(ConnectionPool pool) {
+        if (pool == null) {
+            throw new NullPointerException("pool == null");
+        }
+        this.pool = pool;
+    }
+
+    @Override
+    public Result load(Task task) throws IOException {
+        long offset = task.resumeOffset();
+        Response response = execute(new URL(task.uri().toString()), task);
+        int code = response.code;
+        long now = System.currentTimeMillis();
+        if (code == HttpURLConnection.HTTP_NOT_MODIFIED
+                && (task.ifNoneMatch() != null || task.ifModifiedSince() != null)) {
+            response.body.close();
+            return Result.notModified(CacheHeaders.parse(response.headers, now));
+        }
+        if (offset > 0L && (code == HttpDownloader.HTTP_RANGE_NOT_SATISFIABLE
+                || (code == HttpURLConnection.HTTP_PARTIAL
+                && !HttpDownloader.startsAt(response.headers.get("Content-Range"), offset)))) {
+            response.body.close();
+            return load(task.restart());
+        }
+        if (code == HttpURLConnection.HTTP_OK || (code == HttpURLConnection.HTTP_PARTIAL && offset > 0L)) {
+            return Result.create(
+                    response.body,
+                    response.body.contentLength(),
+                    code == HttpURLConnection.HTTP_PARTIAL ? offset : 0L,
+                    CacheHeaders.parse(response.headers, now),
+                    From.NETWORK
+            );
+        }
+        response.body.close();
+        throw new IOException("network onFailed, code = " + code + ", msg = " + response.message);
+    }
+
+    private Response execute(URL url, Task task) throws IOException {
+        for (int redirects = 0; ; ++redirects) {
+            Response response = exchange(url, task);
+            String location = response.headers.get("Location");
+            if (!isRedirect(response.code) || location == null || redirects >= MAX_REDIRECTS) {
+                return response;
+            }
+            URL next = new URL(url, location);
+            if (!next.getProtocol().equalsIgnoreCase(url.getProtocol())) {
+                return response;
+            }
+            response.body.close();
+            url = next;
+        }
+    }
+
+    /**
+     * Sends the request and reads the status line and headers, retries once on a new connection
+     * if a reused one fails, it may have been closed by the server while idle.
+     */
+    private Response exchange(URL url, Task task) throws IOException {
+        String scheme = url.getProtocol();
+        String host = url.getHost();
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        for (int attempt = 0; ; ++attempt) {
+            ConnectionPool.Connection connection = pool.acquire(scheme, host, port, task.connectTimeOut());
+            try {
+                take(connection);
+                connection.setReadTimeout(task.readTimeOut());
+                writeRequest(connection, url, task);
+                return readResponse(connection);
+            } catch (IOException e) {
+                giveBack(connection, false);
+                if (!connection.isReused() || attempt > 0 || aborted) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static void writeRequest(ConnectionPool.Connection connection, URL url, Task task) throws IOException {
+        String path = url.getFile();
+        StringBuilder request = new StringBuilder(256);
+        request.append("GET ").append(path.isEmpty() ? "/" : path).append(" HTTP/1.1\r\n");
+        request.append("Host: ").append(url.getHost());
+        if (url.getPort() != -1 && url.getPort() != url.getDefaultPort()) {
+            request.append(':').append(url.getPort());
+        }
+        request.append("\r\n");
+        String agent = System.getProperty("http.agent");
+        if (agent != null) {
+            appendHeader(request, "User-Agent", agent);
+        }
+        appendHeader(request, "Connection", "keep-alive");
+        // The offsets of ranges are of the transferred bytes, they must not be decompressed.
+        appendHeader(request, "Accept-Encoding", "identity");
+        long offset = task.resumeOffset();
+        if (offset > 0L) {
+            appendHeader(request, "Range", "bytes=" + offset + '-');
+            appendHeader(request, "If-Range", task.resumeValidator());
+        }
+        if (task.ifNoneMatch() != null) {
+            appendHeader(request, "If-None-Match", task.ifNoneMatch());
+        }
+        if (task.ifModifiedSince() != null) {
+            appendHeader(request, "If-Modified-Since", task.ifModifiedSince());
+        }
+        request.append("\r\n");
+        connection.out.write(request.toString().getBytes("ISO-8859-1"));
+        connection.out.flush();
+    }
+
+    private static void appendHeader(StringBuilder request, String name, String value) {
+        request.append(name).append(": ").append(value).append("\r\n");
+    }
+
+    private Response readResponse(ConnectionPool.Connection connection) throws IOException {
+        String statusLine;
+        int code;
+        Map<String, String> headers;
+        do {
+            statusLine = readLine(connection.in);
+            code = parseCode(statusLine);
+            headers = readHeaders(connection.in);
+        } while (code >= 100 && code < 200);
+
+        boolean keepAlive = !statusLine.startsWith("HTTP/1.0") && !"close".equalsIgnoreCase(headers.get("Connection"));
+        Body body;
+        if (code == HttpURLConnection.HTTP_NOT_MODIFIED || code == HttpURLConnection.HTTP_NO_CONTENT) {
+            body = new Body(connection, 0L, false, keepAlive);
+        } else if ("chunked".equalsIgnoreCase(headers.get("Transfer-Encoding"))) {
+            body = new Body(connection, -1L, true, keepAlive);
+        } else if (headers.get("Content-Length") != null) {
+            long length;
+            try {
+                length = Long.parseLong(headers.get("Content-Length").trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("invalid Content-Length: " + headers.get("Content-Length"));
+            }
+            body = new Body(connection, length, false, keepAlive);
+        } else {
+            // read until the server closes the connection.
+            body = new Body(connection, -1L, false, false);
+        }
+        this.body = body;
+        String message = statusLine.length() > 13 ? statusLine.substring(13) : "";
+        return new Response(code, message, headers, body);
+    }
+
+    private static int parseCode(String statusLine) throws IOException {
+        if (statusLine.startsWith("HTTP/1.") && statusLine.length() >= 12 && statusLine.charAt(8) == ' ') {
+            try {
+                return Integer.parseInt(statusLine.substring(9, 12));
+            } catch (NumberFormatException ignore) {
+            }
+        }
+        throw new IOException("unexpected status line: " + statusLine);
+    }
+
+    private static Map<String, String> readHeaders(InputStream in) throws IOException {
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (String line = readLine(in); !line.isEmpty(); line = readLine(in)) {
+            int index = line.indexOf(':');
+            if (index > 0) {
+                String name = line.substring(0, index).trim();
+                String value = line.substring(index + 1).trim();
+                String previous = headers.get(name);
+                headers.put(name, previous == null ? value : previous + ", " + value);
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * Reads a line terminated by LF or CRLF, which is excluded.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b == -1) {
+                throw new IOException("unexpected end of stream");
+            }
+            if (line.size() >= MAX_LINE_LENGTH) {
+                throw new IOException("line too long");
+            }
+            line.write(b);
+        }
+        String result = line.toString("ISO-8859-1");
+        return result.endsWith("\r") ? result.substring(0, result.length() - 1) : result;
+    }
+
+    private static boolean isRedirect(int code) {
+        return code == HttpURLConnection.HTTP_MOVED_PERM
+                || code == HttpURLConnection.HTTP_MOVED_TEMP
+                || code == HttpURLConnection.HTTP_SEE_OTHER
+                || code == 307
+                || code == 308;
+    }
+
+    /**
+     * Closes the body of the last response, the connection is put back to the pool if the body
+     * is consumed or only a small remainder is left.
+     */
+    @Override
+    public void shutDown() {
+        if (body != null) {
+            Utils.close(body);
+            body = null;
+        }
+    }
+
+    /**
+     * Closes the connection in use, which is never given back to the pool to be reused.
+     */
+    @Override
+    public void abort() {
+        ConnectionPool.Connection connection;
+        synchronized (this) {
+            aborted = true;
+            connection = inUse;
+            inUse = null;
+        }
+        if (connection != null) {
+            connection.abort();
+        }
+    }
+
+    private void take(ConnectionPool.Connection connection) throws IOException {
+        synchronized (this) {
+            if (!aborted) {
+                inUse = connection;
+                return;
+            }
+        }
+        throw new InterruptedIOException("aborted");
+    }
+
+    /**
+     * Once given back, the connection may be taken by others, {@link #abort()} must not close it.
+     */
+    private void giveBack(ConnectionPool.Connection connection, boolean reusable) {
+        synchronized (this) {
+            if (inUse == connection) {
+                inUse = null;
+            }
+            reusable &= !aborted;
+        }
+        pool.release(connection, reusable);
+    }
+
+    @SuppressWarnings("CloneDoesntCallSuperClone")
+    @Override
+    public Downloader clone() {
+        return new PooledHttpDownloader(pool);
+    }
+
+
+    private static final class Response {
+        private final int code;
+        private final String message;
+        private final Map<String, String> headers;
+        private final Body body;
+
+        private Response(int code, String message, Map<String, String> headers, Body body) {
+            this.code = code;
+            this.message = message;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+
+
+    /**
+     * The body of a response, which is either delimited by Content-Length, chunked, or ends when
+     * the server closes the connection. The connection is released as soon as the body ends.
+     */
+    private final class Body extends InputStream {
+        private final ConnectionPool.Connection connection;
+        private final long contentLength;
+        private final boolean chunked;
+        private final boolean keepAlive;
+        /**
+         * The bytes left of the body, or of the current chunk if chunked, -1 if unknown.
+         */
+        private long remaining;
+        private boolean firstChunk = true;
+        private boolean exhausted = false;
+        private boolean released = false;
+
+        private Body(ConnectionPool.Connection connection, long contentLength, boolean chunked, boolean keepAlive) {
+            this.connection = connection;
+            this.contentLength = contentLength;
+            this.chunked = chunked;
+            this.keepAlive = keepAlive;
+            this.remaining = chunked ? 0L : contentLength;
+            if (remaining == 0L && !chunked) {
+                onExhausted();
+            }
+        }
+
+        long contentLength() {
+            return contentLength > 0L ? contentLength : -1L;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            if (released) {
+                if (exhausted) return -1;
+                throw new IOException("closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            if (chunked && remaining == 0L && !nextChunk()) {
+                onExhausted();
+                return -1;
+            }
+            int toRead = remaining > 0L ? (int) Math.min(len, remaining) : len;
+            int count;
+            try {
+                count = connection.in.read(b, off, toRead);
+            } catch (IOException e) {
+                release(false);
+                throw e;
+            }
+            if (count == -1) {
+                if (remaining > 0L) {
+                    release(false);
+                    throw new IOException("unexpected end of stream");
+                }
+                // delimited by the end of the connection.
+                exhausted = true;
+                release(false);
+                return -1;
+            }
+            if (remaining > 0L) {
+                remaining -= count;
+                if (remaining == 0L && !chunked) {
+                    onExhausted();
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+            if (released) return 0;
+            int available = connection.in.available();
+            return remaining >= 0L ? (int) Math.min(available, remaining) : available;
+        }
+
+        /**
+         * @return false if it is the last chunk, the trailers are skipped.
+         */
+        private boolean nextChunk() throws IOException {
+            try {
+                if (!firstChunk) {
+                    // skip the CRLF after the data of the previous chunk.
+                    readLine(connection.in);
+                }
+                firstChunk = false;
+                String line = readLine(connection.in);
+                int index = line.indexOf(';');
+                String size = (index != -1 ? line.substring(0, index) : line).trim();
+                remaining = Long.parseLong(size, 16);
+                if (remaining == 0L) {
+                    readHeaders(connection.in);
+                    return false;
+                }
+                return true;
+            } catch (NumberFormatException e) {
+                release(false);
+                throw new IOException("invalid chunk size");
+            } catch (IOException e) {
+                release(false);
+                throw e;
+            }
+        }
+
+        /**
+         * Drains a small remainder so the connection can be reused, otherwise closes it.
+         */
+        @Override
+        public void close() {
+            if (released) {
+                return;
+            }
+            boolean drainable = keepAlive && !aborted && (chunked || remaining <= MAX_DRAIN_LENGTH);
+            if (drainable) {
+                ByteArrayPool bytes = ByteArrayPool.shared();
+                byte[] buffer = bytes.get(ByteArrayPool.BUFFER_SIZE);
+                long drained = 0L;
+                try {
+                    int count;
+                    while (!released && drained <= MAX_DRAIN_LENGTH
+                            && (count = read(buffer, 0, buffer.length)) != -1) {
+                        drained += count;
+                    }
+                } catch (IOException e) {
+                    LogUtils.e(e);
+                } finally {
+                    bytes.put(buffer);
+                }
+            }
+            release(false);
+        }
+
+        private void onExhausted() {
+            exhausted = true;
+            release(keepAlive);
+        }
+
+        private void release(boolean reusable) {
+            if (!released) {
+                released = true;
+                giveBack(connection, reusable);
+            }
+        }
+    }
+}
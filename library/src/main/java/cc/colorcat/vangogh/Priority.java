@@ -0,0 +1,37 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+/**
+ * The priority of a request in the queue of the default executor, the higher one runs first.
+ * A call shared by several requests of the same key runs with the highest of them.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public enum Priority {
+    /**
+     * For images which are not displayed yet, such as the rows ahead of a scrolling list.
+     */
+    PREFETCH,
+    NORMAL,
+    /**
+     * For images which are displayed right now and block the user.
+     */
+    IMMEDIATE
+}
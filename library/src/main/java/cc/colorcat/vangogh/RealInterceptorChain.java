@@ -17,6 +17,7 @@
 package cc.colorcat.vangogh;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.List;
 
 /**
@@ -29,12 +30,14 @@ class RealInterceptorChain implements Interceptor.Chain {
     private final int index;
     private final Task task;
     private final Downloader downloader;
+    private final Call call;
 
-    RealInterceptorChain(List<Interceptor> interceptors, int index, Task task, Downloader downloader) {
+    RealInterceptorChain(List<Interceptor> interceptors, int index, Task task, Downloader downloader, Call call) {
         this.interceptors = interceptors;
         this.index = index;
         this.task = task;
         this.downloader = downloader;
+        this.call = call;
     }
 
     @Override
@@ -47,10 +50,27 @@ class RealInterceptorChain implements Interceptor.Chain {
         return task;
     }
 
+    /**
+     * @return true if all the requests of the call have been canceled, a long interceptor
+     * should stop with an {@link InterruptedIOException} then.
+     * {@link #proceed(Task)} does so before running the next interceptor.
+     */
+    boolean isCanceled() {
+        return call.isCanceled();
+    }
+
     @Override
     public Result proceed(Task task) throws IOException {
-        RealInterceptorChain next = new RealInterceptorChain(interceptors, index + 1, task, downloader);
+        if (call.isCanceled()) {
+            throw new InterruptedIOException("canceled, task = " + task);
+        }
+        RealInterceptorChain next = new RealInterceptorChain(interceptors, index + 1, task, downloader, call);
         Interceptor interceptor = interceptors.get(index);
-        return interceptor.intercept(next);
+        try {
+            return interceptor.intercept(next);
+        } catch (Deferred e) {
+            call.onDeferred(e);
+            throw e;
+        }
     }
 }
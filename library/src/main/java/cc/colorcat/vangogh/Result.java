@@ -18,6 +18,8 @@ package cc.colorcat.vangogh;
 
 import android.graphics.Bitmap;
 
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 
 /**
@@ -28,7 +30,11 @@ import java.io.InputStream;
 public final class Result {
     private final Bitmap bitmap;
     private final InputStream stream;
+    private final FileInputStream file;
     private final long contentLength;
+    private final long offset;
+    private final CacheHeaders headers;
+    private final boolean notModified;
     private final From from;
 
     public static Result create(Bitmap bitmap, From from) {
@@ -38,7 +44,7 @@ public final class Result {
         if (from == null) {
             throw new NullPointerException("from == null");
         }
-        return new Result(bitmap, null, -1L, from);
+        return new Result(bitmap, null, null, -1L, 0L, null, false, from);
     }
 
     public static Result create(InputStream stream, From from) {
@@ -46,19 +52,61 @@ public final class Result {
     }
 
     public static Result create(InputStream stream, long contentLength, From from) {
+        return create(stream, contentLength, 0L, null, from);
+    }
+
+    /**
+     * @param offset  the offset of the stream in the whole resource, it is greater than 0
+     *                only if the stream is the rest of a resumed download.
+     * @param headers the validators and freshness of the resource, null if unknown.
+     */
+    static Result create(InputStream stream, long contentLength, long offset, CacheHeaders headers, From from) {
         if (stream == null) {
             throw new NullPointerException("stream == null");
         }
         if (from == null) {
             throw new NullPointerException("from == null");
         }
-        return new Result(null, stream, contentLength, from);
+        if (offset < 0L) {
+            throw new IllegalArgumentException("offset < 0");
+        }
+        return new Result(null, stream, null, contentLength, offset, headers, false, from);
+    }
+
+    /**
+     * @param file a local file, whose descriptor is decoded without copying it to the heap.
+     *             It is the {@link #stream()} too, for those which copy it.
+     */
+    static Result create(FileInputStream file, From from) throws IOException {
+        if (file == null) {
+            throw new NullPointerException("file == null");
+        }
+        if (from == null) {
+            throw new NullPointerException("from == null");
+        }
+        return new Result(null, file, file, file.getChannel().size(), 0L, null, false, from);
+    }
+
+    /**
+     * @return the result of a conditional request whose cached entry is still valid,
+     * it has neither bitmap nor stream.
+     */
+    static Result notModified(CacheHeaders headers) {
+        if (headers == null) {
+            throw new NullPointerException("headers == null");
+        }
+        return new Result(null, null, null, -1L, 0L, headers, true, From.NETWORK);
     }
 
-    private Result(Bitmap bitmap, InputStream stream, long contentLength, From from) {
+    private Result(Bitmap bitmap, InputStream stream, FileInputStream file, long contentLength, long offset,
+                   CacheHeaders headers, boolean notModified, From from) {
         this.bitmap = bitmap;
         this.stream = stream;
+        this.file = file;
         this.contentLength = contentLength;
+        this.offset = offset;
+        this.headers = headers;
+        this.notModified = notModified;
         this.from = from;
     }
 
@@ -70,10 +118,36 @@ public final class Result {
         return stream;
     }
 
+    /**
+     * @return the local file of the stream, null if the stream is not of a file.
+     */
+    FileInputStream file() {
+        return file;
+    }
+
     long contentLength() {
         return contentLength;
     }
 
+    long offset() {
+        return offset;
+    }
+
+    /**
+     * @return the validator which allows an interrupted download to be resumed, null if none.
+     */
+    String validator() {
+        return headers != null ? headers.validator() : null;
+    }
+
+    CacheHeaders headers() {
+        return headers;
+    }
+
+    boolean isNotModified() {
+        return notModified;
+    }
+
     From from() {
         return from;
     }
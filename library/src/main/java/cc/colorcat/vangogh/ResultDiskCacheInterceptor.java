@@ -0,0 +1,140 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.graphics.Bitmap;
+import android.support.annotation.Nullable;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The disk tier of the final bitmaps keyed by {@link Task#key()}, which have been resized,
+ * rotated and transformed, so a hit needs neither the full-size decoding nor the transformations.
+ * Bitmaps with alpha are encoded as PNG, the others as WebP.
+ * <p>
+ * Results are stored only if {@link Task#storeResult()} is true, and nothing is stored for the
+ * tasks without any option and transformation, whose results are the same as the sources.
+ * A result is stored with the {@link CacheHeaders} of its source and expires along with it.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+class ResultDiskCacheInterceptor implements Interceptor {
+    private static final int WEBP_QUALITY = 90;
+
+    private LazyDiskCache lazyDiskCache;
+    private BitmapPool pool;
+
+    ResultDiskCacheInterceptor(LazyDiskCache cache, BitmapPool pool) {
+        this.lazyDiskCache = cache;
+        this.pool = pool;
+    }
+
+    @Override
+    public Result intercept(Chain chain) throws IOException {
+        Task task = chain.task();
+        if (task.key().equals(task.stableKey())) {
+            return chain.proceed(task);
+        }
+        // Never blocks the main thread for the opening of disk cache.
+        DiskCache diskCache = Utils.isMain() ? lazyDiskCache.getIfReady() : lazyDiskCache.get();
+        if (diskCache == null) {
+            return chain.proceed(task);
+        }
+        String resultKey = Utils.createResultKey(task.key());
+        if ((task.fromPolicy() & From.DISK.policy) != 0 && !Stage.isResumed()) {
+            DiskCache.Snapshot snapshot = diskCache.getIfReadable(resultKey);
+            long now = System.currentTimeMillis();
+            if (snapshot != null && isUsable(snapshot.headers(), task.fromPolicy(), now)) {
+                Bitmap bitmap = decodeOrDelete(snapshot, task.options().config());
+                if (bitmap != null) {
+                    pool.acquire(bitmap);
+                    return Result.create(bitmap, isFresh(snapshot.headers(), now) ? From.DISK : From.DISK_STALE);
+                }
+            }
+        }
+
+        Result result = chain.proceed(task);
+        if (task.storeResult() && result.from() != From.MEMORY) {
+            // Gone if the source has been refused by no-store, then the result must not be kept either.
+            DiskCache.Snapshot source = diskCache.getSnapshot(task.stableKey());
+            if (source.isReadable()) {
+                save(diskCache.getSnapshot(resultKey), result.bitmap(), source.headers());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A stale result is a miss unless the network is not allowed, so the source tier
+     * revalidates the source and the result is made again and stored with the new headers.
+     *
+     * @param headers the headers of the source when the result was stored, null if unknown.
+     */
+    static boolean isUsable(@Nullable CacheHeaders headers, int fromPolicy, long now) {
+        return isFresh(headers, now) || (fromPolicy & From.NETWORK.policy) == 0;
+    }
+
+    private static boolean isFresh(@Nullable CacheHeaders headers, long now) {
+        return headers == null || headers.isFresh(now);
+    }
+
+    private static Bitmap decodeOrDelete(DiskCache.Snapshot snapshot, Bitmap.Config config) throws IOException {
+        Bitmap result = null;
+        FileInputStream file = snapshot.getInputStream();
+        if (file != null) {
+            result = Utils.decodeFileAndClose(file, config);
+            if (result == null) {
+                snapshot.requireDelete();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A failed saving only loses the result tier, so it never fails the task. The writing is
+     * aborted before the stream is closed, so a truncated file is never committed.
+     *
+     * @param headers the headers of the source, whose freshness is that of the result.
+     */
+    static void save(DiskCache.Snapshot snapshot, Bitmap bitmap, @Nullable CacheHeaders headers) {
+        OutputStream os = snapshot.getOutputStream(0L, headers);
+        if (os == null) {
+            return;
+        }
+        boolean success = false;
+        try {
+            if (bitmap.hasAlpha()) {
+                success = bitmap.compress(Bitmap.CompressFormat.PNG, 100, os);
+            } else {
+                success = bitmap.compress(Bitmap.CompressFormat.WEBP, WEBP_QUALITY, os);
+            }
+        } finally {
+            if (!success) {
+                snapshot.abortWrite(null);
+            }
+            try {
+                os.close();
+            } catch (IOException e) {
+                LogUtils.e(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.graphics.Bitmap;
+import android.support.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Cache} of bitmaps split into several independently locked LRU segments,
+ * so that lookups on the main thread seldom wait for the worker threads.
+ * The segments share one byte budget, so a bitmap may take up to all of it whatever its segment.
+ * Once it is exceeded, the eldest entries of the segments are evicted in turn, starting from
+ * the segment which has overflowed, so the LRU order is kept within each segment only and the
+ * cold segments give back their share to the hot ones.
+ * <p>
+ * NOTE: A bitmap returned by {@link #get(String)} has been acquired from the {@link BitmapPool}
+ * under the lock of its segment, the caller must release it.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+class SegmentedMemoryCache implements Cache<Bitmap>, CacheCounter, Trimmable {
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final long maxSize;
+    private final BitmapPool pool;
+    private final AtomicLong size = new AtomicLong();
+    private volatile long effectiveMaxSize;
+
+    /**
+     * @param concurrencyLevel the number of segments, will be rounded up to a power of two.
+     */
+    SegmentedMemoryCache(long maxSize, int concurrencyLevel, BitmapPool pool) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Max size must be positive.");
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("concurrencyLevel <= 0");
+        }
+        int count = 1;
+        while (count < concurrencyLevel) {
+            count <<= 1;
+        }
+        this.maxSize = maxSize;
+        this.effectiveMaxSize = maxSize;
+        this.pool = pool;
+        this.segmentMask = count - 1;
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; ++i) {
+            segments[i] = new Segment();
+        }
+    }
+
+    @Nullable
+    @Override
+    public Bitmap get(String key) {
+        if (key == null) {
+            throw new NullPointerException("stableKey == null");
+        }
+        return segmentFor(key).get(key);
+    }
+
+    @Override
+    public void save(String key, Bitmap bitmap) {
+        if (key == null || bitmap == null) {
+            throw new NullPointerException("stableKey == null || bitmap == null");
+        }
+        int index = indexFor(key);
+        pool.acquire(bitmap);
+        pool.release(segments[index].save(key, bitmap));
+        trimToSize(effectiveMaxSize, index, key);
+    }
+
+    @Override
+    public void remove(String key) {
+        if (key == null) {
+            throw new NullPointerException("stableKey == null");
+        }
+        pool.release(segmentFor(key).remove(key));
+    }
+
+    @Override
+    public void clear() {
+        trimToSize(-1);
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    @Override
+    public long maxSize() {
+        return effectiveMaxSize;
+    }
+
+    @Override
+    public void trimToSize(long maxSize) {
+        trimToSize(maxSize, 0, null);
+    }
+
+    @Override
+    public void setSizeMultiplier(float multiplier) {
+        effectiveMaxSize = Math.round(maxSize * multiplier);
+        trimToSize(effectiveMaxSize);
+    }
+
+    @Override
+    public int hitCount() {
+        int count = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                count += segment.hitCount;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int missCount() {
+        int count = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                count += segment.missCount;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int putCount() {
+        int count = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                count += segment.putCount;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int evictionCount() {
+        int count = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                count += segment.evictionCount;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Evicts the eldest entry of each segment in turn from the start until the total size is
+     * within the max size.
+     *
+     * @param kept the key just saved, which is evicted only if it alone exceeds the max size.
+     */
+    private void trimToSize(long maxSize, int start, @Nullable String kept) {
+        int length = segments.length;
+        for (int i = start, misses = 0; size.get() > maxSize; i = (i + 1) & segmentMask) {
+            Bitmap evicted = segments[i].evictEldest(kept);
+            if (evicted != null) {
+                misses = 0;
+                pool.release(evicted);
+            } else if (++misses == length) {
+                if (kept == null) {
+                    break;
+                }
+                kept = null;
+                misses = 0;
+            }
+        }
+    }
+
+    private Segment segmentFor(String key) {
+        return segments[indexFor(key)];
+    }
+
+    private int indexFor(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return h & segmentMask;
+    }
+
+
+    private final class Segment {
+        private final LinkedHashMap<String, Bitmap> map = new LinkedHashMap<>(0, 0.75F, true);
+
+        private int putCount;
+        private int evictionCount;
+        private int hitCount;
+        private int missCount;
+
+        synchronized Bitmap get(String key) {
+            Bitmap value = map.get(key);
+            if (value != null) {
+                ++hitCount;
+                pool.acquire(value);
+                return value;
+            }
+            ++missCount;
+            return null;
+        }
+
+        /**
+         * @return the previous value associated with the key or null if none.
+         */
+        synchronized Bitmap save(String key, Bitmap bitmap) {
+            ++putCount;
+            add(Utils.sizeOf(bitmap));
+            Bitmap previous = map.put(key, bitmap);
+            if (previous != null) {
+                add(-Utils.sizeOf(previous));
+            }
+            return previous;
+        }
+
+        /**
+         * @return the removed value or null if none.
+         */
+        synchronized Bitmap remove(String key) {
+            Bitmap previous = map.remove(key);
+            if (previous != null) {
+                add(-Utils.sizeOf(previous));
+                ++evictionCount;
+            }
+            return previous;
+        }
+
+        /**
+         * @param kept the key which is not evicted, null if none.
+         * @return the evicted value or null if this segment is empty or has the kept key only.
+         */
+        synchronized Bitmap evictEldest(@Nullable String kept) {
+            if (map.isEmpty()) {
+                return null;
+            }
+            Map.Entry<String, Bitmap> toEvict = map.entrySet().iterator().next();
+            if (toEvict.getKey().equals(kept)) {
+                // the entry just saved is evicted last.
+                return null;
+            }
+            Bitmap value = toEvict.getValue();
+            map.remove(toEvict.getKey());
+            add(-Utils.sizeOf(value));
+            ++evictionCount;
+            return value;
+        }
+
+        private void add(long delta) {
+            size.addAndGet(delta);
+        }
+    }
+}
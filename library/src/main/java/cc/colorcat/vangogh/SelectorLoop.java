@@ -0,0 +1,624 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.support.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single thread multiplexing many HTTP/1.1 exchanges on non-blocking sockets, each response
+ * is buffered entirely before its {@link Fetch} completes. The connections of the responses
+ * which allow keep-alive are reused by later fetches to the same address.
+ * <p>
+ * A body larger than {@link #maxBodySize} fails the fetch with an {@link IOException} once it
+ * is known, by the Content-Length or by the bytes received, so it never takes more memory.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+final class SelectorLoop implements Runnable {
+    private static final long KEEP_ALIVE_NANOS = TimeUnit.MINUTES.toNanos(1L);
+    private static final int MAX_IDLE_PER_ADDRESS = 5;
+    static final long DEFAULT_MAX_BODY_SIZE = 16L * 1024L * 1024L;
+
+    private final long maxBodySize;
+
+    private final Queue<Fetch> pending = new ConcurrentLinkedQueue<>();
+    // The fields below are accessed by the loop thread only.
+    private final Set<Fetch> active = new HashSet<>();
+    private final Map<InetSocketAddress, LinkedList<IdleChannel>> idle = new HashMap<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(16 * 1024);
+
+    private Selector selector;
+    private Thread thread;
+
+    SelectorLoop() {
+        this(DEFAULT_MAX_BODY_SIZE);
+    }
+
+    /**
+     * @param maxBodySize the maximum size in bytes of a response body.
+     * @throws IllegalArgumentException if maxBodySize is less than 1
+     */
+    SelectorLoop(long maxBodySize) {
+        if (maxBodySize <= 0L) {
+            throw new IllegalArgumentException("maxBodySize <= 0");
+        }
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * Starts the fetch on the loop thread, which is started on first use.
+     */
+    synchronized void execute(Fetch fetch) throws IOException {
+        if (thread == null) {
+            selector = Selector.open();
+            thread = new Thread(this, "VanGogh-Selector");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        pending.add(fetch);
+        selector.wakeup();
+    }
+
+    /**
+     * Aborts the fetch if it has not completed, it completes with an {@link InterruptedIOException}
+     * which tells the cancellation from a network failure.
+     */
+    void cancel(Fetch fetch) {
+        fetch.canceled = true;
+        Selector selector;
+        synchronized (this) {
+            selector = this.selector;
+        }
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                selector.select(nextTimeoutMillis(System.nanoTime()));
+            } catch (IOException e) {
+                LogUtils.e(e);
+            }
+            for (Fetch fetch = pending.poll(); fetch != null; fetch = pending.poll()) {
+                start(fetch, true);
+            }
+            Set<SelectionKey> keys = selector.selectedKeys();
+            for (SelectionKey key : keys) {
+                handle(key);
+            }
+            keys.clear();
+            long now = System.nanoTime();
+            checkDeadlines(now);
+            evictIdle(now);
+        }
+    }
+
+    private void start(Fetch fetch, boolean allowReuse) {
+        if (fetch.canceled) {
+            fetch.complete(new InterruptedIOException("canceled"));
+            return;
+        }
+        fetch.maxBodySize = maxBodySize;
+        active.add(fetch);
+        SelectionKey key = allowReuse ? pollIdle(fetch.address) : null;
+        try {
+            long now = System.nanoTime();
+            if (key != null) {
+                fetch.reused = true;
+                fetch.key = key;
+                key.attach(fetch);
+                key.interestOps(SelectionKey.OP_WRITE);
+                fetch.deadline = deadline(now, fetch.readTimeout);
+                return;
+            }
+            SocketChannel channel = SocketChannel.open();
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                boolean connected = channel.connect(fetch.address);
+                fetch.key = channel.register(selector, connected ? SelectionKey.OP_WRITE : SelectionKey.OP_CONNECT, fetch);
+                fetch.deadline = deadline(now, connected ? fetch.readTimeout : fetch.connectTimeout);
+            } catch (IOException e) {
+                Utils.close(channel);
+                throw e;
+            }
+        } catch (IOException e) {
+            active.remove(fetch);
+            fetch.complete(e);
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        Fetch fetch = (Fetch) key.attachment();
+        if (fetch == null) {
+            // An idle connection has been closed by the server or got unexpected data.
+            removeIdle(key);
+            close(key);
+            return;
+        }
+        try {
+            if (!key.isValid()) {
+                throw new IOException("connection closed");
+            }
+            SocketChannel channel = (SocketChannel) key.channel();
+            long now = System.nanoTime();
+            if (key.isConnectable()) {
+                channel.finishConnect();
+                key.interestOps(SelectionKey.OP_WRITE);
+                fetch.deadline = deadline(now, fetch.readTimeout);
+            }
+            if (key.isValid() && key.isWritable()) {
+                channel.write(fetch.request);
+                if (!fetch.request.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+                fetch.deadline = deadline(now, fetch.readTimeout);
+            }
+            if (key.isValid() && key.isReadable()) {
+                readBuffer.clear();
+                int count = channel.read(readBuffer);
+                if (count == -1) {
+                    fetch.onEndOfStream();
+                } else {
+                    readBuffer.flip();
+                    fetch.consume(readBuffer);
+                }
+                fetch.deadline = deadline(now, fetch.readTimeout);
+            }
+            if (fetch.state == Fetch.DONE) {
+                active.remove(fetch);
+                if (fetch.keepAlive) {
+                    offerIdle(fetch.address, key, now);
+                } else {
+                    close(key);
+                }
+                fetch.key = null;
+                fetch.complete(null);
+            }
+        } catch (IOException e) {
+            fail(fetch, e);
+        }
+    }
+
+    /**
+     * Retries on a new connection if a reused one failed before any response, it may have been
+     * closed by the server while idle.
+     */
+    private void fail(Fetch fetch, IOException e) {
+        active.remove(fetch);
+        if (fetch.key != null) {
+            close(fetch.key);
+            fetch.key = null;
+        }
+        if (fetch.reused && !fetch.received) {
+            fetch.reset();
+            start(fetch, false);
+        } else {
+            fetch.complete(e);
+        }
+    }
+
+    private void checkDeadlines(long now) {
+        if (active.isEmpty()) {
+            return;
+        }
+        List<Fetch> expired = null;
+        for (Fetch fetch : active) {
+            if (fetch.canceled || (fetch.deadline != 0L && now - fetch.deadline >= 0L)) {
+                if (expired == null) {
+                    expired = new ArrayList<>(2);
+                }
+                expired.add(fetch);
+            }
+        }
+        if (expired != null) {
+            for (int i = 0, size = expired.size(); i < size; ++i) {
+                Fetch fetch = expired.get(i);
+                fetch.reused = false;
+                fail(fetch, fetch.canceled ? new InterruptedIOException("canceled")
+                        : new SocketTimeoutException("timeout, address = " + fetch.address));
+            }
+        }
+    }
+
+    /**
+     * @return the milliseconds to the earliest deadline, 0 if none which means infinite.
+     */
+    private long nextTimeoutMillis(long now) {
+        long earliest = Long.MAX_VALUE;
+        for (Fetch fetch : active) {
+            if (fetch.deadline != 0L) {
+                earliest = Math.min(earliest, fetch.deadline - now);
+            }
+        }
+        if (!idle.isEmpty()) {
+            earliest = Math.min(earliest, KEEP_ALIVE_NANOS);
+        }
+        if (earliest == Long.MAX_VALUE) {
+            return 0L;
+        }
+        return Math.max(1L, TimeUnit.NANOSECONDS.toMillis(earliest) + 1L);
+    }
+
+    private static long deadline(long now, int timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            return 0L;
+        }
+        long deadline = now + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        return deadline != 0L ? deadline : 1L;
+    }
+
+    @Nullable
+    private SelectionKey pollIdle(InetSocketAddress address) {
+        LinkedList<IdleChannel> channels = idle.get(address);
+        while (channels != null && !channels.isEmpty()) {
+            IdleChannel channel = channels.removeLast();
+            if (channels.isEmpty()) {
+                idle.remove(address);
+            }
+            if (channel.key.isValid() && channel.key.channel().isOpen()) {
+                return channel.key;
+            }
+            close(channel.key);
+        }
+        return null;
+    }
+
+    private void offerIdle(InetSocketAddress address, SelectionKey key, long now) {
+        LinkedList<IdleChannel> channels = idle.get(address);
+        if (channels == null) {
+            channels = new LinkedList<>();
+            idle.put(address, channels);
+        }
+        if (channels.size() >= MAX_IDLE_PER_ADDRESS) {
+            close(channels.removeFirst().key);
+        }
+        key.attach(null);
+        // Keeps reading to notice the close of the server.
+        key.interestOps(SelectionKey.OP_READ);
+        channels.addLast(new IdleChannel(key, now));
+    }
+
+    private void removeIdle(SelectionKey key) {
+        for (Iterator<LinkedList<IdleChannel>> i = idle.values().iterator(); i.hasNext(); ) {
+            LinkedList<IdleChannel> channels = i.next();
+            for (Iterator<IdleChannel> j = channels.iterator(); j.hasNext(); ) {
+                if (j.next().key == key) {
+                    j.remove();
+                }
+            }
+            if (channels.isEmpty()) {
+                i.remove();
+            }
+        }
+    }
+
+    private void evictIdle(long now) {
+        for (Iterator<LinkedList<IdleChannel>> i = idle.values().iterator(); i.hasNext(); ) {
+            LinkedList<IdleChannel> channels = i.next();
+            for (Iterator<IdleChannel> j = channels.iterator(); j.hasNext(); ) {
+                IdleChannel channel = j.next();
+                if (now - channel.since >= KEEP_ALIVE_NANOS) {
+                    j.remove();
+                    close(channel.key);
+                }
+            }
+            if (channels.isEmpty()) {
+                i.remove();
+            }
+        }
+    }
+
+    private static void close(SelectionKey key) {
+        key.cancel();
+        Utils.close(key.channel());
+    }
+
+
+    private static final class IdleChannel {
+        private final SelectionKey key;
+        private final long since;
+
+        private IdleChannel(SelectionKey key, long since) {
+            this.key = key;
+            this.since = since;
+        }
+    }
+
+
+    /**
+     * A GET request and its buffered response, which is parsed incrementally as the bytes arrive.
+     */
+    static final class Fetch extends Deferred.Signal {
+        private static final int STATUS_LINE = 0;
+        private static final int HEADERS = 1;
+        private static final int FIXED_BODY = 2;
+        private static final int CHUNK_SIZE = 3;
+        private static final int CHUNK_DATA = 4;
+        private static final int CHUNK_END = 5;
+        private static final int TRAILERS = 6;
+        private static final int UNTIL_EOF = 7;
+        private static final int DONE = 8;
+        private static final int MAX_LINE_LENGTH = 8192;
+
+        final Task task;
+        final String url;
+        private final InetSocketAddress address;
+        private final ByteBuffer request;
+        private final int connectTimeout;
+        private final int readTimeout;
+
+        // The fields below are accessed by the loop thread only until the fetch completes.
+        private SelectionKey key;
+        private long deadline;
+        private boolean reused;
+        private boolean received;
+        private int state = STATUS_LINE;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        private long remaining;
+        private long maxBodySize;
+        private boolean keepAlive;
+        private String statusLine;
+        int code;
+        String message;
+        Map<String, String> headers;
+        private Body body;
+
+        private volatile boolean canceled = false;
+        private IOException error;
+
+        Fetch(Task task, String url, InetSocketAddress address, byte[] request) {
+            this.task = task;
+            this.url = url;
+            this.address = address;
+            this.request = ByteBuffer.wrap(request);
+            this.connectTimeout = task.connectTimeOut();
+            this.readTimeout = task.readTimeOut();
+        }
+
+        /**
+         * @return the error if the fetch failed, otherwise null.
+         */
+        @Nullable
+        synchronized IOException error() {
+            return error;
+        }
+
+        /**
+         * @return the body, which is read in place without a copy of it.
+         */
+        InputStream body() {
+            return body != null ? body.stream() : new ByteArrayInputStream(new byte[0]);
+        }
+
+        long bodyLength() {
+            return body != null ? body.size() : 0L;
+        }
+
+        private void complete(@Nullable IOException e) {
+            synchronized (this) {
+                error = e;
+            }
+            signal();
+        }
+
+        private void reset() {
+            request.rewind();
+            reused = false;
+            state = STATUS_LINE;
+            line.reset();
+        }
+
+        private void onEndOfStream() throws IOException {
+            if (state != UNTIL_EOF) {
+                throw new IOException("unexpected end of stream");
+            }
+            keepAlive = false;
+            state = DONE;
+        }
+
+        private void consume(ByteBuffer buffer) throws IOException {
+            received |= buffer.hasRemaining();
+            while (buffer.hasRemaining() && state != DONE) {
+                switch (state) {
+                    case FIXED_BODY:
+                    case CHUNK_DATA: {
+                        int count = (int) Math.min(remaining, buffer.remaining());
+                        copy(buffer, count);
+                        remaining -= count;
+                        if (remaining == 0L) {
+                            state = state == FIXED_BODY ? DONE : CHUNK_END;
+                        }
+                        break;
+                    }
+                    case UNTIL_EOF:
+                        copy(buffer, buffer.remaining());
+                        break;
+                    default: {
+                        String text = readLine(buffer);
+                        if (text != null) {
+                            onLine(text);
+                        }
+                        break;
+                    }
+                }
+            }
+            if (state == DONE && buffer.hasRemaining()) {
+                // Unexpected data after the response, the connection can not be reused.
+                keepAlive = false;
+            }
+        }
+
+        private void onLine(String text) throws IOException {
+            switch (state) {
+                case STATUS_LINE:
+                    if (!text.startsWith("HTTP/1.") || text.length() < 12 || text.charAt(8) != ' ') {
+                        throw new IOException("unexpected status line: " + text);
+                    }
+                    try {
+                        code = Integer.parseInt(text.substring(9, 12));
+                    } catch (NumberFormatException e) {
+                        throw new IOException("unexpected status line: " + text);
+                    }
+                    statusLine = text;
+                    message = text.length() > 13 ? text.substring(13) : "";
+                    headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                    state = HEADERS;
+                    break;
+                case HEADERS:
+                    if (text.isEmpty()) {
+                        onHeadersEnd();
+                    } else {
+                        int index = text.indexOf(':');
+                        if (index > 0) {
+                            String name = text.substring(0, index).trim();
+                            String value = text.substring(index + 1).trim();
+                            String previous = headers.get(name);
+                            headers.put(name, previous == null ? value : previous + ", " + value);
+                        }
+                    }
+                    break;
+                case CHUNK_SIZE: {
+                    int index = text.indexOf(';');
+                    try {
+                        remaining = Long.parseLong((index != -1 ? text.substring(0, index) : text).trim(), 16);
+                    } catch (NumberFormatException e) {
+                        throw new IOException("invalid chunk size: " + text);
+                    }
+                    state = remaining == 0L ? TRAILERS : CHUNK_DATA;
+                    break;
+                }
+                case CHUNK_END:
+                    state = CHUNK_SIZE;
+                    break;
+                case TRAILERS:
+                    if (text.isEmpty()) {
+                        state = DONE;
+                    }
+                    break;
+                default:
+                    throw new AssertionError("unexpected state: " + state);
+            }
+        }
+
+        private void onHeadersEnd() throws IOException {
+            if (code >= 100 && code < 200) {
+                state = STATUS_LINE;
+                return;
+            }
+            keepAlive = !statusLine.startsWith("HTTP/1.0") && !"close".equalsIgnoreCase(headers.get("Connection"));
+            String contentLength = headers.get("Content-Length");
+            if (code == 204 || code == 304) {
+                state = DONE;
+            } else if ("chunked".equalsIgnoreCase(headers.get("Transfer-Encoding"))) {
+                body = new Body(8192);
+                state = CHUNK_SIZE;
+            } else if (contentLength != null) {
+                try {
+                    remaining = Long.parseLong(contentLength.trim());
+                } catch (NumberFormatException e) {
+                    throw new IOException("invalid Content-Length: " + contentLength);
+                }
+                if (remaining > maxBodySize) {
+                    throw new IOException("body too large: " + remaining + " > " + maxBodySize);
+                }
+                body = new Body((int) Math.min(remaining, 8 * 1024 * 1024));
+                state = remaining > 0L ? FIXED_BODY : DONE;
+            } else {
+                body = new Body(8192);
+                state = UNTIL_EOF;
+            }
+        }
+
+        private void copy(ByteBuffer buffer, int count) throws IOException {
+            if (body.size() + (long) count > maxBodySize) {
+                throw new IOException("body too large: > " + maxBodySize);
+            }
+            if (buffer.hasArray()) {
+                body.write(buffer.array(), buffer.arrayOffset() + buffer.position(), count);
+                buffer.position(buffer.position() + count);
+            } else {
+                byte[] bytes = new byte[count];
+                buffer.get(bytes);
+                body.write(bytes, 0, count);
+            }
+        }
+
+        /**
+         * @return the line without CRLF or null if it is incomplete.
+         */
+        @Nullable
+        private String readLine(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                if (b == '\n') {
+                    String result = line.toString("ISO-8859-1");
+                    line.reset();
+                    return result.endsWith("\r") ? result.substring(0, result.length() - 1) : result;
+                }
+                if (line.size() >= MAX_LINE_LENGTH) {
+                    throw new IOException("line too long");
+                }
+                line.write(b);
+            }
+            return null;
+        }
+    }
+
+
+    /**
+     * The buffer of a body, read by a stream over the written part of its array.
+     */
+    private static final class Body extends ByteArrayOutputStream {
+        private Body(int size) {
+            super(size);
+        }
+
+        private synchronized InputStream stream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+}
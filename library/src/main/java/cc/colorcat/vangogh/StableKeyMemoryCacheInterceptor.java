@@ -36,7 +36,7 @@ class StableKeyMemoryCacheInterceptor implements Interceptor {
     public Result intercept(Chain chain) throws IOException {
         Task task = chain.task();
         int fromPolicy = task.fromPolicy() & From.MEMORY.policy;
-        if (fromPolicy != 0) {
+        if (fromPolicy != 0 && !Stage.isResumed()) {
             Bitmap bitmap = memoryCache.get(task.stableKey());
             if (bitmap != null) {
                 return Result.create(bitmap, From.MEMORY);
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.support.annotation.Nullable;
+
+/**
+ * The stages of the default executors, each one has its own threads, so that a cache hit never
+ * waits behind the network and the network never waits behind decoding.
+ * <p>
+ * A {@link Call} starts in {@link #CACHE}. It moves to another stage by {@link Deferred}: the
+ * worker is given back and the interceptors run again on a thread of the stage, where the cache
+ * lookups before it are skipped, see {@link #isResumed()}.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+enum Stage {
+    /**
+     * The memory and disk caches, including the decoding of disk hits.
+     */
+    CACHE,
+    /**
+     * The downloads, which block on I/O.
+     */
+    NETWORK,
+    /**
+     * The decoding and transformations of what has just been written to the disk cache.
+     */
+    DECODE;
+
+    private static final ThreadLocal<Stage> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<From> HANDED_OVER = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> RESUMED = new ThreadLocal<>();
+
+    static void enter(@Nullable Stage stage, @Nullable From handedOver) {
+        enter(stage, handedOver, false);
+    }
+
+    /**
+     * Marks the calling thread as running in the stage until {@link #exit()}.
+     *
+     * @param handedOver see {@link #handedOver()}.
+     * @param resumed    see {@link #isResumed()}.
+     */
+    static void enter(@Nullable Stage stage, @Nullable From handedOver, boolean resumed) {
+        CURRENT.set(stage);
+        HANDED_OVER.set(handedOver);
+        RESUMED.set(resumed);
+    }
+
+    static void exit() {
+        CURRENT.remove();
+        HANDED_OVER.remove();
+        RESUMED.remove();
+    }
+
+    /**
+     * @return the stage of the calling thread, null if the executor is not staged.
+     */
+    @Nullable
+    static Stage current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return where the result which has been written to the disk cache came from, if the call
+     * has been handed over to this stage to decode it, otherwise null.
+     */
+    @Nullable
+    static From handedOver() {
+        return HANDED_OVER.get();
+    }
+
+    /**
+     * @return true if the call runs again after it has been {@link Deferred} in this attempt,
+     * whether staged or not. Its lookups of the caches have missed already, they are skipped
+     * so that neither the stats nor the frequencies of the caches count them twice.
+     */
+    static boolean isResumed() {
+        return Boolean.TRUE.equals(RESUMED.get());
+    }
+
+    /**
+     * Moves the call to the stage unless it runs in it already or the executor is not staged.
+     *
+     * @throws Deferred to move the call.
+     */
+    static void require(Stage stage) {
+        Stage current = CURRENT.get();
+        if (current != null && current != stage) {
+            throw new Deferred(stage, null);
+        }
+    }
+
+    /**
+     * Moves the call to {@link #DECODE} with the result which has been written to the disk
+     * cache, unless the executor is not staged.
+     *
+     * @throws Deferred to move the call.
+     */
+    static void handOverToDecode(From from) {
+        if (CURRENT.get() == NETWORK) {
+            throw new Deferred(DECODE, from);
+        }
+    }
+}
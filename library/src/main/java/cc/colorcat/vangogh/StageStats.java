@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+/**
+ * A snapshot of a stage of the default executors, see {@link VanGogh#stageStats()}.
+ * The wait is the time a call spent in the queue of the stage, the run is the time it spent
+ * on a thread of the stage.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+@SuppressWarnings("unused")
+public final class StageStats {
+    private final String stage;
+    private final int threadCount;
+    private final int activeCount;
+    private final int queuedCount;
+    private final long runCount;
+    private final long totalWaitMillis;
+    private final long maxWaitMillis;
+    private final long totalRunMillis;
+    private final long maxRunMillis;
+
+    StageStats(String stage, int threadCount, int activeCount, int queuedCount, long runCount,
+               long totalWaitMillis, long maxWaitMillis, long totalRunMillis, long maxRunMillis) {
+        this.stage = stage;
+        this.threadCount = threadCount;
+        this.activeCount = activeCount;
+        this.queuedCount = queuedCount;
+        this.runCount = runCount;
+        this.totalWaitMillis = totalWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        this.totalRunMillis = totalRunMillis;
+        this.maxRunMillis = maxRunMillis;
+    }
+
+    /**
+     * @return the name of the stage, "cache", "network" or "decode".
+     */
+    public String stage() {
+        return stage;
+    }
+
+    public int threadCount() {
+        return threadCount;
+    }
+
+    /**
+     * @return the number of threads which are running a call now.
+     */
+    public int activeCount() {
+        return activeCount;
+    }
+
+    /**
+     * @return the number of calls which are waiting in the queue now.
+     */
+    public int queuedCount() {
+        return queuedCount;
+    }
+
+    /**
+     * @return the number of runs which have ended, a call runs once per stage it passes.
+     */
+    public long runCount() {
+        return runCount;
+    }
+
+    public long totalWaitMillis() {
+        return totalWaitMillis;
+    }
+
+    public long maxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public long totalRunMillis() {
+        return totalRunMillis;
+    }
+
+    public long maxRunMillis() {
+        return maxRunMillis;
+    }
+
+    /**
+     * @return the average wait of the ended runs, 0 if none.
+     */
+    public double averageWaitMillis() {
+        return runCount == 0L ? 0.0 : totalWaitMillis / (double) runCount;
+    }
+
+    /**
+     * @return the average time of the ended runs, 0 if none.
+     */
+    public double averageRunMillis() {
+        return runCount == 0L ? 0.0 : totalRunMillis / (double) runCount;
+    }
+
+    @Override
+    public String toString() {
+        return "StageStats{" +
+                "stage='" + stage + '\'' +
+                ", threadCount=" + threadCount +
+                ", activeCount=" + activeCount +
+                ", queuedCount=" + queuedCount +
+                ", runCount=" + runCount +
+                ", totalWaitMillis=" + totalWaitMillis +
+                ", maxWaitMillis=" + maxWaitMillis +
+                ", totalRunMillis=" + totalRunMillis +
+                ", maxRunMillis=" + maxRunMillis +
+                ", averageWaitMillis=" + averageWaitMillis() +
+                ", averageRunMillis=" + averageRunMillis() +
+                '}';
+    }
+}
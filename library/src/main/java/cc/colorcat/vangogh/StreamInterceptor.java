@@ -18,6 +18,7 @@ package cc.colorcat.vangogh;
 
 import android.graphics.Bitmap;
 
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -27,6 +28,11 @@ import java.io.InputStream;
  * GitHub: https://github.com/ccolorcat
  */
 class StreamInterceptor implements Interceptor {
+    private BitmapPool pool;
+
+    StreamInterceptor(BitmapPool pool) {
+        this.pool = pool;
+    }
 
     @Override
     public Result intercept(Chain chain) throws IOException {
@@ -34,12 +40,18 @@ class StreamInterceptor implements Interceptor {
         Result result = chain.proceed(task);
         Bitmap bitmap = result.bitmap();
         if (bitmap == null) {
-            InputStream is = result.stream();
             Task.Options options = task.options();
-            bitmap = Utils.transformStreamAndClose(is, options);
+            FileInputStream file = result.file();
+            if (file != null) {
+                bitmap = Utils.transformFileAndClose(file, options, pool);
+            } else {
+                InputStream is = result.stream();
+                bitmap = Utils.transformStreamAndClose(is, result.contentLength(), options, pool);
+            }
             if (bitmap == null) {
                 throw new IOException("decode failed, uri = " + task.uri());
             }
+            pool.acquire(bitmap);
         }
         return Result.create(bitmap, result.from());
     }
@@ -32,20 +32,75 @@ public final class Task {
     private final String stableKey;
     private final String key;
     private final int fromPolicy;
+    private final boolean storeResult;
     private final int connectTimeOut;
     private final int readTimeOut;
     private final Options options;
     private final List<Transformation> transformations;
+    private final long resumeOffset;
+    private final String resumeValidator;
+    private final String ifNoneMatch;
+    private final String ifModifiedSince;
 
     Task(Creator creator) {
         this.uri = creator.uri;
         this.stableKey = creator.stableKey;
         this.key = creator.key;
         this.fromPolicy = creator.fromPolicy;
+        this.storeResult = creator.storeResult;
         this.connectTimeOut = creator.connectTimeOut;
         this.readTimeOut = creator.readTimeOut;
         this.options = creator.options;
         this.transformations = Utils.immutableList(creator.transformations);
+        this.resumeOffset = 0L;
+        this.resumeValidator = null;
+        this.ifNoneMatch = null;
+        this.ifModifiedSince = null;
+    }
+
+    private Task(Task task, long resumeOffset, String resumeValidator, String ifNoneMatch, String ifModifiedSince) {
+        this.uri = task.uri;
+        this.stableKey = task.stableKey;
+        this.key = task.key;
+        this.fromPolicy = task.fromPolicy;
+        this.storeResult = task.storeResult;
+        this.connectTimeOut = task.connectTimeOut;
+        this.readTimeOut = task.readTimeOut;
+        this.options = task.options;
+        this.transformations = task.transformations;
+        this.resumeOffset = resumeOffset;
+        this.resumeValidator = resumeValidator;
+        this.ifNoneMatch = ifNoneMatch;
+        this.ifModifiedSince = ifModifiedSince;
+    }
+
+    /**
+     * @return a copy of this task which asks the {@link Downloader} for the rest of the
+     * resource from the offset, if it is still the one identified by the validator.
+     */
+    Task resume(long offset, String validator) {
+        if (offset <= 0L) {
+            throw new IllegalArgumentException("offset <= 0");
+        }
+        if (validator == null) {
+            throw new NullPointerException("validator == null");
+        }
+        return new Task(this, offset, validator, ifNoneMatch, ifModifiedSince);
+    }
+
+    /**
+     * @return a copy of this task which asks the {@link Downloader} for the resource only if it
+     * has been modified since it was cached with the headers.
+     */
+    Task revalidate(CacheHeaders headers) {
+        return new Task(this, resumeOffset, resumeValidator, headers.etag, headers.lastModified);
+    }
+
+    /**
+     * @return a copy of this task which asks for the whole resource.
+     */
+    Task restart() {
+        return resumeOffset == 0L ? this : new Task(this, 0L, null, ifNoneMatch, ifModifiedSince);
     }
 
     public Uri uri() {
@@ -64,6 +119,13 @@ public final class Task {
         return fromPolicy;
     }
 
+    /**
+     * @return whether the final bitmap is stored in the disk cache under {@link #key()}.
+     */
+    public boolean storeResult() {
+        return storeResult;
+    }
+
     public int connectTimeOut() {
         return connectTimeOut;
     }
@@ -80,6 +142,35 @@ public final class Task {
         return transformations;
     }
 
+    /**
+     * @return the offset from which the resource is requested, 0 for the whole resource.
+     */
+    public long resumeOffset() {
+        return resumeOffset;
+    }
+
+    /**
+     * @return the ETag or Last-Modified of the partially downloaded resource,
+     * null if {@link #resumeOffset()} is 0.
+     */
+    public String resumeValidator() {
+        return resumeValidator;
+    }
+
+    /**
+     * @return the ETag of the cached resource to be revalidated, null if none.
+     */
+    public String ifNoneMatch() {
+        return ifNoneMatch;
+    }
+
+    /**
+     * @return the Last-Modified of the cached resource to be revalidated, null if none.
+     */
+    public String ifModifiedSince() {
+        return ifModifiedSince;
+    }
+
 
     public static final class Options implements Cloneable {
         static final int SCALE_TYPE_NO = 0;
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.support.annotation.NonNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An {@link InputStream} which copies all bytes read to the sink, so the decoder and the disk
+ * cache share a single pass over the network. Closing it reads the rest which the decoder
+ * has not consumed, then {@link #isComplete()} tells whether the sink got the whole stream.
+ * NOTE: The sink is not closed by this.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+final class TeeInputStream extends FilterInputStream {
+    private final OutputStream sink;
+    private boolean complete = false;
+    private boolean closed = false;
+
+    TeeInputStream(InputStream in, OutputStream sink) {
+        super(in);
+        this.sink = sink;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b == -1) {
+            complete = true;
+        } else {
+            sink.write(b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(@NonNull byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(@NonNull byte[] b, int off, int len) throws IOException {
+        int count = in.read(b, off, len);
+        if (count == -1) {
+            complete = true;
+        } else {
+            sink.write(b, off, count);
+        }
+        return count;
+    }
+
+    /**
+     * The skipped bytes are read and copied too.
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0L) {
+            return 0L;
+        }
+        ByteArrayPool bytes = ByteArrayPool.shared();
+        byte[] buffer = bytes.get(ByteArrayPool.BUFFER_SIZE);
+        long skipped = 0L;
+        try {
+            while (skipped < n) {
+                int count = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (count == -1) break;
+                skipped += count;
+            }
+        } finally {
+            bytes.put(buffer);
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            ByteArrayPool bytes = ByteArrayPool.shared();
+            byte[] buffer = bytes.get(ByteArrayPool.BUFFER_SIZE);
+            try {
+                int count;
+                do {
+                    count = read(buffer, 0, buffer.length);
+                } while (count != -1);
+            } catch (IOException e) {
+                LogUtils.e(e);
+            } finally {
+                bytes.put(buffer);
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * @return true if the whole stream has been copied to the sink.
+     */
+    boolean isComplete() {
+        return complete;
+    }
+}
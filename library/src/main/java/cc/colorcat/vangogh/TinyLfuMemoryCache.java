@@ -0,0 +1,392 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.graphics.Bitmap;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link Cache} of bitmaps with the W-TinyLFU policy, the sizes of entries are weighted by
+ * {@link Utils#sizeOf(Bitmap)}.
+ * <p>
+ * New entries enter a small LRU window. Entries leaving the window become candidates of the
+ * main area, which is a segmented LRU of probation and protected parts. A candidate is admitted
+ * only if it has been seen more often than the eldest entry of probation, as estimated by a
+ * {@link FrequencySketch}, so a one-off large image can not flush the frequently used ones.
+ * <p>
+ * NOTE: A bitmap returned by {@link #get(String)} has been acquired from the {@link BitmapPool}
+ * while it is still cached, the caller must release it.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+class TinyLfuMemoryCache implements Cache<Bitmap>, CacheCounter, Trimmable {
+    private static final int AVERAGE_ENTRY_SIZE = 64 * 1024;
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final Map<String, Node> map;
+    private final FrequencySketch sketch;
+    private final BitmapPool pool;
+    private final Deque window = new Deque();
+    private final Deque probation = new Deque();
+    private final Deque protect = new Deque();
+    private final long maxSize;
+
+    private long effectiveMaxSize;
+    private long windowMaxSize;
+    private long protectedMaxSize;
+    private long size;
+    private long windowSize;
+    private long protectedSize;
+    private int putCount;
+    private int evictionCount;
+    private int hitCount;
+    private int missCount;
+    private int rejectionCount;
+
+    TinyLfuMemoryCache(long maxSize, BitmapPool pool) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Max size must be positive.");
+        }
+        this.maxSize = maxSize;
+        updateMaxSize(maxSize);
+        this.map = new HashMap<>();
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(16, maxSize / AVERAGE_ENTRY_SIZE)));
+        this.pool = pool;
+    }
+
+    @Nullable
+    @Override
+    public Bitmap get(String key) {
+        if (key == null) {
+            throw new NullPointerException("stableKey == null");
+        }
+        synchronized (this) {
+            sketch.increment(key);
+            Node node = map.get(key);
+            if (node != null) {
+                ++hitCount;
+                onAccess(node);
+                pool.acquire(node.value);
+                return node.value;
+            }
+            ++missCount;
+        }
+        return null;
+    }
+
+    @Override
+    public void save(String key, Bitmap bitmap) {
+        if (key == null || bitmap == null) {
+            throw new NullPointerException("stableKey == null || bitmap == null");
+        }
+        pool.acquire(bitmap);
+        Bitmap previous = null;
+        synchronized (this) {
+            ++putCount;
+            sketch.increment(key);
+            int weight = Utils.sizeOf(bitmap);
+            Node node = map.get(key);
+            if (node != null) {
+                previous = node.value;
+                node.value = bitmap;
+                resize(node, weight);
+                onAccess(node);
+            } else {
+                node = new Node(key, bitmap, weight);
+                map.put(key, node);
+                window.addLast(node);
+                windowSize += weight;
+                size += weight;
+            }
+        }
+        pool.release(previous);
+        List<Bitmap> evicted = evict();
+        for (int i = 0, count = evicted.size(); i < count; ++i) {
+            pool.release(evicted.get(i));
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        if (key == null) {
+            throw new NullPointerException("stableKey == null");
+        }
+        Bitmap previous = null;
+        synchronized (this) {
+            Node node = map.get(key);
+            if (node != null) {
+                previous = node.value;
+                discard(node);
+            }
+        }
+        pool.release(previous);
+    }
+
+    @Override
+    public void clear() {
+        trimToSize(-1);
+    }
+
+    @Override
+    public final synchronized long size() {
+        return size;
+    }
+
+    @Override
+    public final synchronized long maxSize() {
+        return effectiveMaxSize;
+    }
+
+    @Override
+    public void trimToSize(long maxSize) {
+        List<Bitmap> evicted = evictTo(maxSize);
+        for (int i = 0, count = evicted.size(); i < count; ++i) {
+            pool.release(evicted.get(i));
+        }
+    }
+
+    @Override
+    public void setSizeMultiplier(float multiplier) {
+        synchronized (this) {
+            updateMaxSize(Math.round(maxSize * multiplier));
+        }
+        trimToSize(maxSize());
+    }
+
+    @Override
+    public final synchronized int hitCount() {
+        return hitCount;
+    }
+
+    @Override
+    public final synchronized int missCount() {
+        return missCount;
+    }
+
+    @Override
+    public final synchronized int putCount() {
+        return putCount;
+    }
+
+    @Override
+    public final synchronized int evictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the number of candidates which have been evicted instead of the eldest entry
+     * of probation because they were less frequently used.
+     */
+    public final synchronized int rejectionCount() {
+        return rejectionCount;
+    }
+
+    private void updateMaxSize(long maxSize) {
+        effectiveMaxSize = maxSize;
+        windowMaxSize = Math.max(1L, maxSize / 100);
+        protectedMaxSize = (long) ((maxSize - windowMaxSize) * 0.8);
+    }
+
+    /**
+     * Evicts the entries in order of probation, window and protected, which is roughly from
+     * the least to the most valuable.
+     *
+     * @return the evicted bitmaps.
+     */
+    private synchronized List<Bitmap> evictTo(long maxSize) {
+        List<Bitmap> evicted = new ArrayList<>();
+        while (size > maxSize) {
+            Node node = probation.first();
+            if (node == null) node = window.first();
+            if (node == null) node = protect.first();
+            if (node == null) break;
+            evicted.add(node.value);
+            discard(node);
+        }
+        return evicted;
+    }
+
+    private void onAccess(Node node) {
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToLast(node);
+                break;
+            case PROBATION:
+                probation.remove(node);
+                node.queue = PROTECTED;
+                protect.addLast(node);
+                protectedSize += node.weight;
+                demoteProtected();
+                break;
+            case PROTECTED:
+                protect.moveToLast(node);
+                break;
+            default:
+                throw new AssertionError("unknown queue: " + node.queue);
+        }
+    }
+
+    private void demoteProtected() {
+        while (protectedSize > protectedMaxSize) {
+            Node demoted = protect.first();
+            if (demoted == null) break;
+            protect.remove(demoted);
+            protectedSize -= demoted.weight;
+            demoted.queue = PROBATION;
+            probation.addLast(demoted);
+        }
+    }
+
+    private void resize(Node node, int weight) {
+        int delta = weight - node.weight;
+        node.weight = weight;
+        size += delta;
+        if (node.queue == WINDOW) {
+            windowSize += delta;
+        } else if (node.queue == PROTECTED) {
+            protectedSize += delta;
+        }
+    }
+
+    /**
+     * Moves the entries overflowing the window to the tail of probation as candidates, then
+     * evicts the candidates or the eldest entries of probation until the size fits.
+     *
+     * @return the evicted bitmaps.
+     */
+    private synchronized List<Bitmap> evict() {
+        int candidates = 0;
+        while (windowSize > windowMaxSize) {
+            Node node = window.first();
+            window.remove(node);
+            windowSize -= node.weight;
+            node.queue = PROBATION;
+            probation.addLast(node);
+            ++candidates;
+        }
+        List<Bitmap> evicted = new ArrayList<>(2);
+        while (size > effectiveMaxSize) {
+            Node victim = probation.first();
+            Node candidate = candidates > 0 ? probation.last() : null;
+            Node toEvict;
+            if (victim == null) {
+                toEvict = protect.first() != null ? protect.first() : window.first();
+            } else if (candidate == null || candidate == victim) {
+                toEvict = victim;
+            } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+                toEvict = victim;
+            } else {
+                toEvict = candidate;
+                ++rejectionCount;
+            }
+            if (toEvict == candidate) {
+                --candidates;
+            }
+            evicted.add(toEvict.value);
+            discard(toEvict);
+        }
+        return evicted;
+    }
+
+    private void discard(Node node) {
+        map.remove(node.key);
+        size -= node.weight;
+        ++evictionCount;
+        switch (node.queue) {
+            case WINDOW:
+                window.remove(node);
+                windowSize -= node.weight;
+                break;
+            case PROBATION:
+                probation.remove(node);
+                break;
+            case PROTECTED:
+                protect.remove(node);
+                protectedSize -= node.weight;
+                break;
+            default:
+                throw new AssertionError("unknown queue: " + node.queue);
+        }
+    }
+
+
+    private static final class Node {
+        private final String key;
+        private Bitmap value;
+        private int weight;
+        private int queue = WINDOW;
+        private Node prev;
+        private Node next;
+
+        private Node(String key, Bitmap value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+
+    /**
+     * A doubly linked list of {@link Node}, the first one is the eldest.
+     */
+    private static final class Deque {
+        private final Node head = new Node(null, null, 0);
+
+        private Deque() {
+            head.prev = head;
+            head.next = head;
+        }
+
+        @Nullable
+        Node first() {
+            return head.next != head ? head.next : null;
+        }
+
+        @Nullable
+        Node last() {
+            return head.prev != head ? head.prev : null;
+        }
+
+        void addLast(Node node) {
+            node.prev = head.prev;
+            node.next = head;
+            head.prev.next = node;
+            head.prev = node;
+        }
+
+        void remove(Node node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+        }
+
+        void moveToLast(Node node) {
+            remove(node);
+            addLast(node);
+        }
+    }
+}
@@ -19,6 +19,7 @@ package cc.colorcat.vangogh;
 import android.graphics.Bitmap;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.List;
 
 /**
@@ -28,7 +29,10 @@ import java.util.List;
  */
 class TransformInterceptor implements Interceptor {
 
-    TransformInterceptor() {
+    private BitmapPool pool;
+
+    TransformInterceptor(BitmapPool pool) {
+        this.pool = pool;
     }
 
     @Override
@@ -40,14 +44,35 @@ class TransformInterceptor implements Interceptor {
         if (result.from() == From.MEMORY) {
             final Task.Options options = task.options();
             if (options.hasSize() || options.hasRotation()) {
-                bitmap = Utils.applyOptions(bitmap, options, options.hasMaxSize());
+                bitmap = replace(bitmap, Utils.applyOptions(bitmap, options, options.hasMaxSize()));
             }
         }
 
         List<Transformation> transformations = task.transformations();
         for (int i = 0, size = transformations.size(); i < size; ++i) {
-            bitmap = transformations.get(i).transform(bitmap);
+            if (Utils.isCanceled(chain)) {
+                pool.release(bitmap);
+                throw new InterruptedIOException("canceled, task = " + task);
+            }
+            Transformation transformation = transformations.get(i);
+            if (transformation instanceof Transformation.PoolAware) {
+                bitmap = replace(bitmap, ((Transformation.PoolAware) transformation).transform(bitmap, pool));
+            } else {
+                bitmap = replace(bitmap, transformation.transform(bitmap));
+            }
         }
         return Result.create(bitmap, result.from());
     }
+
+    /**
+     * Moves the hold of the chain from the source to the transformed bitmap,
+     * the source may enter the pool if nothing else holds it.
+     */
+    private Bitmap replace(Bitmap source, Bitmap transformed) {
+        if (transformed != source) {
+            pool.acquire(transformed);
+            pool.release(source);
+        }
+        return transformed;
+    }
 }
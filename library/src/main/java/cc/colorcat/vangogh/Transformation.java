@@ -28,4 +28,11 @@ public interface Transformation {
     Bitmap transform(Bitmap source);
 
     String getKey();
+
+    /**
+     * A {@link Transformation} which obtains its output bitmap from the {@link BitmapPool}.
+     */
+    interface PoolAware extends Transformation {
+        Bitmap transform(Bitmap source, BitmapPool pool);
+    }
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+/**
+ * The memory caches and the bitmap pool which can be shrunk under memory pressure.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+interface Trimmable {
+
+    /**
+     * Evicts the entries until the size is not greater than {@code maxSize},
+     * -1 will evict all entries.
+     */
+    void trimToSize(long maxSize);
+
+    /**
+     * Changes the effective maximum size to the configured one multiplied by {@code multiplier}
+     * and trims to it.
+     *
+     * @param multiplier in [0, 1]
+     */
+    void setSizeMultiplier(float multiplier);
+}
@@ -18,26 +18,33 @@ package cc.colorcat.vangogh;
 
 import android.app.ActivityManager;
 import android.content.Context;
+import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
 import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.Paint;
+import android.graphics.Rect;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
 import android.support.annotation.ColorInt;
+import android.support.annotation.Nullable;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
@@ -65,12 +72,23 @@ class Utils {
         return Collections.unmodifiableList(new ArrayList<>(list));
     }
 
+    /**
+     * {@link java.util.Objects#equals(Object, Object)} is not available before API 19.
+     */
+    static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
     static void checkMain() {
-        if (Looper.getMainLooper().getThread() != Thread.currentThread()) {
+        if (!isMain()) {
             throw new IllegalStateException("Current thread is not main thread.");
         }
     }
 
+    static boolean isMain() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
     static Bitmap makeWatermark(Bitmap src, @ColorInt int color, Task.Options to) {
         int width = src.getWidth();
         int height = src.getHeight();
@@ -117,32 +135,68 @@ class Utils {
         return file.length();
     }
 
-    static void justDump(InputStream is, OutputStream os) throws IOException {
-        BufferedInputStream bis = new BufferedInputStream(is);
-        BufferedOutputStream bos = new BufferedOutputStream(os);
-        byte[] buffer = new byte[4096];
-        for (int length = bis.read(buffer); length != -1; length = bis.read(buffer)) {
-            bos.write(buffer, 0, length);
+    /**
+     * @return true if the call of the chain has been canceled, see
+     * {@link RealInterceptorChain#isCanceled()}, always false for a chain of others.
+     */
+    static boolean isCanceled(Interceptor.Chain chain) {
+        return chain instanceof RealInterceptorChain && ((RealInterceptorChain) chain).isCanceled();
+    }
+
+    /**
+     * @param chain the copy stops with an {@link InterruptedIOException} between the buffers once
+     *              the call has been canceled.
+     */
+    static void justDump(InputStream is, OutputStream os, Interceptor.Chain chain) throws IOException {
+        ByteArrayPool bytes = ByteArrayPool.shared();
+        byte[] buffer = bytes.get(ByteArrayPool.BUFFER_SIZE);
+        try {
+            for (int length = fill(is, buffer); length != -1; length = fill(is, buffer)) {
+                if (isCanceled(chain)) {
+                    throw new InterruptedIOException("canceled, task = " + chain.task());
+                }
+                os.write(buffer, 0, length);
+            }
+            os.flush();
+        } finally {
+            bytes.put(buffer);
         }
-        bos.flush();
     }
 
     static void dumpAndClose(InputStream is, OutputStream os) throws IOException {
-        BufferedInputStream bis = new BufferedInputStream(is);
-        BufferedOutputStream bos = new BufferedOutputStream(os);
+        ByteArrayPool bytes = ByteArrayPool.shared();
+        byte[] buffer = bytes.get(ByteArrayPool.BUFFER_SIZE);
         try {
-            byte[] buffer = new byte[4096];
-            for (int length = bis.read(buffer); length != -1; length = bis.read(buffer)) {
-                bos.write(buffer, 0, length);
+            for (int length = fill(is, buffer); length != -1; length = fill(is, buffer)) {
+                os.write(buffer, 0, length);
             }
-            bos.flush();
+            os.flush();
         } finally {
-            close(bis);
-            close(bos);
+            bytes.put(buffer);
+            close(is);
+            close(os);
+        }
+    }
+
+    /**
+     * Reads until the buffer is full or the stream ends, so the sink gets writes of the whole
+     * buffer instead of the small reads of the network.
+     *
+     * @return the number of bytes read, -1 if the stream has ended before any.
+     */
+    private static int fill(InputStream is, byte[] buffer) throws IOException {
+        int count = 0;
+        while (count < buffer.length) {
+            int read = is.read(buffer, count, buffer.length - count);
+            if (read == -1) {
+                return count == 0 ? -1 : count;
+            }
+            count += read;
         }
+        return count;
     }
 
-    private static void close(Closeable closeable) {
+    static void close(Closeable closeable) {
         if (closeable != null) {
             try {
                 closeable.close();
@@ -151,6 +205,18 @@ class Utils {
         }
     }
 
+    /**
+     * {@link Socket} does not implement {@link Closeable} before API 19.
+     */
+    static void close(Socket socket) {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
     static void deleteContents(File dir) throws IOException {
         File[] files = dir.listFiles();
         if (files == null) throw new IOException("not a readable directory: " + dir);
@@ -194,6 +260,13 @@ class Utils {
         return md5(uri.toString());
     }
 
+    /**
+     * @return the key of {@link DiskCache} for the result of the task with the key.
+     */
+    static String createResultKey(String key) {
+        return md5(key);
+    }
+
     /**
      * md5 加密，如果加密失败则原样返回
      */
@@ -217,29 +290,120 @@ class Utils {
         return result;
     }
 
-    private static byte[] toBytesAndClose(InputStream is) throws IOException {
+    /**
+     * Reads the whole stream into an array of the pool, which must be given back.
+     *
+     * @param contentLength the length of the stream if known, the array is presized to it.
+     * @return the array, whose first {@code length[0]} bytes are the stream.
+     */
+    private static byte[] toPooledBytesAndClose(InputStream is, long contentLength, int[] length) throws IOException {
+        ByteArrayPool bytes = ByteArrayPool.shared();
+        if (contentLength <= 0L) {
+            contentLength = is.available();
+        }
+        // one more byte to tell the end without growing.
+        int capacity = contentLength > 0L && contentLength < Integer.MAX_VALUE - 1
+                ? (int) contentLength + 1 : ByteArrayPool.BUFFER_SIZE;
+        byte[] data = bytes.get(capacity);
+        int count = 0;
         try {
-            ByteArrayOutputStream os = new ByteArrayOutputStream();
-            byte[] buffer = new byte[4096];
-            for (int length = is.read(buffer); length != -1; length = is.read(buffer)) {
-                os.write(buffer, 0, length);
+            for (int read = 0; read != -1; ) {
+                if (count == data.length) {
+                    byte[] larger = bytes.get(data.length * 2);
+                    System.arraycopy(data, 0, larger, 0, count);
+                    bytes.put(data);
+                    data = larger;
+                }
+                read = is.read(data, count, data.length - count);
+                if (read > 0) {
+                    count += read;
+                }
             }
-            os.flush();
-            return os.toByteArray();
+        } catch (IOException e) {
+            bytes.put(data);
+            throw e;
         } finally {
             close(is);
         }
+        length[0] = count;
+        return data;
     }
 
-    static Bitmap transformStreamAndClose(InputStream is, Task.Options to) throws IOException {
+    static Bitmap transformStreamAndClose(InputStream is, Task.Options to, BitmapPool pool) throws IOException {
+        return transformStreamAndClose(is, -1L, to, pool);
+    }
+
+    /**
+     * @param contentLength the length of the stream if known, -1 otherwise.
+     */
+    static Bitmap transformStreamAndClose(InputStream is, long contentLength, Task.Options to, BitmapPool pool) throws IOException {
+        boolean scaleDown = to.hasMaxSize();
+        Bitmap result = !to.hasSize() ? decodeStreamAndClose(is) : decodeStreamAndClose(is, contentLength, to, scaleDown, pool);
+        return applyOptions(result, to, scaleDown, pool);
+    }
+
+    /**
+     * Decodes the descriptor of the file, nothing of which is copied to the heap: the header is
+     * probed by positional reads of its first bytes, and the decoder reads the descriptor natively,
+     * restoring its offset after each pass.
+     */
+    static Bitmap transformFileAndClose(FileInputStream file, Task.Options to, BitmapPool pool) throws IOException {
         boolean scaleDown = to.hasMaxSize();
-        Bitmap result = !to.hasSize() ? decodeStreamAndClose(is) : decodeStreamAndClose(is, to, scaleDown);
-        if (to.hasResize() || to.hasRotation()) {
-            result = applyOptions(result, to, scaleDown);
+        Bitmap result;
+        try {
+            result = !to.hasSize() ? decodeFileDescriptor(file.getFD()) : decodeFileDescriptor(file, to, scaleDown, pool);
+        } finally {
+            close(file);
+        }
+        return applyOptions(result, to, scaleDown, pool);
+    }
+
+    private static Bitmap applyOptions(Bitmap result, Task.Options to, boolean scaleDown, BitmapPool pool) {
+        if (result != null && (to.hasResize() || to.hasRotation())) {
+            Bitmap decoded = result;
+            result = !to.hasRotation() && to.hasResize() ? fitExactly(decoded, to) : null;
+            if (result == null) {
+                result = applyOptions(decoded, to, scaleDown);
+            }
+            if (result != decoded) {
+                pool.put(decoded);
+            }
         }
         return result;
     }
 
+    /**
+     * The bitmap has been decoded at the scaled size of {@link DecodePlan}, so only the crop of
+     * center crop is left, without the pass of matrix.
+     *
+     * @return the bitmap itself or its crop, null if it is not of the scaled size, such as by the
+     * rounding of the decoder or a fit xy of another aspect ratio, which needs the matrix then.
+     */
+    @Nullable
+    private static Bitmap fitExactly(Bitmap decoded, Task.Options to) {
+        int width = decoded.getWidth(), height = decoded.getHeight();
+        int targetWidth = to.targetWidth(), targetHeight = to.targetHeight();
+        switch (to.scaleType()) {
+            case Task.Options.SCALE_TYPE_NO:
+                return decoded;
+            case Task.Options.SCALE_TYPE_CENTER_CROP:
+                if (width == targetWidth && height == targetHeight) {
+                    return decoded;
+                }
+                if ((width == targetWidth && height > targetHeight) || (height == targetHeight && width > targetWidth)) {
+                    return Bitmap.createBitmap(decoded, (width - targetWidth) / 2, (height - targetHeight) / 2, targetWidth, targetHeight);
+                }
+                return null;
+            case Task.Options.SCALE_TYPE_CENTER_INSIDE:
+                boolean fits = (width == targetWidth && height <= targetHeight) || (height == targetHeight && width <= targetWidth);
+                return fits ? decoded : null;
+            case Task.Options.SCALE_TYPE_FIT_XY:
+                return width == targetWidth && height == targetHeight ? decoded : null;
+            default:
+                return null;
+        }
+    }
+
     static Bitmap applyOptions(Bitmap result, Task.Options to, boolean onlyScaleDown) {
         int inWidth = result.getWidth(), inHeight = result.getHeight();
         int drawX = 0, drawY = 0;
@@ -305,45 +469,275 @@ class Utils {
 
     private static Bitmap decodeStreamAndClose(InputStream is) {
         try {
-            return BitmapFactory.decodeStream(is);
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inMutable = true;
+            return BitmapFactory.decodeStream(is, null, options);
         } finally {
             close(is);
         }
     }
 
-    private static Bitmap decodeStreamAndClose(InputStream is, Task.Options to, boolean scaleDown) throws IOException {
-        BufferedInputStream bis = null;
-        InputStream resettable = is;
+    private static Bitmap decodeFileDescriptor(FileDescriptor fd) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inMutable = true;
+        return BitmapFactory.decodeFileDescriptor(fd, null, options);
+    }
+
+    static Bitmap decodeFileAndClose(FileInputStream file, Bitmap.Config config) throws IOException {
         try {
-            if (resettable.available() == 0) {
-                resettable = new ByteArrayInputStream(toBytesAndClose(is));
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inMutable = true;
+            options.inPreferredConfig = config;
+            return BitmapFactory.decodeFileDescriptor(file.getFD(), null, options);
+        } finally {
+            close(file);
+        }
+    }
+
+    private static Bitmap decodeStreamAndClose(InputStream is, long contentLength, Task.Options to, boolean scaleDown, BitmapPool pool) throws IOException {
+        BufferedInputStream bis = new BufferedInputStream(is);
+        try {
+            bis.mark(ImageHeader.MAX_LENGTH);
+            ImageHeader header = ImageHeader.read(bis);
+            if (!tryReset(bis)) {
+                return null;
+            }
+            if (header == null) {
+                // unknown to the header, such as HEIF, by the bounds of the decoder then.
+                return decodeBoundsThenBytes(bis, contentLength, to, scaleDown, pool);
             }
-            bis = new BufferedInputStream(resettable);
-            bis.mark(bis.available());
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = to.config();
+            prepare(options, header.width, header.height, header.format == ImageHeader.Format.JPEG, to, scaleDown, pool);
+            return restoreDensity(decodeWithInBitmap(bis, options, ImageHeader.MAX_LENGTH), options);
+        } finally {
+            close(bis);
+        }
+    }
+
+    /**
+     * Decodes the bounds first, the stream is read entirely into an array of the pool, which is
+     * decoded with its length, so it is neither grown from a small size nor copied at the end.
+     */
+    private static Bitmap decodeBoundsThenBytes(InputStream is, long contentLength, Task.Options to, boolean scaleDown, BitmapPool pool) throws IOException {
+        int[] length = new int[1];
+        byte[] data = toPooledBytesAndClose(is, contentLength, length);
+        try {
             BitmapFactory.Options options = new BitmapFactory.Options();
             options.inJustDecodeBounds = true;
             options.inPreferredConfig = to.config();
-            BitmapFactory.decodeStream(bis, null, options);
-            bis.reset();
-            options.inSampleSize = calculateInSampleSize(options, to, scaleDown);
+            BitmapFactory.decodeByteArray(data, 0, length[0], options);
             options.inJustDecodeBounds = false;
-            return BitmapFactory.decodeStream(bis, null, options);
+            prepare(options, options.outWidth, options.outHeight, true, to, scaleDown, pool);
+            Bitmap result;
+            if (options.inBitmap == null) {
+                result = BitmapFactory.decodeByteArray(data, 0, length[0], options);
+            } else {
+                try {
+                    result = BitmapFactory.decodeByteArray(data, 0, length[0], options);
+                } catch (IllegalArgumentException e) {
+                    // the pooled bitmap can not be reused for this image, decode into a new one.
+                    LogUtils.e(e);
+                    options.inBitmap = null;
+                    result = BitmapFactory.decodeByteArray(data, 0, length[0], options);
+                }
+            }
+            return restoreDensity(result, options);
         } finally {
-            close(bis);
-            close(resettable);
+            ByteArrayPool.shared().put(data);
         }
     }
 
-    private static int calculateInSampleSize(BitmapFactory.Options bo, Task.Options to, boolean scaleDown) {
-        int inSampleSize = 1;
-        final int reqWidth = to.targetWidth(), reqHeight = to.targetHeight();
-        final int width = bo.outWidth, height = bo.outHeight;
-        if (width > reqWidth || height > reqHeight) {
-            int widthRatio = (int) Math.floor((float) width / (float) reqWidth);
-            int heightRatio = (int) Math.floor((float) height / (float) reqHeight);
-            inSampleSize = scaleDown ? Math.max(widthRatio, heightRatio) : Math.min(widthRatio, heightRatio);
+    private static Bitmap decodeFileDescriptor(FileInputStream file, Task.Options to, boolean scaleDown, BitmapPool pool) throws IOException {
+        FileDescriptor fd = file.getFD();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = to.config();
+        int width, height;
+        boolean roundUp = true;
+        ImageHeader header = readHeader(file.getChannel());
+        if (header != null) {
+            Rect region = isRegionSupported(header.format) ? DecodePlan.visibleRegion(header.width, header.height, to) : null;
+            if (region != null) {
+                Bitmap result = decodeRegion(fd, region, to, pool);
+                if (result != null) {
+                    return result;
+                }
+                // the region decoder shares the offset of the descriptor.
+                file.getChannel().position(0L);
+            }
+            width = header.width;
+            height = header.height;
+            roundUp = header.format == ImageHeader.Format.JPEG;
+        } else {
+            // unknown to the header, such as HEIF, by the bounds of the decoder then.
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFileDescriptor(fd, null, options);
+            options.inJustDecodeBounds = false;
+            width = options.outWidth;
+            height = options.outHeight;
+        }
+        prepare(options, width, height, roundUp, to, scaleDown, pool);
+        Bitmap result;
+        if (options.inBitmap == null) {
+            result = BitmapFactory.decodeFileDescriptor(fd, null, options);
+        } else {
+            try {
+                result = BitmapFactory.decodeFileDescriptor(fd, null, options);
+            } catch (IllegalArgumentException e) {
+                // the pooled bitmap can not be reused for this image, decode into a new one.
+                LogUtils.e(e);
+                options.inBitmap = null;
+                result = BitmapFactory.decodeFileDescriptor(fd, null, options);
+            }
+        }
+        return restoreDensity(result, options);
+    }
+
+    private static boolean isRegionSupported(ImageHeader.Format format) {
+        return format == ImageHeader.Format.JPEG || format == ImageHeader.Format.PNG;
+    }
+
+    /**
+     * Decodes only the part of the image shown by center crop, sampled down to at least the
+     * target size, so the pixels cropped away are never decoded. The region is sampled into
+     * a pooled bitmap of exactly its sampled size, since the region decoder draws into
+     * {@link BitmapFactory.Options#inBitmap} without resizing it, then it is drawn into another
+     * pooled bitmap of the target size and goes back to the pool, or is recycled if not accepted.
+     *
+     * @return null if the region decoder does not support the image, such as a progressive JPEG.
+     */
+    @Nullable
+    private static Bitmap decodeRegion(FileDescriptor fd, Rect region, Task.Options to, BitmapPool pool) {
+        BitmapRegionDecoder decoder;
+        try {
+            // shareable, since it is recycled before the descriptor is closed.
+            decoder = BitmapRegionDecoder.newInstance(fd, true);
+        } catch (IOException e) {
+            LogUtils.e(e);
+            return null;
+        }
+        Bitmap.Config config = to.config();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        Bitmap decoded;
+        try {
+            options.inPreferredConfig = config;
+            options.inMutable = true;
+            int sampleSize = DecodePlan.regionSampleSize(region.width(), region.height(), to);
+            options.inSampleSize = sampleSize;
+            // rounded down, a row which the decoder rounds up is clipped instead of left dirty.
+            options.inBitmap = pool.getDirty(region.width() / sampleSize, region.height() / sampleSize, config);
+            try {
+                decoded = decoder.decodeRegion(region, options);
+            } catch (IllegalArgumentException e) {
+                if (options.inBitmap == null) {
+                    throw e;
+                }
+                // the pooled bitmap can not be reused for this image, decode into a new one.
+                LogUtils.e(e);
+                pool.put(options.inBitmap);
+                options.inBitmap = null;
+                decoded = decoder.decodeRegion(region, options);
+            }
+        } catch (IllegalArgumentException e) {
+            LogUtils.e(e);
+            decoded = null;
+        } finally {
+            decoder.recycle();
+        }
+        if (decoded == null && options.inBitmap != null) {
+            pool.put(options.inBitmap);
+        }
+        int targetWidth = to.targetWidth(), targetHeight = to.targetHeight();
+        if (decoded == null || (decoded.getWidth() == targetWidth && decoded.getHeight() == targetHeight)) {
+            return decoded;
+        }
+        Bitmap result = pool.get(targetWidth, targetHeight, decoded.getConfig() != null ? decoded.getConfig() : config);
+        Canvas canvas = new Canvas(result);
+        canvas.drawBitmap(decoded, null, new Rect(0, 0, targetWidth, targetHeight), new Paint(Paint.FILTER_BITMAP_FLAG));
+        if (!pool.put(decoded)) {
+            decoded.recycle();
+        }
+        return result;
+    }
+
+    /**
+     * Probes the header by positional reads into a pooled buffer, which leave the position of
+     * the channel unchanged.
+     */
+    private static ImageHeader readHeader(FileChannel channel) throws IOException {
+        ByteArrayPool bytes = ByteArrayPool.shared();
+        byte[] buffer = bytes.get(ByteArrayPool.BUFFER_SIZE);
+        try {
+            return ImageHeader.read(channel, buffer);
+        } finally {
+            bytes.put(buffer);
+        }
+    }
+
+    /**
+     * Decodes into {@link BitmapFactory.Options#inBitmap} if any, or into a new bitmap if it can
+     * not be reused, which needs the stream to be reset.
+     *
+     * @param markLimit the bytes which can be read before the reset, the decoder usually gives up
+     *                  on the pooled bitmap after reading the header only.
+     * @return null if the stream can not be reset, since the decoder has read past the limit,
+     * the image must be decoded again from its source then.
+     */
+    @Nullable
+    private static Bitmap decodeWithInBitmap(BufferedInputStream bis, BitmapFactory.Options options, int markLimit) {
+        if (options.inBitmap == null) {
+            return BitmapFactory.decodeStream(bis, null, options);
+        }
+        bis.mark(markLimit);
+        try {
+            return BitmapFactory.decodeStream(bis, null, options);
+        } catch (IllegalArgumentException e) {
+            // the pooled bitmap can not be reused for this image, decode into a new one.
+            LogUtils.e(e);
+            options.inBitmap = null;
+            return tryReset(bis) ? BitmapFactory.decodeStream(bis, null, options) : null;
+        }
+    }
+
+    /**
+     * @return false if the mark has been invalidated by reading past its limit, the position of
+     * the stream is unknown then.
+     */
+    private static boolean tryReset(BufferedInputStream bis) {
+        try {
+            bis.reset();
+            return true;
+        } catch (IOException e) {
+            LogUtils.e(e);
+            return false;
+        }
+    }
+
+    /**
+     * Sets the sample size and density scaling of the plan by the size of the image, and a bitmap
+     * from the pool that is large enough to hold the decoded image.
+     *
+     * @param roundUp true if the decoder rounds the sampled size up, see {@link DecodePlan}.
+     */
+    private static void prepare(BitmapFactory.Options options, int width, int height, boolean roundUp,
+                                Task.Options to, boolean scaleDown, BitmapPool pool) {
+        DecodePlan plan = DecodePlan.create(width, height, roundUp, to, scaleDown);
+        plan.apply(options);
+        options.inMutable = true;
+        options.inBitmap = plan.decodedWidth > 0 && plan.decodedHeight > 0
+                ? pool.getDirty(plan.decodedWidth, plan.decodedHeight, options.inPreferredConfig) : null;
+    }
+
+    /**
+     * A bitmap scaled by density has the target density of the decoding, which would change its
+     * size drawn by {@link android.graphics.drawable.BitmapDrawable}, so it is given back the
+     * density of the device as any other decoded bitmap.
+     */
+    private static Bitmap restoreDensity(Bitmap bitmap, BitmapFactory.Options options) {
+        if (bitmap != null && options.inDensity != 0) {
+            bitmap.setDensity(Resources.getSystem().getDisplayMetrics().densityDpi);
         }
-        return inSampleSize;
+        return bitmap;
     }
 
     static String createKey(Creator creator) {
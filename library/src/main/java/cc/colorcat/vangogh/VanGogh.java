@@ -32,16 +32,12 @@ import android.support.annotation.Nullable;
 import android.text.TextUtils;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.WeakHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Author: cxx
@@ -58,16 +54,23 @@ public class VanGogh {
 
     private final Map<Object, Action> targetUniqueToAction;
     final Dispatcher dispatcher;
+    private final FrameDeliverer deliverer;
     final List<Interceptor> interceptors;
 
     final Context context;
+    final ActiveResources activeResources;
     private final Cache<Bitmap> memoryCache;
+    final BitmapPool bitmapPool;
+    final MemoryTrimmer memoryTrimmer;
 
     final Downloader downloader;
+    final NetworkLimiter networkLimiter;
     final int connectTimeOut;
     final int readTimeOut;
     final int fromPolicy;
+    final boolean storeResult;
     final int maxTry;
+    final int batchWindow;
 
     final List<Transformation> transformations;
     final Drawable placeholder;
@@ -76,14 +79,20 @@ public class VanGogh {
     final boolean indicatorEnabled;
     final boolean fade;
 
-    private VanGogh(Builder builder, Cache<Bitmap> memoryCache, DiskCache diskCache) {
+    private VanGogh(Builder builder, Cache<Bitmap> memoryCache, BitmapPool bitmapPool, LazyDiskCache diskCache) {
         this.context = builder.context;
         this.memoryCache = memoryCache;
+        this.bitmapPool = bitmapPool;
+        this.activeResources = new ActiveResources(bitmapPool);
+        this.memoryTrimmer = new MemoryTrimmer(activeResources, memoryCache, bitmapPool);
         this.downloader = builder.downloader;
+        this.networkLimiter = new NetworkLimiter(builder.maxRequests, builder.maxRequestsPerHost);
         this.connectTimeOut = builder.connectTimeOut;
         this.readTimeOut = builder.readTimeOut;
         this.fromPolicy = builder.fromPolicy;
+        this.storeResult = builder.storeResult;
         this.maxTry = builder.maxTry;
+        this.batchWindow = builder.batchWindow;
         this.transformations = Utils.immutableList(builder.transformations);
         this.placeholder = builder.placeholder;
         this.error = builder.error;
@@ -91,24 +100,35 @@ public class VanGogh {
         this.indicatorEnabled = builder.indicatorEnabled;
         this.fade = builder.fade;
         this.targetUniqueToAction = new WeakHashMap<>();
-        this.dispatcher = new Dispatcher(this, builder.executor, new MainHandler(this));
-        List<Interceptor> allInterceptors = new ArrayList<>(builder.interceptors.size() + 7);
+        Handler mainHandler = new MainHandler(this);
+        this.deliverer = new FrameDeliverer(this, mainHandler);
+        this.dispatcher = new Dispatcher(this, builder.executor, builder.networkExecutor,
+                builder.decodeExecutor, mainHandler);
+        List<Interceptor> allInterceptors = new ArrayList<>(builder.interceptors.size() + 8);
         allInterceptors.addAll(builder.interceptors);
-        allInterceptors.add(new KeyMemoryCacheInterceptor(this.memoryCache));
-        allInterceptors.add(new TransformInterceptor());
+        allInterceptors.add(new KeyMemoryCacheInterceptor(this.activeResources, this.memoryCache));
+        allInterceptors.add(new ResultDiskCacheInterceptor(diskCache, this.bitmapPool));
+        allInterceptors.add(new TransformInterceptor(this.bitmapPool));
         allInterceptors.add(new StableKeyMemoryCacheInterceptor(this.memoryCache));
-        allInterceptors.add(new StreamInterceptor());
+        allInterceptors.add(new StreamInterceptor(this.bitmapPool));
         allInterceptors.add(new ContentInterceptor(this.context));
-        if (diskCache != null) {
-            allInterceptors.add(new DiskCacheInterceptor(diskCache));
-        }
-        allInterceptors.add(new NetworkInterceptor());
+        allInterceptors.add(new DiskCacheInterceptor(diskCache, this.bitmapPool, builder.streamToDiskCache));
+        allInterceptors.add(new NetworkInterceptor(this.networkLimiter));
         this.interceptors = Utils.immutableList(allInterceptors);
     }
 
+    /**
+     * Returns the bitmap from the active resources or the memory cache.
+     * NOTE: The returned bitmap has been acquired from the {@link BitmapPool},
+     * the caller must release it.
+     */
     @Nullable
     Bitmap obtainFromMemoryCache(String key) {
-        return memoryCache.get(key);
+        Bitmap bitmap = activeResources.get(key);
+        if (bitmap == null) {
+            bitmap = memoryCache.get(key);
+        }
+        return bitmap;
     }
 
     void cancelExistingAction(Object targetUnique) {
@@ -142,6 +162,7 @@ public class VanGogh {
                 deliverAction(result, from, cause, actions.get(i));
             }
         }
+        bitmapPool.release(call.bitmap);
     }
 
     void resumeAction(Action action) {
@@ -151,6 +172,7 @@ public class VanGogh {
         }
         if (bitmap != null) {
             deliverAction(bitmap, From.MEMORY, null, action);
+            bitmapPool.release(bitmap);
         } else {
             enqueueAndSubmit(action);
         }
@@ -248,9 +270,64 @@ public class VanGogh {
      * Clear all cached bitmaps from the memory.
      */
     public void clearMemoryCache() {
+        activeResources.clear();
         memoryCache.clear();
     }
 
+    /**
+     * @return the current maximum size of the memory cache in bytes, it may be less than
+     * the configured one under memory pressure.
+     */
+    public long memoryCacheBudget() {
+        return memoryCache.maxSize();
+    }
+
+    /**
+     * @return the current maximum size of the bitmap pool in bytes, it may be less than
+     * the configured one under memory pressure.
+     */
+    public long bitmapPoolBudget() {
+        return bitmapPool.maxSize();
+    }
+
+    /**
+     * Returns a snapshot of the memory cache statistics.
+     */
+    public CacheStats memoryCacheStats() {
+        return new CacheStats(activeResources, memoryCache);
+    }
+
+    /**
+     * Returns a snapshot of the network admission of the hosts which have been requested,
+     * including the time the calls waited for a slot.
+     */
+    public List<HostStats> hostStats() {
+        return networkLimiter.stats();
+    }
+
+    /**
+     * Returns a snapshot of the queue depth and latency of each stage, the cache, the network and
+     * the decode, empty if an executor has been set by {@link Builder#executor(ExecutorService)}.
+     */
+    public List<StageStats> stageStats() {
+        return dispatcher.stageStats();
+    }
+
+    /**
+     * Returns a snapshot of the deliveries of results to the main thread, including the latency
+     * from the end of the calls, see {@link Builder#batchWindow(int)}.
+     */
+    public DeliveryStats deliveryStats() {
+        return deliverer.stats();
+    }
+
+    /**
+     * Clear all bitmaps which are waiting for reuse.
+     */
+    public void clearBitmapPool() {
+        bitmapPool.clear();
+    }
+
     /**
      * Set the global instance.
      * NOTE: This method must be called before calls to {@link #with}.
@@ -311,9 +388,7 @@ public class VanGogh {
                 case VanGogh.CALL_BATCH_COMPLETE: {
                     @SuppressWarnings("unchecked")
                     List<Call> calls = (List<Call>) msg.obj;
-                    for (int i = 0, size = calls.size(); i < size; ++i) {
-                        vanGogh.complete(calls.get(i));
-                    }
+                    vanGogh.deliverer.enqueue(calls);
                     break;
                 }
                 case VanGogh.ACTION_BATCH_RESUME: {
@@ -334,19 +409,31 @@ public class VanGogh {
 
     public static class Builder {
         private ExecutorService executor;
+        private ExecutorService networkExecutor;
+        private ExecutorService decodeExecutor;
+        private int networkThreads;
+        private boolean lifo;
 
         private Context context;
 
         private List<Interceptor> interceptors;
         private Downloader downloader;
+        private int maxRequests;
+        private int maxRequestsPerHost;
         private int connectTimeOut;
         private int readTimeOut;
         private int fromPolicy;
+        private boolean storeResult;
         private int maxTry;
+        private int batchWindow;
 
         private long memoryCacheSize;
+        private int memoryCacheConcurrencyLevel;
+        private boolean tinyLfu;
+        private long bitmapPoolSize;
         private File cacheDirectory;
         private long diskCacheSize;
+        private boolean streamToDiskCache;
 
         private List<Transformation> transformations;
         private Drawable placeholder;
@@ -357,15 +444,27 @@ public class VanGogh {
 
         public Builder(Context ctx) {
             context = ctx.getApplicationContext();
+            networkThreads = 4;
+            lifo = false;
             interceptors = new ArrayList<>(4);
             downloader = new HttpDownloader();
+            maxRequests = 64;
+            // less than the network threads of the default executors, leaves room for other hosts.
+            maxRequestsPerHost = 3;
             connectTimeOut = 5000;
             readTimeOut = 5000;
             fromPolicy = From.ANY.policy;
+            storeResult = false;
             maxTry = 1;
+            batchWindow = 0;
             memoryCacheSize = Utils.calculateMemoryCacheSize(ctx);
-            cacheDirectory = Utils.getCacheDirectory(ctx);
-            diskCacheSize = (long) Math.min(50 * 1024 * 1024, cacheDirectory.getUsableSpace() * 0.1);
+            memoryCacheConcurrencyLevel = 1;
+            tinyLfu = false;
+            bitmapPoolSize = memoryCacheSize / 2;
+            // the default directory and size of disk cache are resolved by LazyDiskCache.
+            cacheDirectory = null;
+            diskCacheSize = 0L;
+            streamToDiskCache = false;
             transformations = new ArrayList<>(4);
             options = new Task.Options();
             indicatorEnabled = false;
@@ -373,13 +472,44 @@ public class VanGogh {
         }
 
         /**
-         * @param executor The executor service for placeholder images in the background.
+         * By default the calls run in three stages with their own threads: the caches, the network
+         * and the decoding of downloaded images, so a cache hit never waits behind downloads.
+         *
+         * @param executor The executor service for placeholder images in the background, which
+         *                 runs all the stages of the calls.
+         *                 {@link Priority} and {@link #lifo(boolean)} apply to the default one only.
+         * @see VanGogh#stageStats()
          */
         public Builder executor(ExecutorService executor) {
             if (executor == null) {
                 throw new NullPointerException("executor == null");
             }
             this.executor = executor;
+            this.networkExecutor = null;
+            this.decodeExecutor = null;
+            return this;
+        }
+
+        /**
+         * @param threadCount The number of threads of the network stage of the default executors,
+         *                    which block on I/O. Default is 4.
+         * @throws IllegalArgumentException if threadCount is less than 1
+         */
+        public Builder networkThreads(int threadCount) {
+            if (threadCount < 1) {
+                throw new IllegalArgumentException("threadCount < 1");
+            }
+            this.networkThreads = threadCount;
+            return this;
+        }
+
+        /**
+         * @param lifo Whether the requests of the same {@link Priority} run last-in-first-out
+         *             in the default executor, so in a scrolling list the rows just shown run
+         *             before the ones which have left. Default is false.
+         */
+        public Builder lifo(boolean lifo) {
+            this.lifo = lifo;
             return this;
         }
 
@@ -406,6 +536,77 @@ public class VanGogh {
             return this;
         }
 
+        /**
+         * Downloads with the connections of the pool instead of {@link java.net.HttpURLConnection},
+         * the pool can be shared by several {@link VanGogh} and exposes metrics of reuse.
+         * This replaces the {@link Downloader} set before.
+         *
+         * @throws NullPointerException if pool is null
+         * @see ConnectionPool
+         */
+        public Builder connectionPool(ConnectionPool pool) {
+            if (pool == null) {
+                throw new NullPointerException("pool == null");
+            }
+            this.downloader = new PooledHttpDownloader(pool);
+            return this;
+        }
+
+        /**
+         * Fetches http images on a single selector thread instead of the worker threads,
+         * which are then used only for the caches and decoding. Others such as https are
+         * still downloaded on the worker threads.
+         * This replaces the {@link Downloader} set before.
+         * A response body is buffered in memory, so one larger than 16 MB fails,
+         * see {@link #nonBlockingDownloader(long)}.
+         *
+         * @see NioDownloader
+         */
+        public Builder nonBlockingDownloader() {
+            this.downloader = new NioDownloader(new SelectorLoop());
+            return this;
+        }
+
+        /**
+         * The same as {@link #nonBlockingDownloader()} but a response body larger than
+         * maxBodySize fails with an {@link java.io.IOException}.
+         *
+         * @param maxBodySize The maximum size in bytes of a response body.
+         * @throws IllegalArgumentException if maxBodySize is less than 1
+         */
+        public Builder nonBlockingDownloader(long maxBodySize) {
+            this.downloader = new NioDownloader(new SelectorLoop(maxBodySize));
+            return this;
+        }
+
+        /**
+         * @param maxRequests The maximum number of calls on the network at the same time,
+         *                    the others wait without taking a thread. Default is 64.
+         * @throws IllegalArgumentException if maxRequests is less than 1
+         */
+        public Builder maxRequests(int maxRequests) {
+            if (maxRequests < 1) {
+                throw new IllegalArgumentException("maxRequests < 1");
+            }
+            this.maxRequests = maxRequests;
+            return this;
+        }
+
+        /**
+         * @param maxRequestsPerHost The maximum number of calls on the network to a host at the
+         *                           same time, so a slow host can not take all the threads.
+         *                           Cache hits are never limited. Default is 3.
+         * @throws IllegalArgumentException if maxRequestsPerHost is less than 1
+         * @see VanGogh#hostStats()
+         */
+        public Builder maxRequestsPerHost(int maxRequestsPerHost) {
+            if (maxRequestsPerHost < 1) {
+                throw new IllegalArgumentException("maxRequestsPerHost < 1");
+            }
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+
         public Builder connectTimeOut(int timeOut) {
             if (timeOut < 0) {
                 throw new IllegalArgumentException("timeOut < 0");
@@ -437,6 +638,14 @@ public class VanGogh {
             return this;
         }
 
+        /**
+         * @param storeResult The default value of {@link Creator#storeResult(boolean)}.
+         */
+        public Builder storeResult(boolean storeResult) {
+            this.storeResult = storeResult;
+            return this;
+        }
+
         /**
          * @param maxTry The maximum number of retries.
          * @throws IllegalArgumentException if the maxTry <= 0.
@@ -449,6 +658,21 @@ public class VanGogh {
             return this;
         }
 
+        /**
+         * @param millis How long the results are gathered before they are handed over to the main
+         *               thread, where they are delivered at the start of the next frames within
+         *               a time budget per frame. Default is 0, every result shows on the next frame.
+         * @throws IllegalArgumentException if millis is less than 0
+         * @see VanGogh#deliveryStats()
+         */
+        public Builder batchWindow(int millis) {
+            if (millis < 0) {
+                throw new IllegalArgumentException("millis < 0");
+            }
+            this.batchWindow = millis;
+            return this;
+        }
+
         public Builder memoryCacheSize(long sizeInByte) {
             if (sizeInByte <= 0L) {
                 throw new IllegalArgumentException("sizeInByte <= 0");
@@ -457,6 +681,44 @@ public class VanGogh {
             return this;
         }
 
+        /**
+         * @param level The number of independently locked segments of the memory cache,
+         *              which share the budget of {@link #memoryCacheSize(long)}.
+         *              If it is greater than 1, lookups from the main thread will not wait for
+         *              the worker threads which are saving or evicting other segments.
+         * @throws IllegalArgumentException if the level <= 0.
+         */
+        public Builder memoryCacheConcurrencyLevel(int level) {
+            if (level <= 0) {
+                throw new IllegalArgumentException("level <= 0");
+            }
+            this.memoryCacheConcurrencyLevel = level;
+            return this;
+        }
+
+        /**
+         * @param enabled If true the memory cache uses the frequency-aware W-TinyLFU policy
+         *                instead of LRU, so that frequently used images are not flushed by
+         *                one-off large ones. It takes precedence over
+         *                {@link #memoryCacheConcurrencyLevel(int)}.
+         */
+        public Builder tinyLfu(boolean enabled) {
+            this.tinyLfu = enabled;
+            return this;
+        }
+
+        /**
+         * @param sizeInByte The maximum size of the {@link BitmapPool}, 0 to disable reusing bitmaps.
+         * @throws IllegalArgumentException if the sizeInByte < 0.
+         */
+        public Builder bitmapPoolSize(long sizeInByte) {
+            if (sizeInByte < 0L) {
+                throw new IllegalArgumentException("sizeInByte < 0");
+            }
+            this.bitmapPoolSize = sizeInByte;
+            return this;
+        }
+
         public Builder diskCache(File directory) {
             if (directory == null) {
                 throw new NullPointerException("directory == null");
@@ -473,6 +735,19 @@ public class VanGogh {
             return this;
         }
 
+        /**
+         * @param enabled true to decode the network stream while it is being written into the
+         *                disk cache, false (default) to write it completely and then decode the
+         *                cached file.
+         *                NOTE: With the default executors the former decodes on the threads of
+         *                the network stage, which then take longer to free up for downloads, but
+         *                an image is shown sooner since its decoding overlaps its download.
+         */
+        public Builder streamToDiskCache(boolean enabled) {
+            this.streamToDiskCache = enabled;
+            return this;
+        }
+
         public Builder addTransformation(Transformation transformation) {
             if (transformation == null) {
                 throw new NullPointerException("transformation == null");
@@ -547,23 +822,27 @@ public class VanGogh {
         }
 
         public VanGogh build() {
-            DiskCache diskCache = null;
-            try {
-                diskCache = DiskCache.open(cacheDirectory, diskCacheSize);
-            } catch (IOException e) {
-                LogUtils.e(e);
-            }
+            LazyDiskCache diskCache = new LazyDiskCache(context, cacheDirectory, diskCacheSize);
+            diskCache.openAsync();
             if (executor == null) {
-                executor = new ThreadPoolExecutor(
-                        4,
-                        5,
-                        10L,
-                        TimeUnit.SECONDS,
-                        new LinkedBlockingDeque<Runnable>(),
-                        new ThreadPoolExecutor.DiscardOldestPolicy()
-                );
+                // The disk hits are short, decoding is bound by the cores and memory.
+                int decodeThreads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+                executor = new CallExecutor("cache", 2, lifo);
+                networkExecutor = new CallExecutor("network", networkThreads, lifo);
+                decodeExecutor = new CallExecutor("decode", decodeThreads, lifo);
+            }
+            BitmapPool bitmapPool = new BitmapPool(bitmapPoolSize);
+            Cache<Bitmap> memoryCache;
+            if (tinyLfu) {
+                memoryCache = new TinyLfuMemoryCache(memoryCacheSize, bitmapPool);
+            } else if (memoryCacheConcurrencyLevel > 1) {
+                memoryCache = new SegmentedMemoryCache(memoryCacheSize, memoryCacheConcurrencyLevel, bitmapPool);
+            } else {
+                memoryCache = new MemoryCache((int) memoryCacheSize, bitmapPool);
             }
-            return new VanGogh(this, new MemoryCache((int) memoryCacheSize), diskCache);
+            VanGogh vanGogh = new VanGogh(this, memoryCache, bitmapPool, diskCache);
+            context.registerComponentCallbacks(vanGogh.memoryTrimmer);
+            return vanGogh;
         }
     }
 }
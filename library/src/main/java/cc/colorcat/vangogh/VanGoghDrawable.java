@@ -23,6 +23,7 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
 import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 
 /**
  * Author: cxx
@@ -36,6 +37,14 @@ public class VanGoghDrawable extends BitmapDrawable {
     private final boolean fade;
     private final boolean indicatorEnabled;
     private final float density;
+    private final BitmapPool pool;
+    private final Bitmap bitmap;
+    /**
+     * The number of the places which display the drawable, the bitmap goes back to the
+     * {@link BitmapPool} once it drops to 0.
+     */
+    private int displays = 0;
+    private boolean released = false;
 
     private int maxAlpha = 0xFF;
     private int alpha = 0; // [0, maxAlpha]
@@ -45,12 +54,62 @@ public class VanGoghDrawable extends BitmapDrawable {
         DEBUG_PAINT.setStyle(Paint.Style.FILL);
     }
 
-    VanGoghDrawable(Context context, Bitmap bitmap, From from, boolean fade, boolean indicatorEnabled) {
+    VanGoghDrawable(Context context, BitmapPool pool, Bitmap bitmap, From from, boolean fade, boolean indicatorEnabled) {
         super(context.getResources(), bitmap);
         this.from = from;
         this.fade = fade;
         this.indicatorEnabled = indicatorEnabled;
         this.density = context.getResources().getDisplayMetrics().density;
+        this.pool = pool;
+        this.bitmap = bitmap;
+        this.pool.acquire(bitmap);
+    }
+
+    /**
+     * Keeps the bitmap out of the {@link BitmapPool} until the matching {@link #release()}.
+     * The targets of VanGogh do it for themselves, an app which displays the drawable in
+     * another place too, or keeps it for later, must do it as well.
+     * NOTE: Must be called on the main thread.
+     *
+     * @return false if the bitmap has been given back already, the drawable must not be
+     * displayed any more then.
+     */
+    public boolean retain() {
+        if (released) {
+            return false;
+        }
+        ++displays;
+        return true;
+    }
+
+    /**
+     * Undoes a {@link #retain()}, the bitmap is given back to the {@link BitmapPool} once
+     * no place displays the drawable any more.
+     * NOTE: Must be called on the main thread.
+     */
+    public void release() {
+        if (!released && --displays <= 0) {
+            released = true;
+            pool.release(bitmap);
+        }
+    }
+
+    /**
+     * Tells the drawable that it is displayed by a target.
+     */
+    static void retain(Drawable drawable) {
+        if (drawable instanceof VanGoghDrawable) {
+            ((VanGoghDrawable) drawable).retain();
+        }
+    }
+
+    /**
+     * Tells the drawable that a target no longer displays it.
+     */
+    static void release(Drawable drawable) {
+        if (drawable instanceof VanGoghDrawable) {
+            ((VanGoghDrawable) drawable).release();
+        }
     }
 
     @Override
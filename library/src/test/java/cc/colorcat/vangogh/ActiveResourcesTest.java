@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.graphics.Bitmap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class ActiveResourcesTest {
+    private BitmapPool pool;
+    private ActiveResources activeResources;
+
+    @Before
+    public void setUp() {
+        pool = new BitmapPool(1024 * 1024, true);
+        activeResources = new ActiveResources(pool);
+    }
+
+    @Test
+    public void hitWhileInUse() {
+        Bitmap bitmap = TestBitmaps.create(16, 16);
+        pool.acquire(bitmap);
+        activeResources.activate("a", bitmap);
+
+        assertSame(bitmap, activeResources.get("a"));
+        pool.release(bitmap);
+        pool.release(bitmap);
+    }
+
+    @Test
+    public void missAfterPooled() {
+        Bitmap bitmap = TestBitmaps.create(16, 16);
+        pool.acquire(bitmap);
+        activeResources.activate("a", bitmap);
+        pool.release(bitmap);
+
+        assertNull(activeResources.get("a"));
+    }
+
+    @Test
+    public void missAfterReusedForAnotherKey() {
+        Bitmap bitmap = TestBitmaps.create(16, 16);
+        pool.acquire(bitmap);
+        activeResources.activate("a", bitmap);
+        pool.release(bitmap);
+
+        // decoded for another key into the pooled bitmap, so it is in use again.
+        Bitmap reused = pool.getDirty(16, 16, Bitmap.Config.ARGB_8888);
+        assertSame(bitmap, reused);
+        pool.acquire(reused);
+
+        assertNull(activeResources.get("a"));
+        activeResources.activate("b", reused);
+        assertSame(reused, activeResources.get("b"));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class ByteArrayPoolTest {
+
+    @Test
+    public void newArrayOfTheLengthWhenEmpty() {
+        ByteArrayPool pool = new ByteArrayPool(1024);
+        assertEquals(100, pool.get(100).length);
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void lendsTheShortestWhichIsLongEnough() {
+        ByteArrayPool pool = new ByteArrayPool(1024);
+        byte[] small = new byte[100], middle = new byte[200], large = new byte[300];
+        pool.put(large);
+        pool.put(small);
+        pool.put(middle);
+        assertEquals(600, pool.size());
+
+        assertSame(middle, pool.get(150));
+        assertSame(small, pool.get(100));
+        assertEquals(300, pool.size());
+        // none long enough.
+        assertNotSame(large, pool.get(301));
+        assertSame(large, pool.get(1));
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void dropsTheLeastRecentlyReturned() {
+        ByteArrayPool pool = new ByteArrayPool(500);
+        byte[] first = new byte[200], second = new byte[200], third = new byte[200];
+        pool.put(first);
+        pool.put(second);
+        pool.put(third);
+        assertEquals(400, pool.size());
+
+        // the latest of the same length first.
+        assertSame(third, pool.get(200));
+        assertSame(second, pool.get(200));
+        assertNotSame(first, pool.get(200));
+    }
+
+    @Test
+    public void ignoresArraysLongerThanThePool() {
+        ByteArrayPool pool = new ByteArrayPool(100);
+        pool.put(new byte[101]);
+        pool.put(null);
+        assertEquals(0, pool.size());
+    }
+
+    @Test
+    public void sizeStaysWithinTheLimitUnderContention() throws InterruptedException {
+        final ByteArrayPool pool = new ByteArrayPool(64 * 1024);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; ++i) {
+            final int seed = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; ++j) {
+                        int length = 1024 * (1 + (seed + j) % 16);
+                        byte[] buffer = pool.get(length);
+                        if (buffer.length < length) {
+                            throw new AssertionError(buffer.length + " < " + length);
+                        }
+                        pool.put(buffer);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(pool.size() <= 64 * 1024);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxSizeMustBePositive() {
+        new ByteArrayPool(0);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class CacheHeadersTest {
+    private static final long NOW = 1792310400000L;
+
+    @Test
+    public void maxAgeMinusAge() {
+        CacheHeaders headers = parse("Cache-Control", "public, max-age=600", "Age", "100");
+        assertEquals(NOW + 500 * 1000L, headers.expiresAt);
+        assertTrue(headers.isFresh(NOW + 499 * 1000L));
+        assertFalse(headers.isFresh(NOW + 500 * 1000L));
+        assertFalse(headers.noStore);
+    }
+
+    @Test
+    public void noCacheIsStaleAtOnce() {
+        CacheHeaders headers = parse("Cache-Control", "no-cache, max-age=600", "ETag", "\"a\"");
+        assertEquals(NOW, headers.expiresAt);
+        assertFalse(headers.isFresh(NOW));
+        assertFalse(headers.noStore);
+        assertEquals("\"a\"", headers.validator());
+    }
+
+    @Test
+    public void noStore() {
+        CacheHeaders headers = parse("Cache-Control", "max-age=600, No-Store");
+        assertTrue(headers.noStore);
+        assertFalse(headers.isFresh(NOW));
+    }
+
+    @Test
+    public void expiresRelativeToDate() {
+        // the clock of the server is an hour ahead.
+        CacheHeaders headers = parse(
+                "Date", httpDate(NOW + 3600 * 1000L),
+                "Expires", httpDate(NOW + 3600 * 1000L + 60 * 1000L)
+        );
+        assertEquals(NOW + 60 * 1000L, headers.expiresAt);
+    }
+
+    @Test
+    public void invalidExpiresIsAlreadyExpired() {
+        for (String expires : new String[]{"0", "-1", "tomorrow"}) {
+            CacheHeaders headers = parse(
+                    "Expires", expires,
+                    "Last-Modified", httpDate(NOW - 1000 * 1000L)
+            );
+            assertEquals(NOW, headers.expiresAt);
+            assertFalse(headers.isFresh(NOW));
+        }
+    }
+
+    @Test
+    public void heuristicFromLastModified() {
+        CacheHeaders headers = parse(
+                "Date", httpDate(NOW),
+                "Last-Modified", httpDate(NOW - 1000 * 1000L)
+        );
+        assertEquals(NOW + 100 * 1000L, headers.expiresAt);
+    }
+
+    @Test
+    public void neverExpiresWithoutHeaders() {
+        CacheHeaders headers = parse();
+        assertEquals(CacheHeaders.NEVER_EXPIRES, headers.expiresAt);
+        assertNull(headers.validator());
+    }
+
+    @Test
+    public void weakETagIsNotAValidator() {
+        String lastModified = httpDate(NOW - 1000L);
+        CacheHeaders headers = parse("ETag", "W/\"a\"", "Last-Modified", lastModified);
+        assertEquals(lastModified, headers.validator());
+    }
+
+    @Test
+    public void refreshKeepsOmittedValidators() {
+        CacheHeaders cached = new CacheHeaders("\"a\"", "lm", NOW);
+        CacheHeaders refreshed = cached.refresh(new CacheHeaders(null, null, NOW + 1000L));
+        assertEquals("\"a\"", refreshed.etag);
+        assertEquals("lm", refreshed.lastModified);
+        assertEquals(NOW + 1000L, refreshed.expiresAt);
+    }
+
+    private static CacheHeaders parse(String... namesAndValues) {
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            headers.put(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return CacheHeaders.parse(headers, NOW);
+    }
+
+    private static String httpDate(long time) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(new Date(time));
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import org.junit.After;
+import org.junit.Test;
+import org.objenesis.ObjenesisStd;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the order in which the queued calls run: by {@link Priority}, then by the order of
+ * submission, and the move of a waiting call to its new priority.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class CallExecutorTest {
+    private final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private final AtomicInteger blockerRuns = new AtomicInteger();
+    private CallExecutor executor;
+    private Future<?> blocker;
+
+    @After
+    public void tearDown() {
+        gate.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void fifoWithinPriority() throws InterruptedException {
+        executor = newExecutor(false);
+        submit("n1", Priority.NORMAL);
+        submit("p1", Priority.PREFETCH);
+        submit("i1", Priority.IMMEDIATE);
+        submit("n2", Priority.NORMAL);
+        submit("p2", Priority.PREFETCH);
+        submit("i2", Priority.IMMEDIATE);
+        assertOrder("i1", "i2", "n1", "n2", "p1", "p2");
+    }
+
+    @Test
+    public void lifoWithinPriority() throws InterruptedException {
+        executor = newExecutor(true);
+        submit("n1", Priority.NORMAL);
+        submit("p1", Priority.PREFETCH);
+        submit("i1", Priority.IMMEDIATE);
+        submit("n2", Priority.NORMAL);
+        submit("p2", Priority.PREFETCH);
+        submit("i2", Priority.IMMEDIATE);
+        assertOrder("i2", "i1", "n2", "n1", "p2", "p1");
+    }
+
+    @Test
+    public void plainRunnableIsNormal() throws InterruptedException {
+        executor = newExecutor(false);
+        submit("p1", Priority.PREFETCH);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                order.add("r1");
+            }
+        });
+        submit("i1", Priority.IMMEDIATE);
+        assertOrder("i1", "r1", "p1");
+    }
+
+    @Test
+    public void reprioritizedCallKeepsItsSequence() throws InterruptedException {
+        executor = newExecutor(false);
+        Future<?> p1 = submit("p1", Priority.PREFETCH);
+        submit("n1", Priority.NORMAL);
+        Future<?> p2 = submit("p2", Priority.PREFETCH);
+        submit("n2", Priority.NORMAL);
+        // raised among the ones of its new priority by when it was submitted.
+        executor.reprioritize(p2, Priority.NORMAL);
+        executor.reprioritize(p1, Priority.IMMEDIATE);
+        assertOrder("p1", "n1", "p2", "n2");
+    }
+
+    @Test
+    public void reprioritizedCallKeepsItsSequenceWithLifo() throws InterruptedException {
+        executor = newExecutor(true);
+        Future<?> p1 = submit("p1", Priority.PREFETCH);
+        submit("n1", Priority.NORMAL);
+        submit("p2", Priority.PREFETCH);
+        executor.reprioritize(p1, Priority.NORMAL);
+        assertOrder("n1", "p1", "p2");
+    }
+
+    @Test
+    public void runningCallIsNotReprioritized() throws InterruptedException {
+        executor = newExecutor(false);
+        submit("n1", Priority.NORMAL);
+        executor.reprioritize(blocker, Priority.IMMEDIATE);
+        assertOrder("n1");
+        assertEquals(1, blockerRuns.get());
+    }
+
+    /**
+     * @return an executor of one thread, which is blocked until {@link #assertOrder(String...)}.
+     */
+    private CallExecutor newExecutor(boolean lifo) throws InterruptedException {
+        CallExecutor result = new CallExecutor("test", 1, lifo);
+        final CountDownLatch started = new CountDownLatch(1);
+        blocker = result.submit(new Runnable() {
+            @Override
+            public void run() {
+                blockerRuns.incrementAndGet();
+                started.countDown();
+                try {
+                    gate.await();
+                } catch (InterruptedException ignore) {
+                }
+            }
+        });
+        assertTrue(started.await(5L, TimeUnit.SECONDS));
+        return result;
+    }
+
+    private Future<?> submit(String name, Priority priority) {
+        return executor.submit(newCall(name, priority));
+    }
+
+    private void assertOrder(String... expected) throws InterruptedException {
+        gate.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5L, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(expected), order);
+    }
+
+    private Call newCall(String name, Priority priority) {
+        Named call = new ObjenesisStd().newInstance(Named.class);
+        call.name = name;
+        call.order = order;
+        try {
+            Field field = Call.class.getDeclaredField("priority");
+            field.setAccessible(true);
+            field.set(call, priority);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+        return call;
+    }
+
+    /**
+     * A call which only records its run, created by Objenesis without a {@link VanGogh}.
+     */
+    private static final class Named extends Call {
+        private String name;
+        private List<String> order;
+
+        private Named() {
+            // Never called.
+            super(null, null);
+        }
+
+        @Override
+        public void run() {
+            order.add(name);
+        }
+    }
+}
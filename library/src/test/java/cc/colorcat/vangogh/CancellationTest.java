@@ -0,0 +1,224 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objenesis.ObjenesisStd;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks that a canceled call stops its download, and that its failure is taken for neither
+ * a network failure to retry nor one to fall back to a stale image.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class CancellationTest {
+    private static final int SENT = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TestServer server;
+    private Dispatcher dispatcher;
+    private Task task;
+    private Call call;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new TestServer();
+        dispatcher = mock(Dispatcher.class);
+        task = TestTasks.create("http://example.com/a.png", "a");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Stage.exit();
+        server.close();
+    }
+
+    @Test(timeout = 10000)
+    public void abortFailsTheBodyInProgress() throws Exception {
+        // half of the body is sent, then the connection stays open.
+        server.enqueue(new TestServer.Response(200).header("Content-Length", "2000").body(new byte[SENT]));
+        NioDownloader downloader = new NioDownloader(new SelectorLoop());
+        Task img = TestTasks.create(server.url("/img"));
+        try {
+            downloader.load(img);
+            fail("the body is incomplete");
+        } catch (Deferred expected) {
+            // the fetch is in progress.
+        }
+        Thread.sleep(200L);
+
+        long start = System.currentTimeMillis();
+        downloader.abort();
+        while (true) {
+            try {
+                downloader.load(img);
+                fail("the body is incomplete");
+            } catch (Deferred e) {
+                Thread.sleep(5L);
+            } catch (InterruptedIOException expected) {
+                // neither a timeout nor a network failure.
+                assertFalse(expected instanceof SocketTimeoutException);
+                break;
+            }
+        }
+        assertTrue(System.currentTimeMillis() - start < img.readTimeOut());
+    }
+
+    @Test(expected = InterruptedIOException.class)
+    public void abortBeforeConnectingFailsTheLoad() throws IOException {
+        server.enqueue(new TestServer.Response(200).body(new byte[SENT]));
+        HttpDownloader downloader = new HttpDownloader();
+        downloader.abort();
+        downloader.load(TestTasks.create(server.url("/img")));
+    }
+
+    @Test
+    public void failureIsRetried() {
+        newCall(failWith(new IOException("connection reset"), false)).run();
+        verify(dispatcher).dispatchRetry(call);
+        verify(dispatcher, never()).dispatchFailed(call);
+    }
+
+    @Test
+    public void canceledCallIsNotRetried() {
+        newCall(failWith(new IOException("connection reset"), true)).run();
+        assertTrue(call.isCanceled());
+        verify(dispatcher).dispatchFailed(call);
+        verify(dispatcher, never()).dispatchRetry(call);
+    }
+
+    @Test
+    public void failureFallsBackToStaleImage() throws IOException {
+        DiskCache.Snapshot stale = runWithStaleEntry(false);
+        // the stale file has been decoded, which fails with the android.jar of local unit tests.
+        assertFalse(stale.isReadable());
+    }
+
+    @Test
+    public void canceledCallDoesNotFallBackToStaleImage() throws IOException {
+        DiskCache.Snapshot stale = runWithStaleEntry(true);
+        assertTrue(stale.isReadable());
+    }
+
+    /**
+     * Runs the disk cache interceptor of a call whose entry is stale, the revalidation fails.
+     *
+     * @return the stale entry.
+     */
+    private DiskCache.Snapshot runWithStaleEntry(boolean cancel) throws IOException {
+        LazyDiskCache lazy = new LazyDiskCache(null, folder.getRoot(), 1024 * 1024);
+        lazy.openAsync();
+        DiskCache.Snapshot snapshot = lazy.get().getSnapshot(task.stableKey());
+        OutputStream os = snapshot.getOutputStream(0L, new CacheHeaders("\"a\"", null, 1L));
+        assertNotNull(os);
+        os.write(new byte[]{1, 2, 3});
+        os.close();
+        assertTrue(snapshot.isReadable());
+
+        List<Interceptor> interceptors = Arrays.asList(
+                new DiskCacheInterceptor(lazy, new BitmapPool(0L, false), false),
+                failWith(new IOException("connection reset"), cancel));
+        newCall(interceptors.get(1));
+        try {
+            new RealInterceptorChain(interceptors, 0, task, null, call).proceed(task);
+            fail("the failure has been swallowed");
+        } catch (IOException e) {
+            assertEquals("connection reset", e.getMessage());
+        }
+        return snapshot;
+    }
+
+    /**
+     * @param cancel true to cancel the call before failing, as the abort of its download does.
+     */
+    private Interceptor failWith(final IOException e, final boolean cancel) {
+        return new Interceptor() {
+            @Override
+            public Result intercept(Chain chain) throws IOException {
+                if (cancel) {
+                    assertTrue(call.tryCancel());
+                }
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * A call which may be retried once, the interceptor is the only one of its {@link VanGogh}.
+     */
+    private Call newCall(Interceptor interceptor) {
+        Downloader downloader = mock(Downloader.class);
+        when(downloader.clone()).thenReturn(downloader);
+        VanGogh vanGogh = new ObjenesisStd().newInstance(VanGogh.class);
+        set(VanGogh.class, vanGogh, "dispatcher", dispatcher);
+        set(VanGogh.class, vanGogh, "interceptors", new ArrayList<>(Arrays.asList(interceptor)));
+        set(VanGogh.class, vanGogh, "downloader", downloader);
+        set(VanGogh.class, vanGogh, "networkLimiter", new NetworkLimiter(4, 4));
+
+        call = new ObjenesisStd().newInstance(Call.class);
+        set(Call.class, call, "vanGogh", vanGogh);
+        set(Call.class, call, "count", 2);
+        set(Call.class, call, "actions", new ArrayList<Action>());
+        set(Call.class, call, "task", task);
+        call.future = new FutureTask<>(new Callable<Object>() {
+            @Override
+            public Object call() {
+                return null;
+            }
+        });
+        return call;
+    }
+
+    private static <T> void set(Class<T> clazz, T target, String name, Object value) {
+        try {
+            Field field = clazz.getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
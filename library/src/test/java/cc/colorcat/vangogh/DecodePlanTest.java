@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.graphics.BitmapFactory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class DecodePlanTest {
+
+    @Test
+    public void centerInsideIsSampledThenScaledByDensity() {
+        DecodePlan plan = DecodePlan.create(4000, 3000, true, resize(400, 400), false);
+        assertPlan(plan, 8, 500, 400, 400, 300);
+    }
+
+    @Test
+    public void exactSampleNeedsNoDensity() {
+        DecodePlan plan = DecodePlan.create(1600, 1200, true, resize(400, 300), false);
+        assertPlan(plan, 4, 0, 0, 400, 300);
+    }
+
+    @Test
+    public void fitXYOfTheSameAspectRatio() {
+        Task.Options to = resize(400, 300);
+        to.fitXY();
+        assertPlan(DecodePlan.create(4000, 3000, true, to, false), 8, 500, 400, 400, 300);
+    }
+
+    @Test
+    public void centerCropIsSampledOnly() {
+        Task.Options to = resize(400, 400);
+        to.centerCrop();
+        // the matrix crops and scales it after decoding.
+        assertPlan(DecodePlan.create(4000, 3000, true, to, false), 7, 0, 0, 1000, 750);
+    }
+
+    @Test
+    public void roundedDownByOtherFormats() {
+        DecodePlan plan = DecodePlan.create(1001, 1001, false, resize(100, 100), false);
+        assertPlan(plan, 8, 125, 100, 100, 100);
+    }
+
+    @Test
+    public void maxSizeIsSampledOnly() {
+        Task.Options to = new Task.Options();
+        to.maxSize(400, 400);
+        assertPlan(DecodePlan.create(4000, 3000, true, to, true), 10, 0, 0, 500, 375);
+    }
+
+    @Test
+    public void unknownBounds() {
+        assertPlan(DecodePlan.create(0, -1, true, resize(400, 400), false), 1, 0, 0, 0, -1);
+    }
+
+    @Test
+    public void smallImageIsScaledUpByDensity() {
+        DecodePlan plan = DecodePlan.create(100, 100, true, resize(400, 400), false);
+        assertPlan(plan, 1, 100, 400, 400, 400);
+    }
+
+    @Test
+    public void applyToOptions() {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        DecodePlan.create(4000, 3000, true, resize(400, 400), false).apply(options);
+        assertEquals(8, options.inSampleSize);
+        assertTrue(options.inScaled);
+        assertEquals(500, options.inDensity);
+        assertEquals(400, options.inTargetDensity);
+
+        options = new BitmapFactory.Options();
+        DecodePlan.create(1600, 1200, true, resize(400, 300), false).apply(options);
+        assertEquals(4, options.inSampleSize);
+        assertEquals(0, options.inDensity);
+        assertEquals(0, options.inTargetDensity);
+    }
+
+    @Test
+    public void visibleRegionOfCenterCrop() {
+        Task.Options to = resize(400, 400);
+        to.centerCrop();
+        // half of it is cropped away.
+        assertNotNull(DecodePlan.visibleRegion(4000, 2000, to));
+        // too little to be worth a region decoder.
+        assertNull(DecodePlan.visibleRegion(1000, 900, to));
+
+        assertNull(DecodePlan.visibleRegion(4000, 2000, resize(400, 400)));
+        to.rotate(90F);
+        assertNull(DecodePlan.visibleRegion(4000, 2000, to));
+    }
+
+    @Test
+    public void regionSampleSizeKeepsTheTarget() {
+        Task.Options to = resize(400, 400);
+        assertEquals(4, DecodePlan.regionSampleSize(2000, 2000, to));
+        assertEquals(1, DecodePlan.regionSampleSize(799, 2000, to));
+        assertEquals(2, DecodePlan.regionSampleSize(800, 2000, to));
+    }
+
+    private static Task.Options resize(int width, int height) {
+        Task.Options options = new Task.Options();
+        options.resize(width, height);
+        return options;
+    }
+
+    private static void assertPlan(DecodePlan plan, int sampleSize, int density, int targetDensity,
+                                   int decodedWidth, int decodedHeight) {
+        assertEquals(plan.toString(), sampleSize, plan.sampleSize);
+        assertEquals(plan.toString(), density, plan.density);
+        assertEquals(plan.toString(), targetDensity, plan.targetDensity);
+        assertEquals(plan.toString(), decodedWidth, plan.decodedWidth);
+        assertEquals(plan.toString(), decodedHeight, plan.decodedHeight);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.graphics.Bitmap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.objenesis.ObjenesisStd;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that a call which runs again after a {@link Deferred} neither repeats its lookups of
+ * the memory cache nor loses the deferral to an interceptor which catches it.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class DeferralTest {
+    private BitmapPool pool;
+    private MemoryCache memoryCache;
+    private Task task;
+
+    @Before
+    public void setUp() {
+        pool = new BitmapPool(1024 * 1024, true);
+        memoryCache = new MemoryCache(1024 * 1024, pool);
+        task = TestTasks.create("http://example.com/a.png");
+    }
+
+    @After
+    public void tearDown() {
+        Stage.exit();
+    }
+
+    @Test
+    public void resumedRunSkipsTheMemoryLookups() throws IOException {
+        final Bitmap bitmap = TestBitmaps.create(16, 16);
+        List<Interceptor> interceptors = Arrays.asList(
+                new KeyMemoryCacheInterceptor(new ActiveResources(pool), memoryCache),
+                new StableKeyMemoryCacheInterceptor(memoryCache),
+                new Interceptor() {
+                    @Override
+                    public Result intercept(Chain chain) {
+                        return Result.create(bitmap, From.NETWORK);
+                    }
+                });
+
+        Stage.enter(Stage.CACHE, null, false);
+        assertSame(bitmap, proceed(interceptors).bitmap());
+        assertEquals(2, memoryCache.missCount());
+        memoryCache.clear();
+
+        Stage.enter(Stage.NETWORK, null, true);
+        proceed(interceptors);
+        assertEquals(2, memoryCache.missCount());
+        assertEquals(0, memoryCache.hitCount());
+    }
+
+    @Test
+    public void swallowedDeferralIsThrownAgain() throws IOException {
+        final Deferred deferral = new Deferred(Stage.NETWORK, null);
+        List<Interceptor> interceptors = Arrays.asList(
+                new Interceptor() {
+                    @Override
+                    public Result intercept(Chain chain) {
+                        try {
+                            return chain.proceed(chain.task());
+                        } catch (Exception e) {
+                            return Result.create(TestBitmaps.create(1, 1), From.NETWORK);
+                        }
+                    }
+                },
+                new Interceptor() {
+                    @Override
+                    public Result intercept(Chain chain) {
+                        throw deferral;
+                    }
+                });
+        try {
+            proceed(interceptors);
+            fail("the deferral is lost");
+        } catch (Deferred e) {
+            assertSame(deferral, e);
+        }
+    }
+
+    @Test
+    public void deferralTurnedIntoFailureIsThrownAgain() {
+        final Deferred deferral = new Deferred(new Deferred.Signal());
+        List<Interceptor> interceptors = Arrays.asList(
+                new Interceptor() {
+                    @Override
+                    public Result intercept(Chain chain) throws IOException {
+                        try {
+                            return chain.proceed(chain.task());
+                        } catch (RuntimeException e) {
+                            throw new IOException(e);
+                        }
+                    }
+                },
+                new Interceptor() {
+                    @Override
+                    public Result intercept(Chain chain) {
+                        throw deferral;
+                    }
+                });
+        try {
+            proceed(interceptors);
+            fail("the deferral is lost");
+        } catch (Deferred e) {
+            assertSame(deferral, e);
+        } catch (IOException e) {
+            fail("the deferral is lost");
+        }
+    }
+
+    private Result proceed(List<Interceptor> interceptors) throws IOException {
+        Call call = newCall();
+        return call.proceed(new RealInterceptorChain(interceptors, 0, task, null, call));
+    }
+
+    /**
+     * A call without {@link VanGogh}, which only proceeds the chain.
+     */
+    private Call newCall() {
+        Call call = new ObjenesisStd().newInstance(Call.class);
+        try {
+            Field field = Call.class.getDeclaredField("task");
+            field.setAccessible(true);
+            field.set(call, task);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+        return call;
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class DiskCacheTest {
+    private static final long MAX_SIZE = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DiskCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        cache = DiskCache.open(folder.getRoot(), MAX_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        cache = null;
+    }
+
+    @Test
+    public void writeThenRead() throws IOException {
+        write("a", bytes('a', 100));
+
+        DiskCache.Snapshot snapshot = cache.getIfReadable("a");
+        assertNotNull(snapshot);
+        assertArrayEquals(bytes('a', 100), read(snapshot));
+        assertEquals(100, cache.size());
+        assertNull(cache.getIfReadable("b"));
+    }
+
+    @Test
+    public void deleteWhileReading() throws IOException {
+        write("a", bytes('a', 100));
+        DiskCache.Snapshot snapshot = cache.getIfReadable("a");
+        InputStream is = snapshot.getInputStream();
+
+        snapshot.requireDelete();
+        // the open read keeps the file until it is closed.
+        assertTrue(snapshot.isReadable());
+        assertArrayEquals(bytes('a', 100), readAndClose(is));
+
+        assertFalse(snapshot.isReadable());
+        assertNull(cache.getIfReadable("a"));
+        assertEquals(0, cache.size());
+        assertFalse(cleanFile("a").exists());
+        // removed, so it can not be written any more.
+        assertNull(snapshot.getOutputStream());
+    }
+
+    @Test
+    public void writeWhileReading() throws IOException {
+        write("a", bytes('a', 100));
+        DiskCache.Snapshot snapshot = cache.getIfReadable("a");
+        InputStream is = snapshot.getInputStream();
+
+        OutputStream os = snapshot.getOutputStream();
+        assertNotNull(os);
+        // it is being written.
+        assertNull(snapshot.getOutputStream());
+        os.write(bytes('b', 50));
+        os.close();
+
+        // the commit waits for the read.
+        assertEquals(100, cache.size());
+        assertArrayEquals(bytes('a', 100), readAndClose(is));
+        assertEquals(50, cache.size());
+        assertArrayEquals(bytes('b', 50), read(cache.getIfReadable("a")));
+    }
+
+    @Test
+    public void abortedWriteKeepsTheOldFile() throws IOException {
+        write("a", bytes('a', 100));
+        DiskCache.Snapshot snapshot = cache.getSnapshot("a");
+
+        OutputStream os = snapshot.getOutputStream();
+        os.write(bytes('b', 10));
+        snapshot.abortWrite(null);
+        os.close();
+
+        assertArrayEquals(bytes('a', 100), read(snapshot));
+        assertFalse(dirtyFile("a").exists());
+    }
+
+    @Test
+    public void parallelReadersAndWriters() throws Exception {
+        final String[] keys = new String[16];
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = "key" + i;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; ++t) {
+            final int seed = t;
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 500; ++i) {
+                        String key = keys[random.nextInt(keys.length)];
+                        int op = random.nextInt(10);
+                        if (op < 6) {
+                            DiskCache.Snapshot snapshot = cache.getIfReadable(key);
+                            InputStream is = snapshot != null ? snapshot.getInputStream() : null;
+                            if (is != null) {
+                                assertUniform(readAndClose(is));
+                            }
+                        } else if (op < 9) {
+                            OutputStream os = cache.getSnapshot(key).getOutputStream();
+                            if (os != null) {
+                                os.write(bytes((byte) random.nextInt(), 1 + random.nextInt(4096)));
+                                os.close();
+                            }
+                        } else {
+                            cache.getSnapshot(key).requireDelete();
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // nothing is in use any more, so the index and the files agree.
+        long size = 0L;
+        for (String key : keys) {
+            DiskCache.Snapshot snapshot = cache.getIfReadable(key);
+            if (snapshot != null) {
+                byte[] content = read(snapshot);
+                assertUniform(content);
+                assertEquals(content.length, cleanFile(key).length());
+                size += content.length;
+            } else {
+                assertFalse(cleanFile(key).exists());
+            }
+            assertFalse(dirtyFile(key).exists());
+        }
+        assertEquals(size, cache.size());
+    }
+
+    @Test
+    public void replayJournal() throws IOException {
+        write("clean", bytes('c', 100));
+        write("removed", bytes('r', 100));
+        cache.getSnapshot("removed").requireDelete();
+        write("read", bytes('x', 10));
+        read(cache.getIfReadable("read"));
+
+        // a write in progress and a pending delete are both lost by a crash.
+        OutputStream writing = cache.getSnapshot("writing").getOutputStream();
+        writing.write(bytes('w', 10));
+        writing.flush();
+        InputStream reading = cache.getIfReadable("clean").getInputStream();
+        cache.getIfReadable("clean").requireDelete();
+
+        DiskCache replayed = DiskCache.open(folder.getRoot(), MAX_SIZE);
+        assertArrayEquals(bytes('c', 100), read(replayed.getIfReadable("clean")));
+        assertArrayEquals(bytes('x', 10), read(replayed.getIfReadable("read")));
+        assertNull(replayed.getIfReadable("removed"));
+        assertNull(replayed.getIfReadable("writing"));
+        assertFalse(dirtyFile("writing").exists());
+        assertEquals(110, replayed.size());
+
+        // the replayed entries are neither read nor written, so they can be deleted at once.
+        DiskCache.Snapshot snapshot = replayed.getIfReadable("read");
+        snapshot.requireDelete();
+        assertFalse(snapshot.isReadable());
+        assertEquals(100, replayed.size());
+        Utils.close(reading);
+        Utils.close(writing);
+    }
+
+    @Test
+    public void replayPartial() throws IOException {
+        DiskCache.Snapshot snapshot = cache.getSnapshot("partial");
+        OutputStream os = snapshot.getOutputStream();
+        os.write(bytes('p', 30));
+        snapshot.abortWrite("\"etag\"");
+        os.close();
+        assertEquals(30, snapshot.partialLength());
+        assertEquals(30, cache.size());
+
+        DiskCache replayed = DiskCache.open(folder.getRoot(), MAX_SIZE);
+        DiskCache.Snapshot partial = replayed.getSnapshot("partial");
+        assertFalse(partial.isReadable());
+        assertEquals("\"etag\"", partial.partialValidator());
+        assertEquals(30, partial.partialLength());
+        assertEquals(30, replayed.size());
+        // resumed from the kept bytes.
+        OutputStream resumed = partial.getOutputStream(30, null);
+        assertNotNull(resumed);
+        resumed.write(bytes('p', 20));
+        resumed.close();
+        assertArrayEquals(bytes('p', 50), read(partial));
+        assertNull(partial.partialValidator());
+        assertEquals(50, replayed.size());
+    }
+
+    @Test
+    public void partialIsEvicted() throws Exception {
+        cache = DiskCache.open(folder.newFolder(), 100);
+        DiskCache.Snapshot snapshot = cache.getSnapshot("partial");
+        OutputStream os = snapshot.getOutputStream();
+        os.write(bytes('p', 80));
+        snapshot.abortWrite("\"etag\"");
+        os.close();
+
+        write("clean", bytes('c', 50));
+        for (int i = 0; i < 100 && cache.size() > 100; ++i) {
+            Thread.sleep(20);
+        }
+        assertEquals(50, cache.size());
+        assertNull(cache.getSnapshot("partial").partialValidator());
+        assertNotNull(cache.getIfReadable("clean"));
+    }
+
+    @Test
+    public void discardedPartialIsNotCounted() throws IOException {
+        DiskCache.Snapshot snapshot = cache.getSnapshot("partial");
+        OutputStream os = snapshot.getOutputStream();
+        os.write(bytes('p', 30));
+        snapshot.abortWrite("\"etag\"");
+        os.close();
+
+        // the offset does not match, so the kept file is discarded.
+        assertNull(snapshot.getOutputStream(10, null));
+        assertEquals(0, cache.size());
+        write("partial", bytes('c', 20));
+        assertEquals(20, cache.size());
+    }
+
+    private void write(String key, byte[] content) throws IOException {
+        OutputStream os = cache.getSnapshot(key).getOutputStream();
+        assertNotNull(os);
+        os.write(content);
+        os.close();
+    }
+
+    private File cleanFile(String key) {
+        return new File(new File(new File(folder.getRoot(), "diskCache"), key.substring(0, Math.min(2, key.length()))), key);
+    }
+
+    private File dirtyFile(String key) {
+        return new File(cleanFile(key).getPath() + ".tmp");
+    }
+
+    private static byte[] read(DiskCache.Snapshot snapshot) throws IOException {
+        assertNotNull(snapshot);
+        InputStream is = snapshot.getInputStream();
+        assertNotNull(is);
+        return readAndClose(is);
+    }
+
+    private static byte[] readAndClose(InputStream is) throws IOException {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            for (int count = is.read(buffer); count != -1; count = is.read(buffer)) {
+                bos.write(buffer, 0, count);
+            }
+            return bos.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+
+    private static byte[] bytes(int value, int length) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+
+    /**
+     * Each write fills the file with one byte, so a torn read would mix them.
+     */
+    private static void assertUniform(byte[] content) {
+        assertTrue(content.length > 0);
+        for (byte b : content) {
+            assertEquals(content[0], b);
+        }
+    }
+}
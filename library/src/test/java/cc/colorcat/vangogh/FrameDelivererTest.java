@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.os.Handler;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.objenesis.ObjenesisStd;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Runs the deliveries posted to the main handler, as before Jelly Bean, by hand.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class FrameDelivererTest {
+    private VanGogh vanGogh;
+    private Handler handler;
+    private FrameDeliverer deliverer;
+    private Call a, b, c;
+
+    @Before
+    public void setUp() {
+        vanGogh = mock(VanGogh.class);
+        handler = mock(Handler.class);
+        deliverer = new FrameDeliverer(vanGogh, handler, false);
+        ObjenesisStd objenesis = new ObjenesisStd();
+        a = objenesis.newInstance(Call.class);
+        b = objenesis.newInstance(Call.class);
+        c = objenesis.newInstance(Call.class);
+    }
+
+    @Test
+    public void batchWithinBudgetTakesOneFrame() {
+        // the first call of a mock is slow enough to take the budget.
+        vanGogh.complete(null);
+        deliverer.enqueue(Arrays.asList(a, b, c));
+        verify(handler).post(deliverer);
+
+        deliverer.run();
+        InOrder order = inOrder(vanGogh);
+        order.verify(vanGogh).complete(a);
+        order.verify(vanGogh).complete(b);
+        order.verify(vanGogh).complete(c);
+        verify(handler).post(deliverer);
+        assertEquals(1L, deliverer.stats().frameCount());
+        assertEquals(3, deliverer.stats().maxPerFrame());
+    }
+
+    @Test
+    public void batchOverBudgetSpreadsOverFrames() {
+        // each delivery takes the whole budget of a frame.
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws InterruptedException {
+                TimeUnit.NANOSECONDS.sleep(FrameDeliverer.FRAME_BUDGET_NANOS);
+                return null;
+            }
+        }).when(vanGogh).complete(any(Call.class));
+        deliverer.enqueue(Arrays.asList(a, b, c));
+
+        deliverer.run();
+        verify(vanGogh, times(1)).complete(any(Call.class));
+        verify(handler, times(2)).post(deliverer);
+        deliverer.run();
+        deliverer.run();
+        verify(vanGogh, times(3)).complete(any(Call.class));
+        // the last frame leaves nothing behind.
+        verify(handler, times(3)).post(deliverer);
+
+        DeliveryStats stats = deliverer.stats();
+        assertEquals(3L, stats.deliveredCount());
+        assertEquals(3L, stats.frameCount());
+        assertEquals(1, stats.maxPerFrame());
+    }
+
+    @Test
+    public void failedDeliveryStillSchedulesTheRest() {
+        doThrow(new IllegalStateException("broken target")).when(vanGogh).complete(a);
+        deliverer.enqueue(Arrays.asList(a, b, c));
+        try {
+            deliverer.run();
+            fail("the failure has been swallowed");
+        } catch (IllegalStateException expected) {
+            // thrown to the main looper as it was.
+        }
+        verify(handler, times(2)).post(deliverer);
+
+        deliverer.run();
+        verify(vanGogh).complete(b);
+        verify(vanGogh).complete(c);
+        assertEquals(2L, deliverer.stats().deliveredCount());
+    }
+
+    @Test
+    public void scheduledOncePerFrame() {
+        deliverer.enqueue(Arrays.asList(a));
+        deliverer.enqueue(Arrays.asList(b, c));
+        verify(handler, times(1)).post(deliverer);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class FrequencySketchTest {
+
+    @Test
+    public void countsIncrements() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        assertEquals(0, sketch.frequency("a"));
+        for (int i = 1; i <= 5; ++i) {
+            sketch.increment("a");
+            assertEquals(i, sketch.frequency("a"));
+        }
+        assertEquals(0, sketch.frequency("b"));
+    }
+
+    @Test
+    public void saturatesAtMaxFrequency() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 0; i < FrequencySketch.MAX_FREQUENCY * 2; ++i) {
+            sketch.increment("a");
+        }
+        assertEquals(FrequencySketch.MAX_FREQUENCY, sketch.frequency("a"));
+    }
+
+    @Test
+    public void agesOnceTheSampleIsFull() {
+        // 16 rows of counters, so the sample size is 160 increments.
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < FrequencySketch.MAX_FREQUENCY; ++i) {
+            sketch.increment("hot");
+        }
+        assertEquals(FrequencySketch.MAX_FREQUENCY, sketch.frequency("hot"));
+        for (int i = 0; i < 160; ++i) {
+            sketch.increment("cold" + i);
+        }
+        assertTrue(sketch.frequency("hot") < FrequencySketch.MAX_FREQUENCY);
+    }
+
+    @Test
+    public void clear() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        sketch.increment("a");
+        sketch.increment("a");
+        sketch.clear();
+        assertEquals(0, sketch.frequency("a"));
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class HttpDownloaderTest {
+    private static final String ETAG = "\"v1\"";
+    private static final int LENGTH = 1000;
+    private static final int CUT = 400;
+
+    TestServer server;
+    byte[] content;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new TestServer();
+        content = new byte[LENGTH];
+        for (int i = 0; i < LENGTH; ++i) {
+            content[i] = (byte) i;
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    Downloader newDownloader() {
+        return new HttpDownloader();
+    }
+
+    @Test
+    public void bodyCutMidStream() throws Exception {
+        server.enqueue(new TestServer.Response(200).header("ETag", ETAG).body(content).cutAfter(CUT));
+        Downloader downloader = newDownloader();
+        Result result = downloader.load(TestTasks.create(server.url("/img")));
+        assertEquals(LENGTH, result.contentLength());
+        assertEquals(0L, result.offset());
+
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        try {
+            readFully(result.stream(), received);
+        } catch (IOException expected) {
+            // a premature end of the body is either an error or an early end.
+        }
+        assertEquals(CUT, received.size());
+        assertEquals(ETAG, result.validator());
+        downloader.shutDown();
+    }
+
+    @Test
+    public void resumeWithPartialContent() throws Exception {
+        server.enqueue(new TestServer.Response(206)
+                .header("ETag", ETAG)
+                .header("Content-Range", "bytes " + CUT + '-' + (LENGTH - 1) + '/' + LENGTH)
+                .body(Arrays.copyOfRange(content, CUT, LENGTH)));
+        Task task = TestTasks.create(server.url("/img")).resume(CUT, ETAG);
+        Result result = newDownloader().load(task);
+
+        TestServer.Request request = server.takeRequest();
+        assertEquals("bytes=" + CUT + '-', request.header("Range"));
+        assertEquals(ETAG, request.header("If-Range"));
+        assertEquals("identity", request.header("Accept-Encoding"));
+        assertEquals(CUT, result.offset());
+        assertArrayEquals(Arrays.copyOfRange(content, CUT, LENGTH), readFully(result.stream()));
+    }
+
+    @Test
+    public void changedResourceIsDownloadedEntirely() throws Exception {
+        // If-Range does not match, so the server ignores the range.
+        server.enqueue(new TestServer.Response(200).header("ETag", "\"v2\"").body(content));
+        Task task = TestTasks.create(server.url("/img")).resume(CUT, ETAG);
+        Result result = newDownloader().load(task);
+
+        assertEquals(0L, result.offset());
+        assertEquals("\"v2\"", result.validator());
+        assertArrayEquals(content, readFully(result.stream()));
+    }
+
+    @Test
+    public void rangeNotSatisfiableRestarts() throws Exception {
+        server.enqueue(new TestServer.Response(416).header("Content-Range", "bytes */" + CUT));
+        server.enqueue(new TestServer.Response(200).header("ETag", ETAG).body(content));
+        Task task = TestTasks.create(server.url("/img")).resume(CUT, ETAG);
+        Result result = newDownloader().load(task);
+
+        assertEquals("bytes=" + CUT + '-', server.takeRequest().header("Range"));
+        TestServer.Request restarted = server.takeRequest();
+        assertNull(restarted.header("Range"));
+        assertNull(restarted.header("If-Range"));
+        assertEquals(0L, result.offset());
+        assertArrayEquals(content, readFully(result.stream()));
+    }
+
+    @Test
+    public void mismatchedContentRangeRestarts() throws Exception {
+        server.enqueue(new TestServer.Response(206)
+                .header("ETag", ETAG)
+                .header("Content-Range", "bytes 0-" + (LENGTH - 1) + '/' + LENGTH)
+                .body(content));
+        server.enqueue(new TestServer.Response(200).header("ETag", ETAG).body(content));
+        Task task = TestTasks.create(server.url("/img")).resume(CUT, ETAG);
+        Result result = newDownloader().load(task);
+
+        assertEquals("bytes=" + CUT + '-', server.takeRequest().header("Range"));
+        assertNull(server.takeRequest().header("Range"));
+        assertEquals(0L, result.offset());
+        assertArrayEquals(content, readFully(result.stream()));
+    }
+
+    @Test
+    public void startsAt() {
+        assertTrue(HttpDownloader.startsAt("bytes 400-999/1000", 400));
+        assertTrue(HttpDownloader.startsAt(" bytes 400-999/* ", 400));
+        assertFalse(HttpDownloader.startsAt("bytes 0-999/1000", 400));
+        assertFalse(HttpDownloader.startsAt("bytes */1000", 400));
+        assertFalse(HttpDownloader.startsAt("items 400-999/1000", 400));
+        assertFalse(HttpDownloader.startsAt("bytes 400-/1000", 400));
+        assertFalse(HttpDownloader.startsAt(null, 400));
+    }
+
+    static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        readFully(is, bos);
+        return bos.toByteArray();
+    }
+
+    private static void readFully(InputStream is, ByteArrayOutputStream bos) throws IOException {
+        try {
+            byte[] buffer = new byte[256];
+            for (int count = is.read(buffer); count != -1; count = is.read(buffer)) {
+                bos.write(buffer, 0, count);
+            }
+        } finally {
+            Utils.close(is);
+        }
+    }
+}
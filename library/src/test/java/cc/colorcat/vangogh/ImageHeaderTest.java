@@ -0,0 +1,274 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class ImageHeaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void png() throws IOException {
+        Bytes png = new Bytes()
+                .put(0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n')
+                .be32(13).put('I', 'H', 'D', 'R').be32(640).be32(480)
+                .put(8, 6, 0, 0, 0);
+        assertHeader(png, ImageHeader.Format.PNG, 640, 480, ImageHeader.ORIENTATION_UNDEFINED);
+    }
+
+    @Test
+    public void gif() throws IOException {
+        Bytes gif = new Bytes().put('G', 'I', 'F', '8', '9', 'a').le16(320).le16(200).put(0, 0, 0);
+        assertHeader(gif, ImageHeader.Format.GIF, 320, 200, ImageHeader.ORIENTATION_UNDEFINED);
+    }
+
+    @Test
+    public void bmp() throws IOException {
+        Bytes info = new Bytes().put('B', 'M').le32(0).le32(0).le32(54)
+                .le32(40).le32(100).le32(-50);
+        assertHeader(info, ImageHeader.Format.BMP, 100, 50, ImageHeader.ORIENTATION_UNDEFINED);
+
+        Bytes core = new Bytes().put('B', 'M').le32(0).le32(0).le32(26)
+                .le32(12).le16(30).le16(20);
+        assertHeader(core, ImageHeader.Format.BMP, 30, 20, ImageHeader.ORIENTATION_UNDEFINED);
+    }
+
+    @Test
+    public void webpLossy() throws IOException {
+        Bytes webp = riff().put('V', 'P', '8', ' ').le32(0)
+                .put(0, 0, 0, 0x9D, 0x01, 0x2A).le16(1024).le16(768);
+        assertHeader(webp, ImageHeader.Format.WEBP, 1024, 768, ImageHeader.ORIENTATION_UNDEFINED);
+    }
+
+    @Test
+    public void webpLossless() throws IOException {
+        int w = 1000 - 1, h = 600 - 1;
+        Bytes webp = riff().put('V', 'P', '8', 'L').le32(0)
+                .put(0x2F, w & 0xFF, (w >> 8 & 0x3F) | (h & 0x03) << 6, h >> 2 & 0xFF, h >> 10 & 0x0F);
+        assertHeader(webp, ImageHeader.Format.WEBP, 1000, 600, ImageHeader.ORIENTATION_UNDEFINED);
+    }
+
+    @Test
+    public void webpExtended() throws IOException {
+        Bytes webp = riff().put('V', 'P', '8', 'X').le32(10)
+                .le32(0).le24(20000 - 1).le24(30000 - 1);
+        assertHeader(webp, ImageHeader.Format.WEBP, 20000, 30000, ImageHeader.ORIENTATION_UNDEFINED);
+    }
+
+    @Test
+    public void jpegWithoutExif() throws IOException {
+        Bytes jpeg = new Bytes().put(0xFF, 0xD8)
+                .put(0xFF, 0xE0).be16(2 + 4).put('J', 'F', 'I', 'F')
+                .put(0xFF, 0xFF, 0xC2).be16(2 + 6).put(8).be16(1200).be16(1600).put(3);
+        assertHeader(jpeg, ImageHeader.Format.JPEG, 1600, 1200, ImageHeader.ORIENTATION_UNDEFINED);
+    }
+
+    @Test
+    public void jpegWithExifOrientation() throws IOException {
+        assertHeader(jpeg(exif(true, 6), 0), ImageHeader.Format.JPEG, 400, 300, 6);
+        assertHeader(jpeg(exif(false, 8), 0), ImageHeader.Format.JPEG, 400, 300, 8);
+        assertHeader(jpeg(exif(true, 9), 0), ImageHeader.Format.JPEG, 400, 300, ImageHeader.ORIENTATION_UNDEFINED);
+    }
+
+    @Test
+    public void jpegAfterLargeExif() throws IOException {
+        // a thumbnail of 60 KB after the IFD, within the limit.
+        assertHeader(jpeg(exif(false, 3), 60 * 1024), ImageHeader.Format.JPEG, 400, 300, 3);
+    }
+
+    @Test
+    public void jpegBeyondTheLimit() throws IOException {
+        Bytes jpeg = new Bytes().put(0xFF, 0xD8);
+        // APP segments of nearly 64 KB each, so the frame header is after the limit.
+        byte[] payload = new byte[0xFFFF - 2];
+        for (int i = 0; i < 3; ++i) {
+            jpeg.put(0xFF, 0xE2).be16(0xFFFF).put(payload);
+        }
+        jpeg.put(0xFF, 0xC0).be16(2 + 6).put(8).be16(300).be16(400).put(3);
+        assertNull(ImageHeader.read(new ByteArrayInputStream(jpeg.toByteArray())));
+    }
+
+    @Test
+    public void jpegScanBeforeFrame() throws IOException {
+        Bytes jpeg = new Bytes().put(0xFF, 0xD8).put(0xFF, 0xDA).be16(2);
+        assertNull(ImageHeader.read(new ByteArrayInputStream(jpeg.toByteArray())));
+    }
+
+    @Test
+    public void truncated() throws IOException {
+        byte[] png = new Bytes()
+                .put(0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n')
+                .be32(13).put('I', 'H', 'D', 'R').be32(640).be32(480)
+                .toByteArray();
+        for (int length = 0; length < png.length; ++length) {
+            assertNull(ImageHeader.read(new ByteArrayInputStream(Arrays.copyOf(png, length))));
+        }
+    }
+
+    @Test
+    public void unknown() throws IOException {
+        assertNull(ImageHeader.read(new ByteArrayInputStream("<svg xmlns=\"x\"/>".getBytes("UTF-8"))));
+        Bytes empty = new Bytes().put('G', 'I', 'F', '8', '7', 'a').le16(0).le16(10);
+        assertNull(ImageHeader.read(new ByteArrayInputStream(empty.toByteArray())));
+    }
+
+    @Test
+    public void channelIsReadByPosition() throws IOException {
+        byte[] data = jpeg(exif(true, 6), 60 * 1024).toByteArray();
+        FileInputStream file = new FileInputStream(write(data));
+        try {
+            FileChannel channel = file.getChannel();
+            channel.position(5L);
+            ImageHeader header = ImageHeader.read(channel, new byte[ByteArrayPool.BUFFER_SIZE]);
+            assertNotNull(header);
+            assertEquals(6, header.orientation);
+            assertEquals(5L, channel.position());
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test
+    public void emptyFile() throws IOException {
+        FileInputStream file = new FileInputStream(write(new byte[0]));
+        try {
+            assertNull(ImageHeader.read(file.getChannel(), new byte[16]));
+        } finally {
+            file.close();
+        }
+    }
+
+    private void assertHeader(Bytes bytes, ImageHeader.Format format, int width, int height, int orientation) throws IOException {
+        byte[] data = bytes.toByteArray();
+        FileInputStream file = new FileInputStream(write(data));
+        ImageHeader[] headers = new ImageHeader[3];
+        try {
+            headers[0] = ImageHeader.read(new ByteArrayInputStream(data));
+            // a short buffer is filled many times.
+            headers[1] = ImageHeader.read(file.getChannel(), new byte[7]);
+            headers[2] = ImageHeader.read(file.getChannel(), new byte[ByteArrayPool.BUFFER_SIZE]);
+        } finally {
+            file.close();
+        }
+        for (ImageHeader header : headers) {
+            assertNotNull(header);
+            assertEquals(format, header.format);
+            assertEquals(width, header.width);
+            assertEquals(height, header.height);
+            assertEquals(orientation, header.orientation);
+        }
+    }
+
+    private File write(byte[] data) throws IOException {
+        File file = folder.newFile();
+        FileOutputStream os = new FileOutputStream(file);
+        try {
+            os.write(data);
+        } finally {
+            os.close();
+        }
+        return file;
+    }
+
+    private static Bytes riff() {
+        return new Bytes().put('R', 'I', 'F', 'F').le32(0).put('W', 'E', 'B', 'P');
+    }
+
+    /**
+     * @return a JPEG of 400 x 300 with the APP1 segment before its frame header.
+     */
+    private static Bytes jpeg(byte[] app1, int thumbnailLength) {
+        return new Bytes().put(0xFF, 0xD8)
+                .put(0xFF, 0xE1).be16(2 + app1.length + thumbnailLength).put(app1)
+                .put(new byte[thumbnailLength])
+                .put(0xFF, 0xC0).be16(2 + 6).put(8).be16(300).be16(400).put(3);
+    }
+
+    /**
+     * @return the payload of APP1 with one entry of orientation in IFD0.
+     */
+    private static byte[] exif(boolean little, int orientation) {
+        Bytes app1 = new Bytes().put('E', 'x', 'i', 'f', 0, 0);
+        if (little) {
+            app1.put('I', 'I').le16(42).le32(8).le16(1)
+                    .le16(0x0112).le16(3).le32(1).le16(orientation).le16(0)
+                    .le32(0);
+        } else {
+            app1.put('M', 'M').be16(42).be32(8).be16(1)
+                    .be16(0x0112).be16(3).be32(1).be16(orientation).be16(0)
+                    .be32(0);
+        }
+        return app1.toByteArray();
+    }
+
+
+    private static final class Bytes extends ByteArrayOutputStream {
+
+        private Bytes put(int... values) {
+            for (int value : values) {
+                super.write(value);
+            }
+            return this;
+        }
+
+        private Bytes put(byte[] bytes) {
+            super.write(bytes, 0, bytes.length);
+            return this;
+        }
+
+        private Bytes le16(int value) {
+            return put(value & 0xFF, value >> 8 & 0xFF);
+        }
+
+        private Bytes le24(int value) {
+            return le16(value).put(value >> 16 & 0xFF);
+        }
+
+        private Bytes le32(int value) {
+            return le24(value).put(value >> 24 & 0xFF);
+        }
+
+        private Bytes be16(int value) {
+            return put(value >> 8 & 0xFF, value & 0xFF);
+        }
+
+        private Bytes be32(int value) {
+            return be16(value >> 16).be16(value);
+        }
+    }
+}
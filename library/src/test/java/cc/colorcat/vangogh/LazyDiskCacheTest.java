@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class LazyDiskCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void constructingTouchesNothing() {
+        File dir = new File(folder.getRoot(), "lazy");
+        LazyDiskCache lazy = new LazyDiskCache(null, dir, 1024 * 1024);
+
+        assertFalse(dir.exists());
+        assertNull(lazy.getIfReady());
+    }
+
+    @Test
+    public void opensInTheBackground() {
+        File dir = new File(folder.getRoot(), "lazy");
+        LazyDiskCache lazy = new LazyDiskCache(null, dir, 1024 * 1024);
+        lazy.openAsync();
+
+        DiskCache cache = lazy.get();
+        assertNotNull(cache);
+        assertTrue(new File(dir, "diskCache").isDirectory());
+        assertSame(cache, lazy.getIfReady());
+    }
+
+    @Test
+    public void failureIsNull() throws Exception {
+        File file = folder.newFile("not-a-directory");
+        LazyDiskCache lazy = new LazyDiskCache(null, file, 1024 * 1024);
+        lazy.openAsync();
+
+        assertNull(lazy.get());
+        assertNull(lazy.getIfReady());
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.graphics.Bitmap;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A bitmap returned by the memory cache must not enter the {@link BitmapPool} while the caller
+ * holds it, even if it is evicted at the same time by another thread.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class MemoryCacheRaceTest {
+    private static final int SIZE = 16;
+    private static final int BYTE_COUNT = SIZE * SIZE * 4;
+    private static final int KEYS = 8;
+    private static final int ROUNDS = 10000;
+
+    @Test
+    public void lruGetRacesEviction() throws InterruptedException {
+        BitmapPool pool = new BitmapPool(BYTE_COUNT * 64, true);
+        assertNoReuseWhileHeld(new MemoryCache(BYTE_COUNT * 2, pool), pool);
+    }
+
+    @Test
+    public void segmentedGetRacesEviction() throws InterruptedException {
+        BitmapPool pool = new BitmapPool(BYTE_COUNT * 64, true);
+        assertNoReuseWhileHeld(new SegmentedMemoryCache(BYTE_COUNT * 2, 1, pool), pool);
+    }
+
+    @Test
+    public void tinyLfuGetRacesEviction() throws InterruptedException {
+        BitmapPool pool = new BitmapPool(BYTE_COUNT * 64, true);
+        assertNoReuseWhileHeld(new TinyLfuMemoryCache(BYTE_COUNT * 4, pool), pool);
+    }
+
+    /**
+     * One thread saves bitmaps taken from the pool, so entries are evicted and released all the
+     * time, the other reads them as the interceptors do and holds them for a moment.
+     */
+    private static void assertNoReuseWhileHeld(final Cache<Bitmap> cache, final BitmapPool pool)
+            throws InterruptedException {
+        final Set<Bitmap> held = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<Bitmap, Boolean>()));
+        final AtomicInteger reusedWhileHeld = new AtomicInteger();
+        final AtomicBoolean done = new AtomicBoolean();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                await(start);
+                for (int i = 0; i < ROUNDS; ++i) {
+                    Bitmap bitmap = pool.getDirty(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+                    if (bitmap == null) {
+                        bitmap = TestBitmaps.create(SIZE, SIZE);
+                    } else if (held.contains(bitmap)) {
+                        reusedWhileHeld.incrementAndGet();
+                    }
+                    pool.acquire(bitmap);
+                    cache.save("key" + (i % KEYS), bitmap);
+                    pool.release(bitmap);
+                    Thread.yield();
+                }
+                done.set(true);
+            }
+        });
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                await(start);
+                for (int i = 0; !done.get(); ++i) {
+                    Bitmap bitmap = cache.get("key" + (i % KEYS));
+                    if (bitmap != null) {
+                        held.add(bitmap);
+                        Thread.yield();
+                        held.remove(bitmap);
+                        pool.release(bitmap);
+                    }
+                }
+            }
+        });
+        writer.start();
+        reader.start();
+        start.countDown();
+        writer.join();
+        reader.join();
+
+        assertEquals(0, reusedWhileHeld.get());
+        // a bitmap released twice would be pooled twice.
+        cache.clear();
+        Set<Bitmap> pooled = Collections.newSetFromMap(new IdentityHashMap<Bitmap, Boolean>());
+        for (Bitmap bitmap = pool.getDirty(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+             bitmap != null;
+             bitmap = pool.getDirty(SIZE, SIZE, Bitmap.Config.ARGB_8888)) {
+            assertTrue("pooled twice", pooled.add(bitmap));
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
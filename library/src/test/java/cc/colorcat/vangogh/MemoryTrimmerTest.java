@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class MemoryTrimmerTest {
+    private static final long CACHE_SIZE = 8 * 1024;
+    private static final long POOL_SIZE = 4 * 1024;
+
+    private ActiveResources activeResources;
+    private Cache<Bitmap> memoryCache;
+    private Trimmable trimmable;
+    private BitmapPool pool;
+    private MemoryTrimmer trimmer;
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() {
+        pool = new BitmapPool(POOL_SIZE, true);
+        activeResources = new ActiveResources(pool);
+        memoryCache = mock(Cache.class, withSettings().extraInterfaces(Trimmable.class));
+        trimmable = (Trimmable) memoryCache;
+        when(memoryCache.maxSize()).thenReturn(CACHE_SIZE);
+        trimmer = new MemoryTrimmer(activeResources, memoryCache, pool);
+    }
+
+    @Test
+    public void runningModerateHalvesTheBudgets() {
+        fillPool();
+        trimmer.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        verify(trimmable).setSizeMultiplier(0.5F);
+        assertEquals(POOL_SIZE / 2, pool.maxSize());
+        assertEquals(POOL_SIZE / 2, pool.size());
+    }
+
+    @Test
+    public void runningLowQuartersTheBudgets() {
+        fillPool();
+        trimmer.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        verify(trimmable).setSizeMultiplier(0.25F);
+        assertEquals(POOL_SIZE / 4, pool.maxSize());
+        assertEquals(POOL_SIZE / 4, pool.size());
+    }
+
+    @Test
+    public void runningCriticalKeepsTheDisplayedOnes() {
+        fillPool();
+        activeResources.activate("a", displayed());
+        trimmer.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        verify(memoryCache).clear();
+        assertEquals(0L, pool.size());
+        assertNotNull(activeResources.get("a"));
+        // the budgets are left as they are.
+        verify(trimmable, never()).setSizeMultiplier(0.5F);
+        assertEquals(POOL_SIZE, pool.maxSize());
+    }
+
+    @Test
+    public void uiHiddenRestoresAndTrimsToHalf() {
+        trimmer.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        fillPool();
+        trimmer.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        InOrder order = inOrder(trimmable);
+        order.verify(trimmable).setSizeMultiplier(1F);
+        order.verify(trimmable).trimToSize(CACHE_SIZE / 2);
+        assertEquals(POOL_SIZE, pool.maxSize());
+        assertEquals(POOL_SIZE / 4, pool.size());
+
+        fillPool();
+        trimmer.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertEquals(POOL_SIZE / 2, pool.size());
+    }
+
+    @Test
+    public void moderateClearsAll() {
+        assertClearsAll(ComponentCallbacks2.TRIM_MEMORY_MODERATE);
+    }
+
+    @Test
+    public void completeClearsAll() {
+        assertClearsAll(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+
+    @Test
+    public void lowMemoryClearsAll() {
+        fillPool();
+        activeResources.activate("a", displayed());
+        trimmer.onLowMemory();
+        verify(memoryCache).clear();
+        assertEquals(0L, pool.size());
+        assertNull(activeResources.get("a"));
+    }
+
+    @Test
+    public void configurationChangeRestoresTheBudgets() {
+        trimmer.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertEquals(POOL_SIZE / 4, pool.maxSize());
+
+        trimmer.onConfigurationChanged(new Configuration());
+        verify(trimmable).setSizeMultiplier(1F);
+        assertEquals(POOL_SIZE, pool.maxSize());
+        fillPool();
+        assertEquals(POOL_SIZE, pool.size());
+    }
+
+    @Test
+    public void lowerRunningLevelRestoresPartly() {
+        trimmer.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        trimmer.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertEquals(POOL_SIZE / 2, pool.maxSize());
+    }
+
+    private void assertClearsAll(int level) {
+        trimmer.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        fillPool();
+        activeResources.activate("a", displayed());
+        trimmer.onTrimMemory(level);
+        verify(memoryCache).clear();
+        assertEquals(0L, pool.size());
+        assertNull(activeResources.get("a"));
+        assertEquals(POOL_SIZE, pool.maxSize());
+    }
+
+    /**
+     * Puts bitmaps of 1 KB into the pool up to its budget.
+     */
+    private void fillPool() {
+        for (long size = pool.size(); size < pool.maxSize(); size += 1024) {
+            pool.put(TestBitmaps.create(16, 16));
+        }
+    }
+
+    private Bitmap displayed() {
+        Bitmap bitmap = TestBitmaps.create(16, 16);
+        pool.acquire(bitmap);
+        return bitmap;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class NetworkLimiterTest {
+
+    @Test
+    public void admitsWithinTheLimits() {
+        NetworkLimiter limiter = new NetworkLimiter(4, 2);
+        assertNull(limiter.acquire("a", "a1"));
+        assertNull(limiter.acquire("a", "a2"));
+        assertNull(limiter.acquire("b", "b1"));
+        // again by the same key, such as a call run again after it was deferred.
+        assertNull(limiter.acquire("a", "a1"));
+        HostStats a = stats(limiter, "a");
+        assertEquals(2, a.runningCount());
+        assertEquals(2, a.admittedCount());
+        assertEquals(0, a.queuedCount());
+    }
+
+    @Test
+    public void waitsForTheSlotOfItsHost() {
+        NetworkLimiter limiter = new NetworkLimiter(4, 1);
+        assertNull(limiter.acquire("a", "a1"));
+        Deferred.Signal a2 = limiter.acquire("a", "a2");
+        assertNotNull(a2);
+        assertFalse(a2.isReady());
+        assertSame(a2, limiter.acquire("a", "a2"));
+        // a slow host does not block the others.
+        assertNull(limiter.acquire("b", "b1"));
+
+        limiter.release("a1");
+        assertTrue(a2.isReady());
+        assertNull(limiter.acquire("a", "a2"));
+        HostStats a = stats(limiter, "a");
+        assertEquals(1, a.runningCount());
+        assertEquals(0, a.queuedCount());
+        assertEquals(1, a.waitCount());
+    }
+
+    @Test
+    public void hostsTakeTurns() {
+        NetworkLimiter limiter = new NetworkLimiter(1, 4);
+        assertNull(limiter.acquire("a", "a0"));
+        Deferred.Signal a1 = limiter.acquire("a", "a1");
+        Deferred.Signal a2 = limiter.acquire("a", "a2");
+        Deferred.Signal b1 = limiter.acquire("b", "b1");
+        assertNotNull(a1);
+        assertNotNull(a2);
+        assertNotNull(b1);
+
+        limiter.release("a0");
+        assertTrue(a1.isReady());
+        assertFalse(b1.isReady());
+        limiter.release("a1");
+        // b has waited for a turn, it goes before the second call of a.
+        assertTrue(b1.isReady());
+        assertFalse(a2.isReady());
+        limiter.release("b1");
+        assertTrue(a2.isReady());
+    }
+
+    @Test
+    public void releaseOfAWaiterLeavesTheQueue() {
+        NetworkLimiter limiter = new NetworkLimiter(1, 1);
+        assertNull(limiter.acquire("a", "a1"));
+        Deferred.Signal a2 = limiter.acquire("a", "a2");
+        Deferred.Signal a3 = limiter.acquire("a", "a3");
+        assertNotNull(a2);
+        assertNotNull(a3);
+
+        limiter.release("a2");
+        assertFalse(a2.isReady());
+        assertEquals(1, stats(limiter, "a").queuedCount());
+        limiter.release("a1");
+        assertTrue(a3.isReady());
+        // unknown and released keys are ignored.
+        limiter.release("a2");
+        limiter.release("x");
+        HostStats a = stats(limiter, "a");
+        assertEquals(1, a.runningCount());
+        assertEquals(0, a.queuedCount());
+        assertEquals(2, a.admittedCount());
+    }
+
+    @Test
+    public void globalLimitAppliesToAllHosts() {
+        NetworkLimiter limiter = new NetworkLimiter(2, 2);
+        assertNull(limiter.acquire("a", "a1"));
+        assertNull(limiter.acquire("b", "b1"));
+        Deferred.Signal c1 = limiter.acquire("c", "c1");
+        assertNotNull(c1);
+        limiter.release("a1");
+        assertTrue(c1.isReady());
+        assertEquals(1, stats(limiter, "c").runningCount());
+        assertEquals(0, stats(limiter, "a").runningCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxRequestsMustBePositive() {
+        new NetworkLimiter(0, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxRequestsPerHostMustBePositive() {
+        new NetworkLimiter(1, 0);
+    }
+
+    private static HostStats stats(NetworkLimiter limiter, String host) {
+        List<HostStats> stats = limiter.stats();
+        for (int i = 0, size = stats.size(); i < size; ++i) {
+            if (stats.get(i).host().equals(host)) {
+                return stats.get(i);
+            }
+        }
+        throw new AssertionError("no stats of " + host);
+    }
+}
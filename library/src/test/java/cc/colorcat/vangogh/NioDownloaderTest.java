@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the cases of {@link HttpDownloaderTest} on the selector loop, and checks the limit of
+ * the body, the loads deferred by the loop are repeated once their fetches are ready.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class NioDownloaderTest extends HttpDownloaderTest {
+    private static final long MAX_BODY_SIZE = 2000L;
+
+    private final SelectorLoop loop = new SelectorLoop(MAX_BODY_SIZE);
+
+    @Override
+    Downloader newDownloader() {
+        return new Waiting(new NioDownloader(loop));
+    }
+
+    /**
+     * The body is buffered before the load returns, so a cut body fails the load itself.
+     */
+    @Override
+    @Test
+    public void bodyCutMidStream() throws Exception {
+        server.enqueue(new TestServer.Response(200).body(content).cutAfter(400));
+        assertFails(newDownloader(), TestTasks.create(server.url("/img")));
+    }
+
+    @Test
+    public void bodyOfTheLimitIsAccepted() throws Exception {
+        byte[] body = new byte[(int) MAX_BODY_SIZE];
+        server.enqueue(new TestServer.Response(200).body(body));
+        Result result = newDownloader().load(TestTasks.create(server.url("/img")));
+        assertArrayEquals(body, readFully(result.stream()));
+    }
+
+    @Test
+    public void contentLengthOverTheLimitFails() throws Exception {
+        server.enqueue(new TestServer.Response(200).body(new byte[(int) MAX_BODY_SIZE + 1]));
+        assertFails(newDownloader(), TestTasks.create(server.url("/img")));
+    }
+
+    @Test
+    public void chunkedBodyOverTheLimitFails() throws Exception {
+        server.enqueue(new TestServer.Response(200).chunkedBody(new byte[(int) MAX_BODY_SIZE + 1], 300));
+        assertFails(newDownloader(), TestTasks.create(server.url("/img")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void limitMustBePositive() {
+        new SelectorLoop(0L);
+    }
+
+    private static void assertFails(Downloader downloader, Task task) {
+        try {
+            downloader.load(task);
+            fail("the load does not fail");
+        } catch (IOException expected) {
+            // the fetch fails before the body is complete.
+        }
+    }
+
+    /**
+     * Blocks the calling thread until the deferred load of the delegate can be repeated.
+     */
+    private static final class Waiting implements Downloader {
+        private final Downloader delegate;
+
+        private Waiting(Downloader delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Result load(Task task) throws IOException {
+            while (true) {
+                try {
+                    return delegate.load(task);
+                } catch (Deferred deferred) {
+                    try {
+                        Thread.sleep(5L);
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void shutDown() {
+            delegate.shutDown();
+        }
+
+        @SuppressWarnings("CloneDoesntCallSuperClone")
+        @Override
+        public Downloader clone() {
+            return new Waiting(delegate.clone());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the cases of {@link HttpDownloaderTest} on pooled connections, and checks the reuse.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class PooledHttpDownloaderTest extends HttpDownloaderTest {
+    private final ConnectionPool pool = new ConnectionPool(4, 1, TimeUnit.MINUTES);
+
+    @Override
+    Downloader newDownloader() {
+        return new PooledHttpDownloader(pool);
+    }
+
+    @Test
+    public void reusesTheConnection() throws Exception {
+        for (int i = 0; i < 3; ++i) {
+            server.enqueue(new TestServer.Response(200).body(content));
+        }
+        for (int i = 0; i < 3; ++i) {
+            Downloader downloader = newDownloader();
+            Result result = downloader.load(TestTasks.create(server.url("/img" + i)));
+            assertArrayEquals(content, readFully(result.stream()));
+            downloader.shutDown();
+        }
+        assertEquals(1, server.connectionCount());
+        assertEquals(1, pool.connectCount());
+        assertEquals(2, pool.reuseCount());
+        assertEquals(1, pool.idleCount());
+    }
+
+    @Test
+    public void reusesAfterChunkedBody() throws Exception {
+        server.enqueue(new TestServer.Response(200).chunkedBody(content, 300));
+        server.enqueue(new TestServer.Response(200).body(content));
+        for (int i = 0; i < 2; ++i) {
+            Downloader downloader = newDownloader();
+            Result result = downloader.load(TestTasks.create(server.url("/img" + i)));
+            assertArrayEquals(content, readFully(result.stream()));
+            downloader.shutDown();
+        }
+        assertEquals(1, server.connectionCount());
+        assertEquals(1, pool.reuseCount());
+    }
+
+    @Test
+    public void closedConnectionIsNotReused() throws Exception {
+        server.enqueue(new TestServer.Response(200).header("Connection", "close").body(content));
+        server.enqueue(new TestServer.Response(200).body(content));
+        for (int i = 0; i < 2; ++i) {
+            Downloader downloader = newDownloader();
+            Result result = downloader.load(TestTasks.create(server.url("/img" + i)));
+            assertArrayEquals(content, readFully(result.stream()));
+            downloader.shutDown();
+        }
+        assertEquals(2, server.connectionCount());
+        assertEquals(0, pool.reuseCount());
+    }
+
+    @Test
+    public void unreadBodyIsDrainedForReuse() throws Exception {
+        server.enqueue(new TestServer.Response(200).body(content));
+        server.enqueue(new TestServer.Response(200).body(content));
+        Downloader first = newDownloader();
+        first.load(TestTasks.create(server.url("/first"))).stream().read(new byte[10]);
+        first.shutDown();
+
+        Downloader second = newDownloader();
+        assertArrayEquals(content, readFully(second.load(TestTasks.create(server.url("/second"))).stream()));
+        second.shutDown();
+        assertEquals(1, server.connectionCount());
+    }
+}
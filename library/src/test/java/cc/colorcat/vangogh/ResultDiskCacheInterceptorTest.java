@@ -0,0 +1,183 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.graphics.Bitmap;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class ResultDiskCacheInterceptorTest {
+    private static final byte[] PNG = "png".getBytes();
+    private static final byte[] WEBP = "webp".getBytes();
+    private static final long NOW = 1792310400000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DiskCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        cache = DiskCache.open(folder.getRoot(), 1024 * 1024);
+    }
+
+    @Test
+    public void bitmapWithAlphaIsSavedAsPng() throws IOException {
+        ResultDiskCacheInterceptor.save(cache.getSnapshot("a"), bitmap(true, true), null);
+        assertArrayEquals(PNG, read(cache.getIfReadable("a")));
+    }
+
+    @Test
+    public void opaqueBitmapIsSavedAsWebp() throws IOException {
+        ResultDiskCacheInterceptor.save(cache.getSnapshot("a"), bitmap(false, true), null);
+        assertArrayEquals(WEBP, read(cache.getIfReadable("a")));
+    }
+
+    @Test
+    public void failedCompressionIsNeverCommitted() throws IOException {
+        ResultDiskCacheInterceptor.save(cache.getSnapshot("a"), bitmap(false, false), null);
+        assertNull(cache.getIfReadable("a"));
+        assertEquals(0L, cache.size());
+    }
+
+    @Test
+    public void failedCompressionKeepsTheOldResult() throws IOException {
+        ResultDiskCacheInterceptor.save(cache.getSnapshot("a"), bitmap(true, true), null);
+        ResultDiskCacheInterceptor.save(cache.getSnapshot("a"), bitmap(false, false), null);
+        assertArrayEquals(PNG, read(cache.getIfReadable("a")));
+    }
+
+    @Test
+    public void resultIsStoredWithTheHeadersOfSource() throws IOException {
+        CacheHeaders source = new CacheHeaders("\"a\"", null, NOW + 1000L);
+        ResultDiskCacheInterceptor.save(cache.getSnapshot("a"), bitmap(true, true), source);
+
+        CacheHeaders headers = cache.getIfReadable("a").headers();
+        assertNotNull(headers);
+        assertEquals(source.etag, headers.etag);
+        assertEquals(source.expiresAt, headers.expiresAt);
+        assertTrue(headers.isFresh(NOW));
+        assertFalse(headers.isFresh(NOW + 1000L));
+    }
+
+    @Test
+    public void staleResultIsMissUnlessNetworkIsNotAllowed() {
+        CacheHeaders headers = new CacheHeaders(null, null, NOW);
+        assertFalse(ResultDiskCacheInterceptor.isUsable(headers, From.ANY.policy, NOW));
+        assertTrue(ResultDiskCacheInterceptor.isUsable(headers, From.ANY.policy, NOW - 1L));
+        assertTrue(ResultDiskCacheInterceptor.isUsable(headers, From.DISK.policy, NOW));
+        // stored before the headers were kept.
+        assertTrue(ResultDiskCacheInterceptor.isUsable(null, From.ANY.policy, NOW));
+    }
+
+    @Test
+    public void sourceWithoutOptionsBypassesTheTier() throws IOException {
+        File directory = new File(folder.getRoot(), "lazy");
+        ResultDiskCacheInterceptor interceptor = new ResultDiskCacheInterceptor(
+                new LazyDiskCache(null, directory, 1024 * 1024), new BitmapPool(0L, false));
+        final Task task = TestTasks.create("http://example.com/a.png");
+        final Result network = Result.create(TestBitmaps.create(4, 4), From.NETWORK);
+
+        Result result = interceptor.intercept(new Interceptor.Chain() {
+            @Override
+            public Downloader loader() {
+                return null;
+            }
+
+            @Override
+            public Task task() {
+                return task;
+            }
+
+            @Override
+            public Result proceed(Task t) {
+                return network;
+            }
+        });
+        assertSame(network, result);
+        // the disk cache has not even been opened.
+        assertFalse(directory.exists());
+    }
+
+    /**
+     * @param success false to write a part only and fail, as a compression out of space.
+     */
+    private static Bitmap bitmap(boolean hasAlpha, final boolean success) {
+        Bitmap bitmap = TestBitmaps.create(4, 4);
+        when(bitmap.hasAlpha()).thenReturn(hasAlpha);
+        doAnswer(compress(PNG, success)).when(bitmap).compress(eq(Bitmap.CompressFormat.PNG), anyInt(), any(OutputStream.class));
+        doAnswer(compress(WEBP, success)).when(bitmap).compress(eq(Bitmap.CompressFormat.WEBP), anyInt(), any(OutputStream.class));
+        return bitmap;
+    }
+
+    private static Answer<Boolean> compress(final byte[] data, final boolean success) {
+        return new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws IOException {
+                OutputStream os = invocation.getArgument(2);
+                os.write(data, 0, success ? data.length : 1);
+                return success;
+            }
+        };
+    }
+
+    private static byte[] read(DiskCache.Snapshot snapshot) throws IOException {
+        assertNotNull(snapshot);
+        InputStream is = snapshot.getInputStream();
+        assertNotNull(is);
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64];
+            for (int count = is.read(buffer); count != -1; count = is.read(buffer)) {
+                bos.write(buffer, 0, count);
+            }
+            return bos.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+}
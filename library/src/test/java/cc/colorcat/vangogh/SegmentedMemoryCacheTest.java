@@ -0,0 +1,112 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.graphics.Bitmap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class SegmentedMemoryCacheTest {
+    /**
+     * Four bitmaps of 64 x 64.
+     */
+    private static final long MAX_SIZE = 4 * 64 * 64 * 4;
+    private static final int LEVEL = 8;
+
+    private BitmapPool pool;
+    private SegmentedMemoryCache cache;
+
+    @Before
+    public void setUp() {
+        pool = new BitmapPool(1024 * 1024, true);
+        cache = new SegmentedMemoryCache(MAX_SIZE, LEVEL, pool);
+    }
+
+    @Test
+    public void largerThanAShareStaysCached() {
+        Bitmap large = TestBitmaps.create(100, 100);
+        assertTrue(Utils.sizeOf(large) > MAX_SIZE / LEVEL);
+        cache.save("large", large);
+
+        assertSame(large, cache.get("large"));
+        assertEquals(Utils.sizeOf(large), cache.size());
+        assertEquals(0, cache.evictionCount());
+    }
+
+    @Test
+    public void evictsAcrossSegmentsWithinTheSharedBudget() {
+        for (int i = 0; i < 10; ++i) {
+            String key = "k" + i;
+            cache.save(key, TestBitmaps.create(64, 64));
+            assertTrue(cache.size() <= MAX_SIZE);
+            assertNotNull(key, cache.get(key));
+        }
+        assertEquals(MAX_SIZE, cache.size());
+        assertEquals(6, cache.evictionCount());
+        int cached = 0;
+        for (int i = 0; i < 10; ++i) {
+            if (cache.get("k" + i) != null) {
+                ++cached;
+            }
+        }
+        assertEquals(4, cached);
+    }
+
+    @Test
+    public void evictsTheOthersBeforeTheSavedOne() {
+        cache.save("a", TestBitmaps.create(64, 64));
+        cache.save("b", TestBitmaps.create(64, 64));
+        Bitmap large = TestBitmaps.create(100, 100);
+        cache.save("large", large);
+
+        assertSame(large, cache.get("large"));
+        assertTrue(cache.size() <= MAX_SIZE);
+    }
+
+    @Test
+    public void largerThanTheBudgetIsNotKept() {
+        cache.save("a", TestBitmaps.create(64, 64));
+        cache.save("huge", TestBitmaps.create(200, 200));
+
+        assertNull(cache.get("huge"));
+        assertEquals(0L, cache.size());
+    }
+
+    @Test
+    public void trimAndClear() {
+        for (int i = 0; i < 4; ++i) {
+            cache.save("k" + i, TestBitmaps.create(64, 64));
+        }
+        cache.setSizeMultiplier(0.5F);
+        assertEquals(MAX_SIZE / 2, cache.size());
+        cache.setSizeMultiplier(1F);
+        cache.clear();
+        assertEquals(0L, cache.size());
+    }
+}
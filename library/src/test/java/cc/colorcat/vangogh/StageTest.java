@@ -0,0 +1,94 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class StageTest {
+
+    @After
+    public void tearDown() {
+        Stage.exit();
+    }
+
+    @Test
+    public void unstagedNeverMoves() {
+        Stage.require(Stage.NETWORK);
+        Stage.handOverToDecode(From.NETWORK);
+        assertNull(Stage.current());
+    }
+
+    @Test
+    public void requireMovesToTheStage() {
+        Stage.enter(Stage.CACHE, null);
+        try {
+            Stage.require(Stage.NETWORK);
+            fail("not moved");
+        } catch (Deferred e) {
+            assertEquals(Stage.NETWORK, e.stage());
+            assertNull(e.handedOver());
+        }
+        Stage.enter(Stage.NETWORK, null);
+        Stage.require(Stage.NETWORK);
+    }
+
+    @Test
+    public void handOverFromTheNetworkOnly() {
+        Stage.enter(Stage.CACHE, null);
+        Stage.handOverToDecode(From.DISK_REVALIDATED);
+        Stage.enter(Stage.NETWORK, null);
+        try {
+            Stage.handOverToDecode(From.NETWORK);
+            fail("not handed over");
+        } catch (Deferred e) {
+            assertEquals(Stage.DECODE, e.stage());
+            assertEquals(From.NETWORK, e.handedOver());
+        }
+    }
+
+    @Test
+    public void resumedUntilExit() {
+        Stage.enter(Stage.CACHE, null);
+        assertFalse(Stage.isResumed());
+        Stage.enter(null, null, true);
+        assertTrue(Stage.isResumed());
+        Stage.exit();
+        assertFalse(Stage.isResumed());
+    }
+
+    @Test
+    public void handedOverIsOfTheThread() {
+        Stage.enter(Stage.DECODE, From.NETWORK);
+        assertEquals(Stage.DECODE, Stage.current());
+        assertEquals(From.NETWORK, Stage.handedOver());
+        Stage.exit();
+        assertNull(Stage.current());
+        assertNull(Stage.handedOver());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class TeeInputStreamTest {
+
+    @Test
+    public void copiesWhatIsRead() throws IOException {
+        byte[] content = content(100);
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        TeeInputStream tee = new TeeInputStream(new ByteArrayInputStream(content), sink);
+
+        assertEquals(content[0], (byte) tee.read());
+        byte[] buffer = new byte[10];
+        assertEquals(10, tee.read(buffer));
+        assertEquals(11, sink.size());
+        assertFalse(tee.isComplete());
+    }
+
+    @Test
+    public void skipCopiesTheSkippedBytes() throws IOException {
+        byte[] content = content(20000);
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        TeeInputStream tee = new TeeInputStream(new ByteArrayInputStream(content), sink);
+
+        assertEquals(15000, tee.skip(15000));
+        assertEquals(15000, sink.size());
+        assertEquals(5000, tee.skip(15000));
+        assertArrayEquals(content, sink.toByteArray());
+    }
+
+    @Test
+    public void closeDrainsTheRest() throws IOException {
+        // longer than a buffer of copying, as a decoder stops at the end of the image data.
+        byte[] content = content(ByteArrayPool.BUFFER_SIZE * 3 + 1);
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        TeeInputStream tee = new TeeInputStream(new ByteArrayInputStream(content), sink);
+
+        tee.read(new byte[100]);
+        tee.close();
+        assertTrue(tee.isComplete());
+        assertArrayEquals(content, sink.toByteArray());
+    }
+
+    @Test
+    public void failedDrainIsIncomplete() throws IOException {
+        final byte[] content = content(1000);
+        InputStream broken = new FilterInputStream(new ByteArrayInputStream(content)) {
+            private int read = 0;
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (read >= 500) {
+                    throw new IOException("connection reset");
+                }
+                int count = super.read(b, off, Math.min(len, 500 - read));
+                read += count;
+                return count;
+            }
+        };
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        TeeInputStream tee = new TeeInputStream(broken, sink);
+
+        tee.close();
+        assertFalse(tee.isComplete());
+        assertEquals(500, sink.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void resetIsNotSupported() throws IOException {
+        TeeInputStream tee = new TeeInputStream(new ByteArrayInputStream(content(10)), new ByteArrayOutputStream());
+        assertFalse(tee.markSupported());
+        tee.mark(10);
+        tee.reset();
+    }
+
+    private static byte[] content(int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            content[i] = (byte) (i * 31);
+        }
+        return content;
+    }
+}
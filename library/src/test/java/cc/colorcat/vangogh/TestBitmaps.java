@@ -0,0 +1,49 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.graphics.Bitmap;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Mutable bitmaps which are accepted by {@link BitmapPool}, mocked since the android.jar
+ * of local unit tests has no implementation.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+final class TestBitmaps {
+
+    static Bitmap create(int width, int height) {
+        Bitmap bitmap = mock(Bitmap.class);
+        int byteCount = width * height * 4;
+        when(bitmap.getWidth()).thenReturn(width);
+        when(bitmap.getHeight()).thenReturn(height);
+        when(bitmap.getConfig()).thenReturn(Bitmap.Config.ARGB_8888);
+        when(bitmap.isMutable()).thenReturn(true);
+        when(bitmap.getByteCount()).thenReturn(byteCount);
+        when(bitmap.getAllocationByteCount()).thenReturn(byteCount);
+        return bitmap;
+    }
+
+    private TestBitmaps() {
+        throw new AssertionError("no instance");
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A HTTP/1.1 server on a local {@link ServerSocket} which answers the requests with the
+ * enqueued responses in order, on kept-alive connections unless a response closes it.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+final class TestServer implements Closeable {
+    private final ServerSocket serverSocket;
+    private final BlockingQueue<Response> responses = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Request> requests = new LinkedBlockingQueue<>();
+    private final List<Socket> sockets = new ArrayList<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    TestServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "TestServer-" + serverSocket.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    String url(String path) {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + path;
+    }
+
+    void enqueue(Response response) {
+        responses.add(response);
+    }
+
+    Request takeRequest() throws InterruptedException {
+        Request request = requests.poll(5, TimeUnit.SECONDS);
+        if (request == null) {
+            throw new AssertionError("no request");
+        }
+        return request;
+    }
+
+    int requestCount() {
+        return requests.size();
+    }
+
+    int connectionCount() {
+        return connectionCount.get();
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                final Socket socket = serverSocket.accept();
+                connectionCount.incrementAndGet();
+                synchronized (sockets) {
+                    sockets.add(socket);
+                }
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } catch (IOException ignore) {
+            // closed
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            for (Request request = readRequest(in); request != null; request = readRequest(in)) {
+                requests.add(request);
+                Response response = responses.poll(5, TimeUnit.SECONDS);
+                if (response == null) {
+                    response = new Response(500);
+                }
+                if (response.delayMillis > 0) {
+                    Thread.sleep(response.delayMillis);
+                }
+                if (!response.write(out)) {
+                    break;
+                }
+            }
+        } catch (IOException | InterruptedException ignore) {
+            // the client has gone.
+        } finally {
+            Utils.close(socket);
+        }
+    }
+
+    private static Request readRequest(InputStream in) throws IOException {
+        String requestLine = readLine(in);
+        if (requestLine == null || requestLine.isEmpty()) {
+            return null;
+        }
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String line = readLine(in); line != null && !line.isEmpty(); line = readLine(in)) {
+            int colon = line.indexOf(':');
+            headers.put(line.substring(0, colon).trim().toLowerCase(Locale.US), line.substring(colon + 1).trim());
+        }
+        return new Request(requestLine, headers);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b == -1) {
+                return line.size() > 0 ? line.toString("US-ASCII") : null;
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString("US-ASCII");
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        synchronized (sockets) {
+            for (Socket socket : sockets) {
+                Utils.close(socket);
+            }
+        }
+    }
+
+
+    static final class Request {
+        final String requestLine;
+        private final Map<String, String> headers;
+
+        private Request(String requestLine, Map<String, String> headers) {
+            this.requestLine = requestLine;
+            this.headers = headers;
+        }
+
+        String header(String name) {
+            return headers.get(name.toLowerCase(Locale.US));
+        }
+
+        @Override
+        public String toString() {
+            return requestLine + ' ' + headers;
+        }
+    }
+
+
+    static final class Response {
+        private final int code;
+        private final Map<String, String> headers = new LinkedHashMap<>();
+        private byte[] body = new byte[0];
+        private int cutAfter = -1;
+        private long delayMillis = 0L;
+
+        Response(int code) {
+            this.code = code;
+        }
+
+        Response header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        Response body(byte[] body) {
+            this.body = body;
+            return this;
+        }
+
+        Response chunkedBody(byte[] body, int chunkSize) throws IOException {
+            ByteArrayOutputStream chunked = new ByteArrayOutputStream();
+            for (int offset = 0; offset < body.length; offset += chunkSize) {
+                int length = Math.min(chunkSize, body.length - offset);
+                chunked.write((Integer.toHexString(length) + "\r\n").getBytes("US-ASCII"));
+                chunked.write(body, offset, length);
+                chunked.write("\r\n".getBytes("US-ASCII"));
+            }
+            chunked.write("0\r\n\r\n".getBytes("US-ASCII"));
+            this.body = chunked.toByteArray();
+            return header("Transfer-Encoding", "chunked");
+        }
+
+        /**
+         * Closes the connection once the count of bytes of the body has been sent.
+         */
+        Response cutAfter(int count) {
+            this.cutAfter = count;
+            return this;
+        }
+
+        Response delay(long millis) {
+            this.delayMillis = millis;
+            return this;
+        }
+
+        /**
+         * @return false if the connection must be closed.
+         */
+        private boolean write(OutputStream out) throws IOException {
+            StringBuilder head = new StringBuilder("HTTP/1.1 ").append(code).append(' ').append(reason(code)).append("\r\n");
+            if (!headers.containsKey("Content-Length") && !headers.containsKey("Transfer-Encoding")) {
+                head.append("Content-Length: ").append(body.length).append("\r\n");
+            }
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+            }
+            head.append("\r\n");
+            try {
+                out.write(head.toString().getBytes("US-ASCII"));
+                int length = cutAfter >= 0 ? Math.min(cutAfter, body.length) : body.length;
+                out.write(body, 0, length);
+                out.flush();
+            } catch (SocketException e) {
+                return false;
+            }
+            return cutAfter < 0 && !"close".equalsIgnoreCase(headers.get("Connection"));
+        }
+
+        private static String reason(int code) {
+            switch (code) {
+                case 200:
+                    return "OK";
+                case 206:
+                    return "Partial Content";
+                case 304:
+                    return "Not Modified";
+                case 416:
+                    return "Range Not Satisfiable";
+                default:
+                    return "Status";
+            }
+        }
+    }
+}
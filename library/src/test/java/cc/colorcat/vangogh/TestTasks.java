@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.net.Uri;
+
+import org.objenesis.ObjenesisStd;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tasks for local unit tests, built from a {@link Creator} without a {@link VanGogh} since
+ * neither it nor {@link Uri} can be created by the android.jar of local unit tests.
+ * <p>
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+final class TestTasks {
+
+    static Task create(String url) {
+        return create(url, url);
+    }
+
+    /**
+     * @param stableKey the key of the source, which must be valid for {@link DiskCache}.
+     */
+    static Task create(String url, String stableKey) {
+        Uri uri = mock(Uri.class);
+        when(uri.toString()).thenReturn(url);
+        when(uri.getScheme()).thenReturn(url.substring(0, url.indexOf(':')));
+        Creator creator = new ObjenesisStd().newInstance(Creator.class);
+        set(creator, "uri", uri);
+        set(creator, "stableKey", stableKey);
+        creator.key = url;
+        creator.fromPolicy = From.ANY.policy;
+        creator.connectTimeOut = 5000;
+        creator.readTimeOut = 5000;
+        creator.options = new Task.Options();
+        creator.transformations = new ArrayList<>();
+        return new Task(creator);
+    }
+
+    private static void set(Creator creator, String name, Object value) {
+        try {
+            Field field = Creator.class.getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(creator, value);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private TestTasks() {
+        throw new AssertionError("no instance");
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.graphics.Bitmap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class TinyLfuMemoryCacheTest {
+    private static final int SIZE = 16;
+    private static final int BYTE_COUNT = SIZE * SIZE * 4;
+    private static final int CAPACITY = 100;
+
+    private BitmapPool pool;
+    private TinyLfuMemoryCache cache;
+
+    @Before
+    public void setUp() {
+        pool = new BitmapPool(BYTE_COUNT * CAPACITY, true);
+        cache = new TinyLfuMemoryCache(BYTE_COUNT * CAPACITY, pool);
+    }
+
+    @Test
+    public void saveGetRemove() {
+        Bitmap bitmap = TestBitmaps.create(SIZE, SIZE);
+        cache.save("a", bitmap);
+        assertEquals(BYTE_COUNT, cache.size());
+
+        assertSame(bitmap, cache.get("a"));
+        pool.release(bitmap);
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+
+        cache.remove("a");
+        assertEquals(0, cache.size());
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void hitIsHeldUntilReleased() {
+        Bitmap bitmap = TestBitmaps.create(SIZE, SIZE);
+        cache.save("a", bitmap);
+        assertSame(bitmap, cache.get("a"));
+
+        cache.remove("a");
+        assertNull(pool.getDirty(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+        pool.release(bitmap);
+        assertSame(bitmap, pool.getDirty(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void frequentEntriesSurviveAScan() {
+        int hot = CAPACITY / 2;
+        for (int i = 0; i < hot; ++i) {
+            cache.save("hot" + i, TestBitmaps.create(SIZE, SIZE));
+        }
+        for (int round = 0; round < 3; ++round) {
+            for (int i = 0; i < hot; ++i) {
+                pool.release(cache.get("hot" + i));
+            }
+        }
+        for (int i = 0; i < CAPACITY * 5; ++i) {
+            cache.save("once" + i, TestBitmaps.create(SIZE, SIZE));
+        }
+
+        int survivors = 0;
+        for (int i = 0; i < hot; ++i) {
+            Bitmap bitmap = cache.get("hot" + i);
+            if (bitmap != null) {
+                ++survivors;
+                pool.release(bitmap);
+            }
+        }
+        assertTrue("survivors = " + survivors, survivors >= hot * 9 / 10);
+        assertTrue(cache.rejectionCount() > 0);
+        assertTrue(cache.size() <= cache.maxSize());
+    }
+
+    @Test
+    public void sizeMultiplierShrinksAndRestores() {
+        for (int i = 0; i < CAPACITY; ++i) {
+            cache.save("key" + i, TestBitmaps.create(SIZE, SIZE));
+        }
+        assertEquals(BYTE_COUNT * CAPACITY, cache.size());
+
+        cache.setSizeMultiplier(0.5F);
+        assertEquals(BYTE_COUNT * CAPACITY / 2, cache.maxSize());
+        assertTrue(cache.size() <= cache.maxSize());
+
+        cache.setSizeMultiplier(1F);
+        assertEquals(BYTE_COUNT * CAPACITY, cache.maxSize());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018 cxx
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cc.colorcat.vangogh;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.util.DisplayMetrics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Author: cxx
+ * Date: 2026-10-18
+ * GitHub: https://github.com/ccolorcat
+ */
+public class VanGoghDrawableTest {
+    private Context context;
+    private BitmapPool pool;
+    private Bitmap bitmap;
+
+    @Before
+    public void setUp() {
+        Resources resources = mock(Resources.class);
+        when(resources.getDisplayMetrics()).thenReturn(new DisplayMetrics());
+        context = mock(Context.class);
+        when(context.getResources()).thenReturn(resources);
+        pool = new BitmapPool(1024 * 1024, true);
+        bitmap = TestBitmaps.create(16, 16);
+    }
+
+    @Test
+    public void bitmapIsKeptUntilTheLastDisplayEnds() {
+        VanGoghDrawable drawable = newDrawable();
+        // shown by its target, then by the app somewhere else.
+        VanGoghDrawable.retain(drawable);
+        assertTrue(drawable.retain());
+
+        VanGoghDrawable.release(drawable);
+        assertEquals(0L, pool.size());
+        drawable.release();
+        assertEquals(bitmap.getAllocationByteCount(), pool.size());
+    }
+
+    @Test
+    public void releasedDrawableCanNotBeRetained() {
+        VanGoghDrawable drawable = newDrawable();
+        VanGoghDrawable.retain(drawable);
+        VanGoghDrawable.release(drawable);
+
+        assertFalse(drawable.retain());
+        drawable.release();
+        assertEquals(1, pool.putCount());
+    }
+
+    @Test
+    public void otherHoldersKeepTheBitmap() {
+        pool.acquire(bitmap);
+        VanGoghDrawable drawable = newDrawable();
+        VanGoghDrawable.retain(drawable);
+        VanGoghDrawable.release(drawable);
+        assertEquals(0L, pool.size());
+    }
+
+    private VanGoghDrawable newDrawable() {
+        return new VanGoghDrawable(context, pool, bitmap, From.NETWORK, false, false);
+    }
+}